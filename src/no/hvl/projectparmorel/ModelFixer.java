@@ -1,6 +1,7 @@
 package no.hvl.projectparmorel;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 
 import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
@@ -18,6 +19,26 @@ public interface ModelFixer {
 	 */
 	public Solution fixModel(File model) throws NoErrorsInModelException ;
 
+	/**
+	 * Fixes the model read from the stream. Nothing is written to disk unless the
+	 * file of a solution is requested.
+	 * 
+	 * @param model the serialized model
+	 * @throws NoErrorsInModelException if there are no errors in the model.
+	 * @return the optimal sequence of actions
+	 */
+	public Solution fixModel(InputStream model) throws NoErrorsInModelException;
+
+	/**
+	 * Fixes the serialized model. Nothing is written to disk unless the file of a
+	 * solution is requested.
+	 * 
+	 * @param model the serialized model
+	 * @throws NoErrorsInModelException if there are no errors in the model.
+	 * @return the optimal sequence of actions
+	 */
+	public Solution fixModel(byte[] model) throws NoErrorsInModelException;
+
 	/**
 	 * Sets the user preferences used in the algorithm.
 	 * 
@@ -12,6 +12,7 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import no.hvl.projectparmorel.qlearning.knowledge.PreferenceWeightMap;
 import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
@@ -37,9 +38,13 @@ public abstract class Action implements Comparable<Action> {
 	private final String XML_HIERARCHY_NAME = "hierarchy";
 	private final String XML_METHOD_NAME = "method";
 	private final String XML_PREFERENCEMAP_NAME = "preferenceMap";
+	private final String XML_VISITS_NAME = "visits";
+	private final String XML_LAST_UPDATED_NAME = "lastUpdated";
 	
 	private PreferenceWeightMap preferenceMap;
 	private double weight;
+	private int visitCount;
+	private long lastUpdated;
 
 	/**
 	 * Creates an action with no parameters set.
@@ -74,6 +79,14 @@ public abstract class Action implements Comparable<Action> {
 					.parseInt(actionElement.getElementsByTagName(XML_HIERARCHY_NAME).item(0).getTextContent());
 			method = getMethodFromString(actionElement.getElementsByTagName(XML_METHOD_NAME).item(0).getTextContent());
 			preferenceMap = new PreferenceWeightMap(actionElement.getElementsByTagName(XML_PREFERENCEMAP_NAME));
+			NodeList visits = actionElement.getElementsByTagName(XML_VISITS_NAME);
+			if (visits.getLength() > 0) {
+				visitCount = Integer.parseInt(visits.item(0).getTextContent());
+			}
+			NodeList lastUpdated = actionElement.getElementsByTagName(XML_LAST_UPDATED_NAME);
+			if (lastUpdated.getLength() > 0) {
+				this.lastUpdated = Long.parseLong(lastUpdated.item(0).getTextContent());
+			}
 		} else {
 			throw new IOException("Could not instantiate action from node " + action.getNodeName());
 		}
@@ -121,10 +134,7 @@ public abstract class Action implements Comparable<Action> {
 	}
 
 	public void savePreferenceWeights() {
-		for (PreferenceOption preference : preferenceMap.getAllPreferenceIds()) {
-			preferenceMap.combineAndSavePreference(preference);
-		}
-
+		preferenceMap.combineAndSaveAll();
 	}
 	
 	/**
@@ -132,7 +142,7 @@ public abstract class Action implements Comparable<Action> {
 	 * 
 	 * @return the action type
 	 */
-	protected abstract String getActionType();
+	public abstract String getActionType();
 
 	public void saveTo(Document document, Element action) {
 		Attr code = document.createAttribute(XML_CODE_NAME);
@@ -156,6 +166,14 @@ public abstract class Action implements Comparable<Action> {
 		method.appendChild(document.createTextNode(getMethodAsString()));
 		action.appendChild(method);
 
+		Element visits = document.createElement(XML_VISITS_NAME);
+		visits.appendChild(document.createTextNode("" + this.visitCount));
+		action.appendChild(visits);
+
+		Element lastUpdated = document.createElement(XML_LAST_UPDATED_NAME);
+		lastUpdated.appendChild(document.createTextNode("" + this.lastUpdated));
+		action.appendChild(lastUpdated);
+
 		Element preferenceMap = document.createElement(XML_PREFERENCEMAP_NAME);
 		action.appendChild(preferenceMap);
 		this.preferenceMap.saveTo(document, preferenceMap);
@@ -209,12 +227,7 @@ public abstract class Action implements Comparable<Action> {
 	 * @param preferences
 	 */
 	public void influenceWeightFromPreferencesBy(double factor, List<PreferenceOption> preferences) {
-		for (PreferenceOption preference : preferenceMap.getAllPreferenceIds()) {
-			if (preferences.contains(preference)) {
-				int oldPreferenceValue = preferenceMap.getWeightFor(preference);
-				weight += oldPreferenceValue * factor;
-			}
-		}
+		weight += preferenceMap.getTotalWeightFor(preferences) * factor;
 	}
 
 	/**
@@ -224,6 +237,45 @@ public abstract class Action implements Comparable<Action> {
 	 */
 	public abstract boolean isDelete();
 
+	/**
+	 * Records that the action has been applied in a learning episode.
+	 */
+	public void recordVisit() {
+		visitCount++;
+		lastUpdated = System.currentTimeMillis();
+	}
+
+	/**
+	 * Adds visits recorded elsewhere, like in a copy of the Q-table.
+	 * 
+	 * @param visits      to add
+	 * @param lastUpdated when the visits were last recorded
+	 */
+	public void addVisits(int visits, long lastUpdated) {
+		visitCount += visits;
+		this.lastUpdated = Math.max(this.lastUpdated, lastUpdated);
+	}
+
+	/**
+	 * Gets the number of times the action has been applied in learning episodes,
+	 * including the runs the knowledge was saved from.
+	 * 
+	 * @return the number of visits
+	 */
+	public int getVisitCount() {
+		return visitCount;
+	}
+
+	/**
+	 * Gets when the action was last applied in a learning episode.
+	 * 
+	 * @return the time in milliseconds since the epoch, or 0 if the action has
+	 *         not been visited
+	 */
+	public long getLastUpdated() {
+		return lastUpdated;
+	}
+
 	public double getWeight() {
 		return weight;
 	}
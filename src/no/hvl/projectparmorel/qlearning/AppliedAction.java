@@ -1,26 +1,52 @@
 package no.hvl.projectparmorel.qlearning;
 
+import java.util.List;
+
 /**
  * @author Angela Barriga Rodriguez - 2019 abar@hvl.no Western Norway University
  *         of Applied Sciences Bergen - Norway
  */
 public class AppliedAction {
 
-	private Error error;
+	private ErrorHandle error;
 	private Action action;
 
 	public AppliedAction(Error error, Action action) {
+		this(new ErrorHandle(error, null), action);
+	}
+
+	/**
+	 * Creates an applied action that can be replayed on a copy of the model.
+	 * 
+	 * @param error
+	 * @param action
+	 * @param targetIdentifiers identifying the contexts of the error in the model
+	 *                          at the time the action was applied, see
+	 *                          {@link Model#getIdentifierOf(Object)}
+	 */
+	public AppliedAction(Error error, Action action, List<String> targetIdentifiers) {
+		this(new ErrorHandle(error, targetIdentifiers), action);
+	}
+
+	/**
+	 * Creates an applied action to an error that is already detached from the
+	 * model.
+	 * 
+	 * @param error
+	 * @param action
+	 */
+	public AppliedAction(ErrorHandle error, Action action) {
 		super();
 		this.error = error;
 		this.action = action;
 	}
 
 	/**
-	 * Gets the error the action was applied to fix
+	 * Gets the error the action was applied to fix, detached from the model
 	 * 
 	 * @return the error
 	 */
-	public Error getError() {
+	public ErrorHandle getError() {
 		return error;
 	}
 
@@ -29,7 +55,7 @@ public class AppliedAction {
 	 * 
 	 * @param error
 	 */
-	public void setError(Error error) {
+	public void setError(ErrorHandle error) {
 		this.error = error;
 	}
 
@@ -51,6 +77,16 @@ public class AppliedAction {
 		this.action = action;
 	}
 
+	/**
+	 * Gets the identifiers of the contexts of the error at the time the action was
+	 * applied.
+	 * 
+	 * @return the identifiers, or null if they were not recorded
+	 */
+	public List<String> getTargetIdentifiers() {
+		return error.getContextIdentifiers();
+	}
+
 	@Override
 	public String toString() {
 		return "ErrorAction [Error: " + error.getCode() + " " + error.getMessage() + ", Action: " + action.getName()
@@ -0,0 +1,73 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Detects that the learning has settled, so the remaining episodes are
+ * unlikely to find a better solution.
+ *
+ * For each episode the largest change of a weight in the Q-table is recorded,
+ * together with whether the episode found a new best solution. The learning has
+ * converged when a full window of episodes found no new best solution, and no
+ * weight changed by more than the tolerance in any of them.
+ */
+class ConvergenceDetector {
+	private int window;
+	private double tolerance;
+	private Deque<Double> largestChanges;
+	private int episodesSinceNewBest;
+	private double largestChangeInEpisode;
+
+	/**
+	 * @param window    the number of episodes that must be stable
+	 * @param tolerance the largest change of a weight that is considered stable
+	 */
+	ConvergenceDetector(int window, double tolerance) {
+		this.window = window;
+		this.tolerance = tolerance;
+		largestChanges = new ArrayDeque<>();
+	}
+
+	/**
+	 * Records a change of a weight in the current episode.
+	 *
+	 * @param change the absolute difference between the new and the old weight
+	 */
+	void recordWeightChange(double change) {
+		largestChangeInEpisode = Math.max(largestChangeInEpisode, change);
+	}
+
+	/**
+	 * Ends the current episode.
+	 *
+	 * @param foundNewBest true if the episode found a solution better than the
+	 *                     ones before it
+	 */
+	void recordEpisode(boolean foundNewBest) {
+		episodesSinceNewBest = foundNewBest ? 0 : episodesSinceNewBest + 1;
+		largestChanges.addLast(largestChangeInEpisode);
+		if (largestChanges.size() > window) {
+			largestChanges.removeFirst();
+		}
+		largestChangeInEpisode = 0;
+	}
+
+	/**
+	 * Checks if the learning has converged. A detector with an empty window never
+	 * converges.
+	 *
+	 * @return true if the last episodes were stable
+	 */
+	boolean isConverged() {
+		if (window <= 0 || largestChanges.size() < window || episodesSinceNewBest < window) {
+			return false;
+		}
+		for (double change : largestChanges) {
+			if (change > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
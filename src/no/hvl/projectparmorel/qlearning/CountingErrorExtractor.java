@@ -0,0 +1,34 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the validations done by another {@link ErrorExtractor}. Extracting the
+ * errors validates the whole model, which is the most expensive part of a
+ * repair.
+ */
+class CountingErrorExtractor implements ErrorExtractor {
+	private ErrorExtractor errorExtractor;
+	private AtomicLong validations;
+
+	CountingErrorExtractor(ErrorExtractor errorExtractor) {
+		this.errorExtractor = errorExtractor;
+		validations = new AtomicLong();
+	}
+
+	@Override
+	public List<Error> extractErrorsFrom(Object model, boolean includeUnsupported) {
+		validations.incrementAndGet();
+		return errorExtractor.extractErrorsFrom(model, includeUnsupported);
+	}
+
+	/**
+	 * Gets the number of validations done since the extractor was created.
+	 * 
+	 * @return the number of validations
+	 */
+	long getNumberOfValidations() {
+		return validations.get();
+	}
+}
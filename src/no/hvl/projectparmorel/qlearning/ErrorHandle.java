@@ -0,0 +1,246 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An error detached from the model it was found in. The contexts of the error
+ * are kept as identifiers, see {@link Model#getIdentifierOf(Object)}, and the
+ * class of the element, so the sequences of the solutions do not keep the
+ * models of the episodes in memory. The elements are resolved again when the
+ * actions are replayed on a model.
+ *
+ * Contexts that are plain values, like names, are kept as they are.
+ */
+public class ErrorHandle {
+	private final int code;
+	private final String message;
+	private final int packageIndex;
+	private final List<ContextHandle> contexts;
+	private final boolean isIdentified;
+
+	/**
+	 * Detaches the error from the model it was found in.
+	 *
+	 * @param error
+	 * @param contextIdentifiers identifying the contexts of the error in the
+	 *                           model, or null if they are not known
+	 */
+	public ErrorHandle(Error error, List<String> contextIdentifiers) {
+		code = error.getCode();
+		message = error.getMessage();
+		packageIndex = error.getPackageIndex();
+		isIdentified = contextIdentifiers != null;
+
+		List<?> errorContexts = error.getContexts() == null ? Collections.emptyList() : error.getContexts();
+		int size = isIdentified ? contextIdentifiers.size() : errorContexts.size();
+		List<ContextHandle> handles = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Object context = i < errorContexts.size() ? errorContexts.get(i) : null;
+			String identifier = isIdentified ? contextIdentifiers.get(i) : null;
+			handles.add(new ContextHandle(identifier, context));
+		}
+		contexts = Collections.unmodifiableList(handles);
+	}
+
+	ErrorHandle(int code, String message, int packageIndex, List<ContextHandle> contexts, boolean isIdentified) {
+		this.code = code;
+		this.message = message;
+		this.packageIndex = packageIndex;
+		this.contexts = Collections.unmodifiableList(new ArrayList<>(contexts));
+		this.isIdentified = isIdentified;
+	}
+
+	/**
+	 * Gets the error code unique to a specific error type.
+	 *
+	 * @return the error code
+	 */
+	public int getCode() {
+		return code;
+	}
+
+	/**
+	 * Gets the message explaining the error
+	 *
+	 * @return a message explaining the error
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the index of the package where the error resides.
+	 *
+	 * @return the index where the error resides
+	 */
+	public int getPackageIndex() {
+		return packageIndex;
+	}
+
+	/**
+	 * Gets the handles of the contexts, in the order of the contexts of the error.
+	 *
+	 * @return the handles
+	 */
+	public List<ContextHandle> getContexts() {
+		return contexts;
+	}
+
+	/**
+	 * Gets the identifiers of the contexts.
+	 *
+	 * @return the identifiers, or null if they were not recorded
+	 */
+	public List<String> getContextIdentifiers() {
+		if (!isIdentified) {
+			return null;
+		}
+		List<String> identifiers = new ArrayList<>(contexts.size());
+		for (ContextHandle context : contexts) {
+			identifiers.add(context.getIdentifier());
+		}
+		return identifiers;
+	}
+
+	/**
+	 * Checks whether the identifiers of the contexts were recorded.
+	 *
+	 * @return true if the contexts can be resolved in a model
+	 */
+	public boolean isIdentified() {
+		return isIdentified;
+	}
+
+	/**
+	 * Creates the error with the contexts resolved in the model. Contexts that
+	 * cannot be resolved are null.
+	 *
+	 * @param model to resolve the contexts in
+	 * @return the error in the model
+	 */
+	public Error resolveIn(Model model) {
+		List<Object> resolvedContexts = new ArrayList<>(contexts.size());
+		for (ContextHandle context : contexts) {
+			resolvedContexts.add(context.resolveIn(model));
+		}
+		return new Error(code, message, resolvedContexts, packageIndex);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof ErrorHandle) {
+			ErrorHandle otherError = (ErrorHandle) other;
+			return code == otherError.code && Objects.equals(message, otherError.message)
+					&& packageIndex == otherError.packageIndex && contexts.equals(otherError.contexts);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(code, message, packageIndex, contexts);
+	}
+
+	@Override
+	public String toString() {
+		return "Error " + code + ", message=" + message + " in package " + packageIndex
+				+ System.getProperty("line.separator");
+	}
+
+	/**
+	 * A context of an error, detached from the model.
+	 */
+	public static class ContextHandle {
+		private final String identifier;
+		private final String className;
+		private final Object value;
+
+		private ContextHandle(String identifier, Object context) {
+			this.identifier = identifier;
+			className = context == null ? null : context.getClass().getName();
+			value = isValue(context) ? context : null;
+		}
+
+		private ContextHandle(String identifier, String className, Object value) {
+			this.identifier = identifier;
+			this.className = className;
+			this.value = value;
+		}
+
+		/**
+		 * Gets the identifier of the element in the model.
+		 *
+		 * @return the identifier, or null if the context was not an element of the
+		 *         model
+		 */
+		public String getIdentifier() {
+			return identifier;
+		}
+
+		/**
+		 * Gets the name of the class of the context.
+		 *
+		 * @return the class name, or null if the context was null
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		/**
+		 * Gets the context if it is a plain value, like a name or a number.
+		 *
+		 * @return the value, or null if the context was an element of the model
+		 */
+		public Object getValue() {
+			return value;
+		}
+
+		/**
+		 * Creates a handle to the same context identified differently, like in
+		 * another copy of the model.
+		 *
+		 * @param identifier of the context
+		 * @return the handle
+		 */
+		ContextHandle withIdentifier(String identifier) {
+			return new ContextHandle(identifier, className, value);
+		}
+
+		/**
+		 * Resolves the context in the model.
+		 *
+		 * @param model
+		 * @return the element or the value, or null if it cannot be resolved
+		 */
+		Object resolveIn(Model model) {
+			if (identifier != null) {
+				return model.resolve(identifier);
+			}
+			return value;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof ContextHandle) {
+				ContextHandle otherContext = (ContextHandle) other;
+				return Objects.equals(identifier, otherContext.identifier)
+						&& Objects.equals(className, otherContext.className)
+						&& Objects.equals(value, otherContext.value);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(identifier, className, value);
+		}
+
+		private static boolean isValue(Object context) {
+			return context instanceof String || context instanceof Number || context instanceof Boolean
+					|| context instanceof Character || context instanceof Enum;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Detects an episode going in circles while it runs.
+ *
+ * After every step the errors left in the model are reduced to a fingerprint.
+ * If a fingerprint is seen again, the actions since then brought the model back
+ * to a state it has already been in. The first recurrences divert the episode
+ * to exploration, and when they exceed the maximum the episode is considered
+ * stuck in a loop.
+ */
+class LoopDetector {
+	static final int LOOP_PENALTY = 1000;
+
+	private Set<Long> seenStates;
+	private int maxRecurrences;
+	private int recurrences;
+	private boolean lastStateRecurred;
+
+	/**
+	 * @param maxRecurrences the number of recurring states tolerated before the
+	 *                       episode is considered stuck in a loop
+	 */
+	LoopDetector(int maxRecurrences) {
+		this.maxRecurrences = maxRecurrences;
+		seenStates = new HashSet<>();
+	}
+
+	/**
+	 * Records the state of the model after a step.
+	 *
+	 * @param errors in the model
+	 * @return true if the episode is stuck in a loop, false otherwise
+	 */
+	boolean recordState(List<Error> errors) {
+		if (errors == null) {
+			lastStateRecurred = false;
+			return false;
+		}
+		lastStateRecurred = !seenStates.add(fingerprintOf(errors));
+		if (lastStateRecurred) {
+			recurrences++;
+		}
+		return isLoopDetected();
+	}
+
+	/**
+	 * Checks if the last recorded state had been seen before in the episode. The
+	 * next action should then be explored rather than taken from the policy,
+	 * which led back to the same state.
+	 *
+	 * @return true if the last state was a recurrence
+	 */
+	boolean isRecurringState() {
+		return lastStateRecurred;
+	}
+
+	/**
+	 * Checks if more states than tolerated have recurred.
+	 *
+	 * @return true if the episode is stuck in a loop
+	 */
+	boolean isLoopDetected() {
+		return recurrences > maxRecurrences;
+	}
+
+	/**
+	 * Calculates the penalty of an episode that was ended because it was stuck in
+	 * a loop. The episode is punished whatever its length, counting at least the
+	 * recurrences found here, and as if it had kept going in circles for the steps
+	 * it had left. Ending it early therefore never makes the loop cheaper than
+	 * running the episode to the end.
+	 *
+	 * @param performedActions in the episode
+	 * @param remainingSteps   the episode had left when it was ended
+	 * @return the penalty to subtract from the reward of the episode
+	 */
+	int getPenaltyForEndedEpisode(List<AppliedAction> performedActions, int remainingSteps) {
+		int loops = Math.max(countLoopsIn(performedActions), recurrences);
+		return (loops + remainingSteps) * LOOP_PENALTY;
+	}
+
+	/**
+	 * Counts the actions that fix an error of the same code and context class as
+	 * the action two steps before, which is what two errors fixed back and forth
+	 * look like.
+	 *
+	 * @param performedActions in the order they were applied
+	 * @return the number of repeated actions
+	 */
+	static int countLoopsIn(List<AppliedAction> performedActions) {
+		List<ErrorHandle> errors = new ArrayList<ErrorHandle>();
+		int value = 0;
+		int index, index2 = 0;
+		for (int i = 0; i < performedActions.size(); i++) {
+			errors.add(performedActions.get(i).getError());
+			if (errors.size() > 2) {
+				if (performedActions.get(i).getError().getCode() == errors.get(i - 2).getCode()) {
+					if (performedActions.get(i).getError().getContexts().get(0).getClassName() == null) {
+						index = 1;
+					} else {
+						index = 0;
+					}
+					if (errors.get(i - 2).getContexts().get(0).getClassName() == null) {
+						index2 = 1;
+					} else {
+						index2 = 0;
+					}
+					if (Objects.equals(performedActions.get(i).getError().getContexts().get(index).getClassName(),
+							errors.get(i - 2).getContexts().get(index2).getClassName())) {
+						value++;
+					}
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Calculates a fingerprint of the errors that does not depend on their order.
+	 *
+	 * @param errors
+	 * @return the fingerprint
+	 */
+	private long fingerprintOf(List<Error> errors) {
+		long fingerprint = errors.size();
+		for (Error error : errors) {
+			long hash = error.getCode() * 31L + error.getPackageIndex();
+			hash = hash * 1_000_003L + (error.getMessage() == null ? 0 : error.getMessage().hashCode());
+			fingerprint += mix(hash);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Spreads the bits of the hash, so summing them does not cancel out similar
+	 * errors.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
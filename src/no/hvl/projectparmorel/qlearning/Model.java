@@ -1,5 +1,8 @@
 package no.hvl.projectparmorel.qlearning;
 
+import java.util.List;
+import java.util.Map;
+
 public interface Model {
 	/**
 	 * Gets the model representation.
@@ -23,6 +26,75 @@ public interface Model {
 	 * Saves what is stored in the representation.
 	 */
 	public void save();
+
+	/**
+	 * Serializes what is stored in the representation, without saving it.
+	 * 
+	 * @return the serialized model
+	 */
+	public byte[] getContent();
+
+	/**
+	 * Releases the representation. The model should not be used afterwards.
+	 */
+	public void unload();
+
+	/**
+	 * Gets an identifier for the element that stays valid in copies of the model,
+	 * and in copies where the same actions have been applied in the same order.
+	 * 
+	 * @param element in the model
+	 * @return an identifier for the element, or null if the element is not part of
+	 *         a model
+	 */
+	public String getIdentifierOf(Object element);
+
+	/**
+	 * Finds the element with the specified identifier in this model.
+	 * 
+	 * @param identifier as returned by {@link Model#getIdentifierOf(Object)}
+	 * @return the element, or null if it does not exist in this model
+	 */
+	public Object resolve(String identifier);
+
+	/**
+	 * Groups the packages of the model that are independent of each other. Two
+	 * packages are in the same group if an element in one of them references an
+	 * element in the other, directly or through other packages.
+	 * 
+	 * @return the groups of package indices, each sorted in ascending order
+	 */
+	public List<List<Integer>> getIndependentPackageGroups();
+
+	/**
+	 * Describes the structure of the model as a vector of features, like the
+	 * numbers of the different kinds of elements. Models with similar vectors have
+	 * a similar shape. All the models of a type have vectors of the same length.
+	 * 
+	 * @return the structural features
+	 */
+	public double[] getStructuralFeatures();
+
+	/**
+	 * Gets a hash of the content of the model. The content is serialized the same
+	 * way regardless of how the model file is formatted, so models with the same
+	 * elements have the same hash.
+	 * 
+	 * @return the hash as a hexadecimal string
+	 */
+	public String getContentHash();
+
+	/**
+	 * Splits the model into fragments and gets a signature of the content of each.
+	 * A fragment that is edited gets a new signature, so two versions of a model
+	 * can be compared fragment by fragment. The fragments are identified like the
+	 * elements in {@link Model#getIdentifierOf(Object)}, and every element of the
+	 * model belongs to the fragment with the longest identifier that is a prefix
+	 * of its own.
+	 * 
+	 * @return the signature of each fragment by its identifier
+	 */
+	public Map<String, String> getFragmentSignatures();
 	
 	/**
 	 * Gets the type of the model.
@@ -27,4 +27,17 @@ public interface ModelProcessor {
 	 *         otherwise
 	 */
 	public List<Error> tryApplyAction(Error error, Action action, Model model);
+
+	/**
+	 * Applies the action to the error location like
+	 * {@link ModelProcessor#tryApplyAction(Error, Action, Model)}, but without
+	 * extracting the new errors from the model. This is used to replay actions that
+	 * are already known to work.
+	 * 
+	 * @param error
+	 * @param action
+	 * @param model
+	 * @return true if the error location was found, false otherwise
+	 */
+	public boolean replayAction(Error error, Action action, Model model);
 }
@@ -1,16 +1,24 @@
 package no.hvl.projectparmorel.qlearning;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public enum ModelType {
-	ECORE(new HashSet<Integer>(Arrays.asList(1, 4)));
+	ECORE(Arrays.asList(1, 4));
 
 	private Set<Integer> unsupportedErrorCodes;
 
-	ModelType(Set<Integer> unsupportedErrorCodes) {
-		this.unsupportedErrorCodes = unsupportedErrorCodes;
+	/**
+	 * The unsupported error codes are shared by all the repairs, which can run in
+	 * parallel, so they are kept in a concurrent set.
+	 * 
+	 * @param unsupportedErrorCodes known from the start
+	 */
+	ModelType(Collection<Integer> unsupportedErrorCodes) {
+		this.unsupportedErrorCodes = ConcurrentHashMap.newKeySet();
+		this.unsupportedErrorCodes.addAll(unsupportedErrorCodes);
 	}
 
 	/**
@@ -0,0 +1,234 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
+import no.hvl.projectparmorel.qlearning.knowledge.CompiledPolicy;
+import no.hvl.projectparmorel.qlearning.knowledge.QTable;
+
+/**
+ * Repairs the independent groups of packages of a model in parallel.
+ *
+ * Each group is copied to a file of its own and repaired by a fixer of its own,
+ * created and configured by the fixer of the whole model and starting from a
+ * copy of its Q-table. The best sequences of the groups are translated to the
+ * packages of the whole model and combined, and what the fixers of the groups
+ * learned is merged into the Q-table of the whole model.
+ */
+class PackageDecomposition {
+	private final QModelFixer fixer;
+	private final List<PackageGroup> groups;
+	private final List<QModelFixer> groupFixers;
+	private final List<CompiledPolicy> baselines;
+	private final List<File> groupFiles;
+	private final List<RepairHandle> groupHandles;
+	private final List<QSolution> groupSolutions;
+
+	/**
+	 * @param fixer  of the whole model, creating the fixers of the groups
+	 * @param groups of packages with errors
+	 */
+	PackageDecomposition(QModelFixer fixer, List<PackageGroup> groups) {
+		this.fixer = fixer;
+		this.groups = groups;
+		groupFixers = new ArrayList<>();
+		baselines = new ArrayList<>();
+		groupFiles = new ArrayList<>();
+		groupHandles = new ArrayList<>();
+		groupSolutions = new ArrayList<>();
+	}
+
+	/**
+	 * Gets the groups of independent packages that contain supported errors.
+	 *
+	 * @param independentGroups of package indices in the model
+	 * @param errors            in the model
+	 * @param model
+	 * @return the groups with errors
+	 */
+	static List<PackageGroup> findGroupsWithErrors(List<List<Integer>> independentGroups, List<Error> errors,
+			Model model) {
+		List<PackageGroup> groups = new ArrayList<>();
+		for (List<Integer> packageIndices : independentGroups) {
+			PackageGroup group = new PackageGroup(packageIndices);
+			for (Error error : errors) {
+				if (group.contains(error) && !model.getModelType().doesNotSupportError(error.getCode())) {
+					groups.add(group);
+					break;
+				}
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Copies each group to a file of its own, and starts repairing the groups in
+	 * parallel.
+	 *
+	 * @param model        to repair
+	 * @param modelName    the name of the file of the model
+	 * @param materializer of the repair, giving the files of the groups
+	 * @param budget       applying to each group
+	 */
+	void start(Model model, String modelName, SolutionMaterializer materializer, RepairBudget budget) {
+		for (int i = 0; i < groups.size(); i++) {
+			File groupFile = materializer.newFile(fixer.getInternalFileName("group_" + i + "_" + modelName));
+			Model groupModel = fixer.copyPackages(model, groups.get(i).getPackageIndices(), groupFile);
+			groupModel.save();
+			groupModel.unload();
+			groupFiles.add(groupFile);
+
+			// The group learns from what the fixer knows now, including what it has not
+			// saved
+			QModelFixer groupFixer = fixer.createSubProblemFixer(fixer.getKnowledge().copy());
+			fixer.configureSubProblemFixer(groupFixer);
+			groupFixers.add(groupFixer);
+			baselines.add(groupFixer.compilePolicy());
+		}
+		for (int i = 0; i < groups.size(); i++) {
+			groupHandles.add(groupFixers.get(i).startRepair(groupFiles.get(i), budget));
+		}
+	}
+
+	/**
+	 * Waits for the repairs of the groups, cancelling them if the repair of the
+	 * whole model is cancelled.
+	 *
+	 * @param repairHandle following the repair of the whole model
+	 * @return true if all the groups are done, false if the repair was cancelled
+	 */
+	boolean await(RepairHandle repairHandle) {
+		boolean isCancelled = false;
+		for (RepairHandle groupHandle : groupHandles) {
+			while (true) {
+				if (repairHandle.isCancelled() && !isCancelled) {
+					isCancelled = true;
+					cancelGroups();
+				}
+				try {
+					groupSolutions.add((QSolution) groupHandle.getResult().get(100, TimeUnit.MILLISECONDS));
+					break;
+				} catch (TimeoutException e) {
+					// Checks for cancellation before waiting again
+				} catch (CancellationException e) {
+					groupSolutions.add(null);
+					break;
+				} catch (InterruptedException e) {
+					// The repairs of the groups finish their cancellation on their own
+					cancelGroups();
+					Thread.currentThread().interrupt();
+					return false;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof NoErrorsInModelException
+							|| e.getCause() instanceof CancellationException) {
+						groupSolutions.add(null);
+						break;
+					} else if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException("The repair of a group of packages failed", e.getCause());
+				}
+			}
+		}
+		return !isCancelled;
+	}
+
+	private void cancelGroups() {
+		for (RepairHandle handle : groupHandles) {
+			handle.cancel();
+		}
+	}
+
+	/**
+	 * Combines the best sequences of the groups, translated to the packages of the
+	 * whole model.
+	 *
+	 * @return the combined sequence
+	 */
+	List<AppliedAction> getCombinedSequence() {
+		List<AppliedAction> sequence = new ArrayList<>();
+		for (int i = 0; i < groupSolutions.size(); i++) {
+			QSolution groupSolution = groupSolutions.get(i);
+			if (groupSolution != null) {
+				for (AppliedAction appliedAction : groupSolution.getSequence()) {
+					sequence.add(groups.get(i).toOriginal(appliedAction));
+				}
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Sums the weights of the best solutions of the groups.
+	 *
+	 * @return the combined weight
+	 */
+	double getCombinedWeight() {
+		double weight = 0;
+		for (QSolution groupSolution : groupSolutions) {
+			if (groupSolution != null) {
+				weight += groupSolution.getWeight();
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * Adds what the fixers of the groups learned to the Q-table.
+	 *
+	 * @param qTable of the fixer of the whole model
+	 * @return true if anything was learned, false otherwise
+	 */
+	boolean mergeLearningInto(QTable qTable) {
+		boolean hasLearned = false;
+		for (int i = 0; i < groupFixers.size(); i++) {
+			hasLearned |= qTable.mergeLearningFrom(groupFixers.get(i).knowledge.getQTable(), baselines.get(i));
+		}
+		return hasLearned;
+	}
+
+	/**
+	 * Sums up the repairs of the groups. The repair stopped early only if all the
+	 * groups did.
+	 *
+	 * @param validations   made by the fixer of the whole model
+	 * @param solutions     found for the whole model
+	 * @param executionTime of the whole repair
+	 * @return the report
+	 */
+	RepairReport createReport(long validations, int solutions, long executionTime) {
+		int episodesRun = 0;
+		int episodesSaved = 0;
+		StopReason stopReason = StopReason.COMPLETED;
+		for (QModelFixer groupFixer : groupFixers) {
+			RepairReport groupReport = groupFixer.getLastRepairReport();
+			if (groupReport != null) {
+				episodesRun += groupReport.getEpisodes();
+				episodesSaved += groupReport.getEpisodesSaved();
+				validations += groupReport.getValidations();
+				if (!groupReport.isConverged() && stopReason == StopReason.COMPLETED) {
+					stopReason = groupReport.getStopReason();
+				}
+			}
+		}
+		return new RepairReport(stopReason, episodesRun, validations, solutions, executionTime, episodesSaved);
+	}
+
+	/**
+	 * Discards the solutions of the groups and deletes the files of the groups.
+	 */
+	void close() {
+		for (QModelFixer groupFixer : groupFixers) {
+			groupFixer.discardSolutions();
+		}
+		for (File groupFile : groupFiles) {
+			groupFile.delete();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of packages that is repaired as a sub-problem of its own.
+ *
+ * The sub-problem is repaired on a copy holding only the packages of the group,
+ * so the package indices and the identifiers in its solutions are relative to
+ * the copy. The group translates them back to the original model, where the
+ * solutions of all the groups are combined.
+ */
+class PackageGroup {
+	private static final String PATH_SEPARATOR = "/";
+
+	private List<Integer> packageIndices;
+
+	/**
+	 * @param packageIndices of the packages in the original model, in the order
+	 *                       they have in the copy
+	 */
+	PackageGroup(List<Integer> packageIndices) {
+		this.packageIndices = packageIndices;
+	}
+
+	/**
+	 * Gets the indices of the packages in the original model.
+	 *
+	 * @return the package indices
+	 */
+	List<Integer> getPackageIndices() {
+		return packageIndices;
+	}
+
+	/**
+	 * Checks if the error is in one of the packages of the group.
+	 *
+	 * @param error in the original model
+	 * @return true if the error is in the group, false otherwise
+	 */
+	boolean contains(Error error) {
+		return packageIndices.contains(error.getPackageIndex());
+	}
+
+	/**
+	 * Translates an action applied in the copy to the original model.
+	 *
+	 * @param appliedAction in the copy
+	 * @return the action applied to the same elements in the original model
+	 */
+	AppliedAction toOriginal(AppliedAction appliedAction) {
+		ErrorHandle error = appliedAction.getError();
+		List<ErrorHandle.ContextHandle> originalContexts = new ArrayList<>();
+		for (ErrorHandle.ContextHandle context : error.getContexts()) {
+			originalContexts.add(context.withIdentifier(toOriginalIdentifier(context.getIdentifier())));
+		}
+		ErrorHandle originalError = new ErrorHandle(error.getCode(), error.getMessage(),
+				toOriginalPackageIndex(error.getPackageIndex()), originalContexts, error.isIdentified());
+		return new AppliedAction(originalError, appliedAction.getAction());
+	}
+
+	/**
+	 * Translates a containment path in the copy to the original model. The first
+	 * index of the path is the package, the rest is the same in both models.
+	 * Identifiers of elements in other resources are not changed.
+	 *
+	 * @param identifier in the copy
+	 * @return the identifier in the original model
+	 */
+	String toOriginalIdentifier(String identifier) {
+		if (identifier == null || !identifier.startsWith(PATH_SEPARATOR)) {
+			return identifier;
+		}
+		int endOfPackageIndex = identifier.indexOf(PATH_SEPARATOR, 1);
+		String packageIndex = endOfPackageIndex < 0 ? identifier.substring(1)
+				: identifier.substring(1, endOfPackageIndex);
+		String rest = endOfPackageIndex < 0 ? "" : identifier.substring(endOfPackageIndex);
+		return PATH_SEPARATOR + toOriginalPackageIndex(Integer.parseInt(packageIndex)) + rest;
+	}
+
+	private int toOriginalPackageIndex(int packageIndex) {
+		if (packageIndex < 0 || packageIndex >= packageIndices.size()) {
+			return packageIndex;
+		}
+		return packageIndices.get(packageIndex);
+	}
+}
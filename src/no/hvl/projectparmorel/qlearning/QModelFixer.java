@@ -1,23 +1,39 @@
 package no.hvl.projectparmorel.qlearning;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import no.hvl.projectparmorel.ModelFixer;
 import no.hvl.projectparmorel.Solution;
 import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
 import no.hvl.projectparmorel.exceptions.UnsupportedErrorException;
+import no.hvl.projectparmorel.qlearning.exploration.ExplorationStrategy;
+import no.hvl.projectparmorel.qlearning.knowledge.CompiledPolicy;
 import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
 import no.hvl.projectparmorel.qlearning.knowledge.QTable;
+import no.hvl.projectparmorel.qlearning.knowledge.RepairRepository;
 import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
 import no.hvl.projectparmorel.qlearning.reward.RewardCalculator;
+import no.hvl.projectparmorel.qlearning.reward.StepContext;
+import no.hvl.projectparmorel.qlearning.scheduling.ErrorScheduler;
+import no.hvl.projectparmorel.qlearning.scheduling.ReportOrderScheduler;
 
 /**
  * A model fixer that uses QLearning.
@@ -27,7 +43,7 @@ import no.hvl.projectparmorel.qlearning.reward.RewardCalculator;
  * @author Angela Barriga Rodriguez abar@hvl.no
  * @author Magnus Marthinsen
  */
-public abstract class QModelFixer implements ModelFixer {
+public abstract class QModelFixer implements ModelFixer, Flow.Publisher<Solution> {
 	/**
 	 * The name of the {@link java.util.logging.Logger} used.
 	 */
@@ -61,20 +77,83 @@ public abstract class QModelFixer implements ModelFixer {
 	private List<Error> originalErrors;
 	private List<Integer> initialErrorCodes;
 	private List<QSolution> possibleSolutions;
+	private SequenceIndex exploredSequences;
+	private boolean pipelineSolutionRewards;
+	private boolean avoidKnownSequences;
+	private int maxStateRecurrences = 1;
+	private int solutionCacheSize = 8;
+	private int retainedRepairs = 4;
+	private int solutionRankingSize = 10;
+	private SolutionRanking solutionRanking;
+	private List<Flow.Subscriber<? super Solution>> waitingSubscribers;
+	private SubmissionPublisher<Solution> solutionPublisher;
+	private CountingErrorExtractor validationCounter;
+	private RepairBudget budget;
+	private long repairStartTime;
+	private long validationsAtStart;
+	private StopReason stopReason;
+	private RepairReport lastRepairReport;
+	private RepairHandle repairHandle;
+	private double bestWeight;
+	private AtomicBoolean isRepairing;
+	private boolean inferenceMode;
+	private CompiledPolicy compiledPolicy;
+	private ExplorationStrategy explorationStrategy;
+	private int convergenceWindow;
+	private double convergenceTolerance;
+	private ConvergenceDetector convergenceDetector;
+	private ErrorScheduler errorScheduler;
+	private boolean decomposeByPackages;
+	private boolean savesKnowledge = true;
+	private RepairRepository repairRepository;
+	private RepairCache repairCache;
+	private boolean deltaRepair;
+	private RepairHistory repairHistory;
+	private int fallbackEpisodes = 3;
+	private ScratchWorkspace scratchWorkspace = ScratchWorkspace.getDefault();
+	private SolutionMaterializer lastMaterializer;
+	private Deque<SolutionMaterializer> retainedMaterializers;
 
 	public QModelFixer() {
+		this(new File(Knowledge.KNOWLEDGE_FILE_NAME));
+	}
+
+	/**
+	 * Creates a fixer that loads its knowledge from the file, and saves it there.
+	 * 
+	 * @param knowledgeFile
+	 */
+	public QModelFixer(File knowledgeFile) {
+		this(new Knowledge(knowledgeFile));
+		loadKnowledge();
+	}
+
+	/**
+	 * Creates a fixer that learns into the knowledge as it is, without loading it
+	 * from its file.
+	 * 
+	 * @param knowledge
+	 */
+	protected QModelFixer(Knowledge knowledge) {
 		errorsToFix = new ArrayList<Error>();
-		knowledge = new Knowledge();
+		this.knowledge = knowledge;
 		qTable = knowledge.getQTable();
 		discardedSequences = 0;
 		originalErrors = new ArrayList<Error>();
 		initialErrorCodes = new ArrayList<Integer>();
 		possibleSolutions = new ArrayList<QSolution>();
+		exploredSequences = new SequenceIndex();
+		solutionRanking = new SolutionRanking(solutionRankingSize);
+		waitingSubscribers = new ArrayList<>();
+		isRepairing = new AtomicBoolean();
+		errorScheduler = new ReportOrderScheduler();
+		repairHistory = new RepairHistory(16);
+		retainedMaterializers = new ArrayDeque<>();
 		rewardCalculator = new RewardCalculator(knowledge, new ArrayList<>());
 		numberOfSteps = MIN_EPISODE_STEPS;
-		loadKnowledge();
 		actionExtractor = initializeActionExtractor();
-		errorExtractor = initializeErrorExtractor();
+		validationCounter = new CountingErrorExtractor(initializeErrorExtractor());
+		errorExtractor = validationCounter;
 		modelProcessor = initializeModelProcessor();
 	}
 
@@ -98,7 +177,9 @@ public abstract class QModelFixer implements ModelFixer {
 
 	/**
 	 * Gets a {@link ModelProcessor} that can be used to process and apply actions
-	 * to the model.
+	 * to the model. The processor should extract errors with the
+	 * {@link QModelFixer#errorExtractor}, so its validations count towards the
+	 * {@link RepairBudget}.
 	 * 
 	 * @return a meta model specific ModelProcessor.
 	 */
@@ -109,12 +190,332 @@ public abstract class QModelFixer implements ModelFixer {
 		rewardCalculator = new RewardCalculator(knowledge, preferences);
 	}
 
+	/**
+	 * Creates a fixer with the preferences that loads its knowledge from the file,
+	 * and saves it there.
+	 * 
+	 * @param preferences
+	 * @param knowledgeFile
+	 */
+	public QModelFixer(List<PreferenceOption> preferences, File knowledgeFile) {
+		this(knowledgeFile);
+		rewardCalculator = new RewardCalculator(knowledge, preferences);
+	}
+
 	@Override
 	public void setPreferences(List<PreferenceOption> preferences) {
 		rewardCalculator = new RewardCalculator(knowledge, preferences);
 		updateRewardCalculator();
 	}
 
+	/**
+	 * Enables or disables pipelining of the solution level rewards. When enabled,
+	 * distance and metric preferences are measured on a background thread while
+	 * the next episodes are explored. The file of each solution is written before
+	 * it is measured, and kept until the solution is discarded. Their Q-table
+	 * updates are applied in episode order once all episodes are done, before the
+	 * post repair rewards and the selection of the best solution. The repair is
+	 * not stopped early by convergence while the rewards are pipelined.
+	 * 
+	 * @param pipelineSolutionRewards
+	 */
+	public void setPipelineSolutionRewards(boolean pipelineSolutionRewards) {
+		this.pipelineSolutionRewards = pipelineSolutionRewards;
+	}
+
+	/**
+	 * Enables or disables branching away from known solutions. When enabled, an
+	 * episode that would complete an already found sequence by taking the optimal
+	 * action explores a random action instead. This spends fewer episodes on
+	 * reproducing solutions that are already known.
+	 * 
+	 * @param avoidKnownSequences
+	 */
+	public void setAvoidKnownSequences(boolean avoidKnownSequences) {
+		this.avoidKnownSequences = avoidKnownSequences;
+	}
+
+	/**
+	 * Sets how many times an episode may return to an error state it has already
+	 * been in. Each time it does, the next action is explored instead of taken from
+	 * the policy that led back. When the number of recurrences exceeds the maximum,
+	 * the episode is ended. An episode ended this way is punished for the loop
+	 * whatever its length, at least as hard as if it had gone in circles for all
+	 * its steps.
+	 * 
+	 * @param maxStateRecurrences
+	 */
+	public void setMaxStateRecurrences(int maxStateRecurrences) {
+		this.maxStateRecurrences = maxStateRecurrences;
+	}
+
+	/**
+	 * Sets how many solution models are kept in memory before they are requested.
+	 * Solutions are kept as sequences of actions, and their models are rebuilt
+	 * when requested if they are not in the cache. A model whose file or
+	 * representation has been requested is kept until the solutions are
+	 * discarded, and does not count towards the cache.
+	 * 
+	 * @param solutionCacheSize
+	 */
+	public void setSolutionCacheSize(int solutionCacheSize) {
+		this.solutionCacheSize = solutionCacheSize;
+	}
+
+	/**
+	 * Sets how many repairs keep their solutions loaded. Each repair loads its
+	 * model on its own, and keeps it until its solutions are discarded with
+	 * {@link QModelFixer#discardSolutions()}. When a repair starts and the limit is
+	 * reached, the solutions of the oldest repair are discarded, so the memory of
+	 * a long running fixer stays bounded. The models and files of discarded
+	 * solutions can no longer be requested, and must be copied first if they are
+	 * needed after later repairs.
+	 * 
+	 * @param retainedRepairs at least 1, counting the repair that starts
+	 */
+	public void setRetainedRepairs(int retainedRepairs) {
+		if (retainedRepairs < 1) {
+			throw new IllegalArgumentException("At least the solutions of the current repair must be retained");
+		}
+		this.retainedRepairs = retainedRepairs;
+	}
+
+	/**
+	 * Sets how many of the best solutions are kept in the ranking returned by
+	 * {@link QModelFixer#getRankedSolutions()}. It applies from the next repair.
+	 * 
+	 * @param solutionRankingSize
+	 */
+	public void setSolutionRankingSize(int solutionRankingSize) {
+		this.solutionRankingSize = solutionRankingSize;
+	}
+
+	/**
+	 * Enables or disables inference mode. In inference mode the repair first
+	 * follows the learned policy greedily in a single episode, without exploring
+	 * and without writing to the Q-table or saving the knowledge. Only if the
+	 * policy meets an unknown error or leaves errors in the model does the repair
+	 * fall back to a few exploratory episodes, which learn as usual.
+	 * 
+	 * @param inferenceMode
+	 */
+	public void setInferenceMode(boolean inferenceMode) {
+		this.inferenceMode = inferenceMode;
+	}
+
+	/**
+	 * Sets the strategy for choosing actions in the learning episodes. Without a
+	 * strategy, a random action is chosen with a fixed probability for every
+	 * error code, and the optimal action otherwise.
+	 * 
+	 * @param explorationStrategy the strategy, or null to use the fixed
+	 *                            probability
+	 */
+	public void setExplorationStrategy(ExplorationStrategy explorationStrategy) {
+		this.explorationStrategy = explorationStrategy;
+	}
+
+	/**
+	 * Sets the scheduler deciding which error an episode fixes next. By default
+	 * the errors are fixed in the order they are reported.
+	 * 
+	 * @param errorScheduler
+	 */
+	public void setErrorScheduler(ErrorScheduler errorScheduler) {
+		this.errorScheduler = errorScheduler;
+	}
+
+	/**
+	 * Enables or disables the decomposition of repairs by package. When enabled,
+	 * the packages of the model are split into groups that do not reference each
+	 * other. Each group with errors is repaired in parallel by a fixer of its own,
+	 * on a copy holding only the packages of the group, so the validations in its
+	 * episodes only cover those packages. The best sequences of the groups are
+	 * combined into a single solution, and what the fixers learned is added to the
+	 * knowledge of this fixer. The other settings of this fixer, and the budget,
+	 * apply to each group.
+	 * 
+	 * @param decomposeByPackages
+	 */
+	public void setDecomposeByPackages(boolean decomposeByPackages) {
+		this.decomposeByPackages = decomposeByPackages;
+	}
+
+	/**
+	 * Enables stopping the repair early once the learning has converged. The
+	 * learning has converged when the specified number of episodes in a row found
+	 * no better solution, and none of them changed a weight in the Q-table by
+	 * more than the tolerance. The repair is not stopped early by default.
+	 * 
+	 * Convergence is not detected while the solution rewards are pipelined, see
+	 * {@link QModelFixer#setPipelineSolutionRewards(boolean)}, since the weights
+	 * and the best solution are not known before the pipeline is drained.
+	 * 
+	 * @param window    the number of stable episodes, or 0 to run all the episodes
+	 * @param tolerance the largest change of a weight in a stable episode
+	 */
+	public void setConvergenceCriteria(int window, double tolerance) {
+		this.convergenceWindow = window;
+		this.convergenceTolerance = tolerance;
+	}
+
+	/**
+	 * Sets a repository of previous repairs. Before learning, the weights of the
+	 * actions that repaired the most similar models are raised, so the first
+	 * episodes try them. The raised weights the episodes did not change are
+	 * restored after the episodes, so they are never saved. The best sequence of
+	 * the repair is added to the repository when the knowledge is saved.
+	 * 
+	 * @param repairRepository the repository, or null to start from the
+	 *                         knowledge alone
+	 */
+	public void setRepairRepository(RepairRepository repairRepository) {
+		this.repairRepository = repairRepository;
+	}
+
+	/**
+	 * Sets a cache of finished repairs. A model that is repaired again with the
+	 * same preferences gets the cached solution, rebuilt by replaying its actions,
+	 * without running any episodes. Only repairs that were not stopped by the
+	 * budget are cached. The cache can be shared by several fixers.
+	 * 
+	 * @param repairCache the cache, or null to always repair
+	 */
+	public void setRepairCache(RepairCache repairCache) {
+		this.repairCache = repairCache;
+	}
+
+	/**
+	 * Enables or disables delta repairs. When enabled, the fixer remembers the
+	 * best sequence of the last repair of each model file. If the model in the
+	 * file is edited and repaired again, the actions of that sequence are replayed
+	 * before each episode for as long as they only touch parts of the model that
+	 * were not edited. The episodes then only explore the errors that remain, so
+	 * the work depends on the size of the edit rather than of the model.
+	 * 
+	 * @param deltaRepair
+	 */
+	public void setDeltaRepair(boolean deltaRepair) {
+		this.deltaRepair = deltaRepair;
+	}
+
+	/**
+	 * Sets the workspace the files of the repairs are written to. Each repair
+	 * writes to a directory of its own in the workspace, which is deleted by
+	 * {@link QModelFixer#discardSolutions()}. The default workspace is in the
+	 * temporary directory of the JVM.
+	 * 
+	 * @param scratchWorkspace
+	 */
+	public void setScratchWorkspace(ScratchWorkspace scratchWorkspace) {
+		this.scratchWorkspace = scratchWorkspace;
+	}
+
+	/**
+	 * Sets whether the knowledge is saved, and the repair added to the repository
+	 * of previous repairs, after each repair. Fixers whose learning is merged into
+	 * knowledge kept elsewhere, like the fixers of a pool, leave the saving to the
+	 * owner of that knowledge.
+	 * 
+	 * @param savesKnowledge true by default
+	 */
+	public void setSavesKnowledge(boolean savesKnowledge) {
+		this.savesKnowledge = savesKnowledge;
+	}
+
+	/**
+	 * Gets the knowledge the fixer learns into.
+	 * 
+	 * @return the knowledge
+	 */
+	public Knowledge getKnowledge() {
+		return knowledge;
+	}
+
+	/**
+	 * Sets a compiled policy for the greedy episode of the inference mode. The
+	 * policy is used instead of the Q-table to choose the actions, so it decides
+	 * the repair as long as the model can be repaired greedily. If it cannot, the
+	 * fallback episodes learn with the Q-table as usual.
+	 * 
+	 * @param compiledPolicy the policy, or null to use the Q-table
+	 */
+	public void setCompiledPolicy(CompiledPolicy compiledPolicy) {
+		this.compiledPolicy = compiledPolicy;
+	}
+
+	/**
+	 * Compiles the current knowledge into a read-only policy that can be saved
+	 * and used by {@link QModelFixer#setCompiledPolicy(CompiledPolicy)}.
+	 * 
+	 * @return the compiled policy
+	 */
+	public CompiledPolicy compilePolicy() {
+		return qTable.compilePolicy();
+	}
+
+	/**
+	 * Sets the number of exploratory episodes run when the greedy episode of the
+	 * inference mode does not repair the model.
+	 * 
+	 * @param fallbackEpisodes
+	 */
+	public void setFallbackEpisodes(int fallbackEpisodes) {
+		this.fallbackEpisodes = fallbackEpisodes;
+	}
+
+	/**
+	 * Subscribes to the solutions found while repairing. Every unique solution is
+	 * published as soon as it has been rewarded, before the remaining episodes
+	 * are done. Its weight can still change from the post repair rewards.
+	 * 
+	 * The subscriber follows the repair in progress, or the next one if none is
+	 * running, and is completed when that repair ends. Repairing waits for
+	 * subscribers that have not requested more solutions once their buffer is
+	 * full.
+	 * 
+	 * @param subscriber
+	 */
+	@Override
+	public synchronized void subscribe(Flow.Subscriber<? super Solution> subscriber) {
+		if (solutionPublisher != null) {
+			solutionPublisher.subscribe(subscriber);
+		} else {
+			waitingSubscribers.add(subscriber);
+		}
+	}
+
+	/**
+	 * Creates the publisher for a repair, and subscribes the waiting subscribers.
+	 * 
+	 * @return the publisher
+	 */
+	private synchronized SubmissionPublisher<Solution> openSolutionPublisher() {
+		solutionPublisher = new SubmissionPublisher<>();
+		for (Flow.Subscriber<? super Solution> subscriber : waitingSubscribers) {
+			solutionPublisher.subscribe(subscriber);
+		}
+		waitingSubscribers.clear();
+		return solutionPublisher;
+	}
+
+	/**
+	 * Completes the subscribers of the repair.
+	 * 
+	 * @param publisher
+	 * @param failure   that ended the repair, or null if it succeeded
+	 */
+	private synchronized void closeSolutionPublisher(SubmissionPublisher<Solution> publisher, Throwable failure) {
+		if (failure == null) {
+			publisher.close();
+		} else {
+			publisher.closeExceptionally(failure);
+		}
+		if (solutionPublisher == publisher) {
+			solutionPublisher = null;
+		}
+	}
+
 	/**
 	 * Updates the dependencies after reward calculator has changed.
 	 */
@@ -148,46 +549,278 @@ public abstract class QModelFixer implements ModelFixer {
 
 	/**
 	 * Chooses an action for the specified error. The action is either the best
-	 * action based on the previous knowledge, or a random action.
+	 * action based on the previous knowledge, the action chosen by the
+	 * exploration strategy, or a random action.
 	 * 
 	 * @param error
+	 * @param sequenceCursor following the episode through the known sequences
+	 * @param loopDetector tracking the states of the episode
 	 * @return a fitting action
 	 * @throws UnsupportedErrorException if the error is not in the Q-table
 	 */
-	private Action chooseAction(Error error) throws UnsupportedErrorException {
-		if (Math.random() < randomFactor) {
+	private Action chooseAction(Error error, SequenceIndex.Cursor sequenceCursor, LoopDetector loopDetector)
+			throws UnsupportedErrorException {
+		if (loopDetector.isRecurringState()) {
+			LOGGER.info("Episode returned to a previous state. Choosing random action.");
+			return knowledge.getQTable().getRandomActionForError(error.getCode());
+		}
+		Action chosenAction;
+		if (explorationStrategy != null) {
+			List<Action> actions = qTable.getActionsForErrorCode(error.getCode());
+			if (actions.isEmpty()) {
+				throw new UnsupportedErrorException("The error code " + error.getCode() + " was not in the QTable.",
+						error.getCode());
+			}
+			chosenAction = explorationStrategy.chooseAction(error.getCode(), actions);
+			LOGGER.info("Choosing action with " + explorationStrategy.getClass().getSimpleName());
+		} else if (Math.random() < randomFactor) {
 			LOGGER.info("Choosing random action.");
 			return knowledge.getQTable().getRandomActionForError(error.getCode());
 		} else {
+			chosenAction = knowledge.getOptimalActionForErrorCode(error.getCode());
 			LOGGER.info("Choosing optimal action");
-			return knowledge.getOptimalActionForErrorCode(error.getCode());
 		}
+		if (avoidKnownSequences && sequenceCursor.completesKnownSequence(chosenAction)) {
+			LOGGER.info("Chosen action would reproduce a known solution. Choosing random action.");
+			return knowledge.getQTable().getRandomActionForError(error.getCode());
+		}
+		return chosenAction;
 	}
 
 	@Override
 	public Solution fixModel(File modelFile) throws NoErrorsInModelException {
+		return fixModel(modelFile, new RepairBudget());
+	}
+
+	/**
+	 * Fixes the model within the budget. The best solution found before the budget
+	 * is used up is returned, and {@link QModelFixer#getLastRepairReport()} tells
+	 * whether the search ran to the end.
+	 * 
+	 * Starting a repair can discard the solutions of earlier repairs, see
+	 * {@link QModelFixer#setRetainedRepairs(int)}. Their models and files can no
+	 * longer be requested afterwards.
+	 * 
+	 * @param modelFile
+	 * @param budget    limiting the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 */
+	public Solution fixModel(File modelFile, RepairBudget budget) throws NoErrorsInModelException {
+		return fixModel(modelFile, budget, new RepairHandle());
+	}
+
+	@Override
+	public Solution fixModel(InputStream modelContent) throws NoErrorsInModelException {
+		return fixModel(modelContent, new RepairBudget());
+	}
+
+	/**
+	 * Fixes the model read from the stream within the budget. Nothing is written
+	 * to disk unless the file of a solution or of the original model is requested.
+	 * The solutions can be read with {@link QSolution#getModelRepresentation()} and
+	 * {@link QSolution#getModelContent()} instead.
+	 * 
+	 * @param modelContent the serialized model
+	 * @param budget       limiting the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 * @throws UncheckedIOException     if the model could not be read
+	 */
+	public Solution fixModel(InputStream modelContent, RepairBudget budget) throws NoErrorsInModelException {
+		return fixModel(createInMemoryLocation(), () -> {
+			try {
+				return initializeModelFromStream(modelContent);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not read the model", e);
+			}
+		}, budget);
+	}
+
+	@Override
+	public Solution fixModel(byte[] modelContent) throws NoErrorsInModelException {
+		return fixModel(modelContent, new RepairBudget());
+	}
+
+	/**
+	 * Fixes the serialized model within the budget, like
+	 * {@link QModelFixer#fixModel(InputStream, RepairBudget)}.
+	 * 
+	 * @param modelContent the serialized model
+	 * @param budget       limiting the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 * @throws UncheckedIOException     if the model could not be read
+	 */
+	public Solution fixModel(byte[] modelContent, RepairBudget budget) throws NoErrorsInModelException {
+		return fixModel(new ByteArrayInputStream(modelContent), budget);
+	}
+
+	/**
+	 * Fixes a model that is already loaded within the budget. The location is
+	 * where the files of the original model and the solutions are written if they
+	 * are requested. It does not need to exist.
+	 * 
+	 * @param modelLocation the file of the model
+	 * @param modelLoader   loading the model, called once the repair has started
+	 * @param budget        limiting the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 */
+	protected Solution fixModel(File modelLocation, Supplier<Model> modelLoader, RepairBudget budget)
+			throws NoErrorsInModelException {
+		return fixModel(modelLocation, modelLoader, budget, new RepairHandle());
+	}
+
+	/**
+	 * Starts fixing the model in the background. The returned handle reports the
+	 * progress, allows the repair to be cancelled and completes with the best
+	 * solution.
+	 * 
+	 * @param modelFile
+	 * @param budget    limiting the repair
+	 * @return a handle to the repair
+	 * @throws IllegalStateException if the fixer is already repairing a model
+	 */
+	public RepairHandle startRepair(File modelFile, RepairBudget budget) {
+		if (!isRepairing.compareAndSet(false, true)) {
+			throw new IllegalStateException("The fixer is already repairing a model");
+		}
+		RepairHandle handle = new RepairHandle();
+		Thread repairThread = new Thread(() -> {
+			try {
+				handle.complete(repair(modelFile, this::initializeModelFromFile, budget, handle));
+			} catch (Throwable e) {
+				handle.completeExceptionally(e);
+				if (e instanceof java.lang.Error) {
+					throw (java.lang.Error) e;
+				}
+			}
+		}, "parmorel-repair");
+		repairThread.setDaemon(true);
+		try {
+			repairThread.start();
+		} catch (RuntimeException | java.lang.Error e) {
+			isRepairing.set(false);
+			throw e;
+		}
+		return handle;
+	}
+
+	/**
+	 * Fixes the model within the budget, reporting to the handle.
+	 * 
+	 * @param modelFile
+	 * @param budget    limiting the repair
+	 * @param handle    following the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 * @throws CancellationException    if the repair was cancelled
+	 */
+	private Solution fixModel(File modelFile, RepairBudget budget, RepairHandle handle)
+			throws NoErrorsInModelException {
+		return fixModel(modelFile, this::initializeModelFromFile, budget, handle);
+	}
+
+	/**
+	 * Fixes the model within the budget, reporting to the handle.
+	 * 
+	 * @param modelFile   the file of the model
+	 * @param modelLoader loading the model
+	 * @param budget      limiting the repair
+	 * @param handle      following the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 * @throws CancellationException    if the repair was cancelled
+	 */
+	private Solution fixModel(File modelFile, Supplier<Model> modelLoader, RepairBudget budget, RepairHandle handle)
+			throws NoErrorsInModelException {
+		if (!isRepairing.compareAndSet(false, true)) {
+			throw new IllegalStateException("The fixer is already repairing a model");
+		}
+		return repair(modelFile, modelLoader, budget, handle);
+	}
+
+	/**
+	 * Fixes the model within the budget, reporting to the handle. The fixer must
+	 * already be marked as repairing, and is no longer marked when the repair
+	 * ends.
+	 * 
+	 * @param modelFile   the file of the model
+	 * @param modelLoader loading the model
+	 * @param budget      limiting the repair
+	 * @param handle      following the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 * @throws CancellationException    if the repair was cancelled
+	 */
+	private Solution repair(File modelFile, Supplier<Model> modelLoader, RepairBudget budget, RepairHandle handle)
+			throws NoErrorsInModelException {
+		try {
+			this.budget = budget;
+			repairHandle = handle;
+			SubmissionPublisher<Solution> publisher = openSolutionPublisher();
+			try {
+				Solution bestSolution = fixModel(modelFile, modelLoader, publisher);
+				closeSolutionPublisher(publisher, null);
+				return bestSolution;
+			} catch (Throwable e) {
+				closeSolutionPublisher(publisher, e);
+				throw e;
+			}
+		} finally {
+			isRepairing.set(false);
+		}
+	}
+
+	/**
+	 * Repairs the model, publishing the solutions as they are found.
+	 * 
+	 * @param modelFile   the file of the model
+	 * @param modelLoader loading the model
+	 * @param publisher   of the solutions
+	 * @return the best solution
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 */
+	private QSolution fixModel(File modelFile, Supplier<Model> modelLoader, SubmissionPublisher<Solution> publisher)
+			throws NoErrorsInModelException {
 		long startTime = System.currentTimeMillis();
+		repairStartTime = startTime;
+		validationsAtStart = validationCounter.getNumberOfValidations();
+		stopReason = null;
+		bestWeight = Double.NEGATIVE_INFINITY;
 		LOGGER.info("Repairing " + modelFile.getName());
 		originalModel = modelFile;
-		Model model = initializeModelFromFile();
+		lastMaterializer = null;
+		Model model = modelLoader.get();
 		rewardCalculator.initializePreferencesFor(model);
 
-		File duplicateFile = createDuplicateFile();
-
 		LOGGER.info("Running with preferences " + rewardCalculator.getPreferences().toString());
 
+		Map<String, String> fragmentSignatures = deltaRepair ? model.getFragmentSignatures() : null;
+		String cacheKey = null;
+		if (repairCache != null) {
+			cacheKey = RepairCache.keyFor(model, rewardCalculator.getPreferences());
+			RepairCache.CachedRepair cachedRepair = repairCache.get(cacheKey, qTable);
+			if (cachedRepair != null) {
+				return repairFromCache(model, cachedRepair, publisher, startTime);
+			}
+		}
+
 		discardedSequences = 0;
 		int episode = 0;
 
 		errorsToFix = errorExtractor.extractErrorsFrom(model.getRepresentation(), true);
 		handleUnsupportedErrors(model);
 		if (errorsToFix.isEmpty()) {
-			duplicateFile.delete();
-			throw new NoErrorsInModelException("No supported errors where found in " + modelFile.getAbsolutePath());
+			model.unload();
+			throw new NoErrorsInModelException("No supported errors where found in " + modelFile.getName());
 		}
 
 		setInitialErrors(errorsToFix);
 		possibleSolutions.clear();
+		solutionRanking = new SolutionRanking(solutionRankingSize);
+		exploredSequences.clear();
 		originalErrors.clear();
 		originalErrors.addAll(errorsToFix);
 		if (errorsToFix.size() * 1.4 > MIN_EPISODE_STEPS) {
@@ -198,63 +831,522 @@ public abstract class QModelFixer implements ModelFixer {
 		LOGGER.info(
 				"Initial number of errors in model: " + errorsToFix.size() + "\nMaximum number of steps per episode: "
 						+ numberOfSteps + "\nErrors to fix: " + errorsToFix.toString());
-		LOGGER.info("Initializing Q-table for the errors.");
-		Set<Integer> unsupportedErrors = modelProcessor.initializeQTableForErrorsInModel(model);
-		for (Integer errorCode : unsupportedErrors) {
-			LOGGER.warning(
-					"Encountered error that could not be resolved. Adding to unsupported errors.\nCode: " + errorCode);
-			model.getModelType().addUnsupportedErrorCode(errorCode);
-		}
-
-		LOGGER.info("Number of episodes: " + numberOfEpisodes);
-		while (episode < numberOfEpisodes) {
-			File episodeModelFile = createDuplicateFile(duplicateFile,
-					originalModel.getParent() + "parmorel_temp_solution_" + episode + "_" + originalModel.getName());
-
-			Model episodeModel = getModel(episodeModelFile);
-			QSolution solution = handleEpisode(episodeModel, episode);
-			solution.setModel(episodeModelFile);
-			episodeModel.save();
-
-			double totalReward = solution.getWeight();
-			totalReward += rewardCalculator.calculateRewardFor(episodeModel, solution);
-			solution.setWeight(totalReward);
-			solution.setRewardCalculator(rewardCalculator);
-
-			if (isUnique(solution) && !solution.getSequence().isEmpty()) {
-				possibleSolutions.add(solution);
-				episodeModelFile.deleteOnExit();
-				LOGGER.info("Solution added to possible solitons: " + solution.getSequence().toString());
+		SolutionMaterializer materializer = openMaterializer(model);
+		if (decomposeByPackages) {
+			List<List<Integer>> independentGroups = model.getIndependentPackageGroups();
+			List<PackageGroup> groups = PackageDecomposition.findGroupsWithErrors(independentGroups, originalErrors,
+					model);
+			// A single group is worth repairing on its own if it leaves packages out
+			if (groups.size() > 1 || groups.size() < independentGroups.size()) {
+				QSolution combinedSolution = repairDecomposed(model, groups, materializer, publisher, startTime);
+				cacheRepair(cacheKey, combinedSolution);
+				recordForDeltaRepair(fragmentSignatures, combinedSolution);
+				return combinedSolution;
+			}
+		}
+		int plannedEpisodes = numberOfEpisodes;
+		boolean isLearning = true;
+		if (inferenceMode) {
+			if (repairGreedily(model, materializer, publisher)) {
+				plannedEpisodes = 0;
+				isLearning = false;
+			} else if (stopReason == StopReason.CANCELLED) {
+				cancelRepair(materializer, episode, startTime);
 			} else {
-				LOGGER.info("Solution discarded.");
-				discardedSequences++;
-				solution = null;
-				episodeModelFile.delete();
+				LOGGER.info("The learned policy did not repair the model. Falling back to exploration.");
+				plannedEpisodes = fallbackEpisodes;
+			}
+		}
+
+		if (isLearning) {
+			LOGGER.info("Initializing Q-table for the errors.");
+			Set<Integer> unsupportedErrors = modelProcessor.initializeQTableForErrorsInModel(model);
+			for (Integer errorCode : unsupportedErrors) {
+				LOGGER.warning("Encountered error that could not be resolved. Adding to unsupported errors.\nCode: "
+						+ errorCode);
+				model.getModelType().addUnsupportedErrorCode(errorCode);
+			}
+			if (repairRepository != null) {
+				int raised = repairRepository.warmStart(qTable, model.getStructuralFeatures());
+				LOGGER.info("Warm-started " + raised + " weights from similar models.");
+			}
+		}
+
+		// In a delta repair the episodes start from the actions reused from the last
+		// repair of the model
+		Model episodeSource = model;
+		List<Error> episodeErrors = originalErrors;
+		List<AppliedAction> reusedActions = Collections.emptyList();
+		if (fragmentSignatures != null && plannedEpisodes > 0) {
+			reusedActions = repairHistory.getReusableActions(originalModel, fragmentSignatures);
+			if (!reusedActions.isEmpty()) {
+				File deltaModelFile = materializer.newFile("delta_" + originalModel.getName());
+				episodeSource = materializer.replay(reusedActions, deltaModelFile);
+				episodeErrors = errorExtractor.extractErrorsFrom(episodeSource.getRepresentation(), true);
+				LOGGER.info("Reusing " + reusedActions.size() + " actions from the last repair. Errors left to explore: "
+						+ episodeErrors);
+				if (episodeErrors.isEmpty()) {
+					plannedEpisodes = 1;
+				}
 			}
+		}
+
+		LOGGER.info("Number of episodes: " + plannedEpisodes);
+		SolutionRewardPipeline rewardPipeline = null;
+		if (pipelineSolutionRewards && rewardCalculator.hasSolutionPreferences()) {
+			rewardPipeline = new SolutionRewardPipeline(rewardCalculator);
+		}
+		if (rewardPipeline != null && convergenceWindow > 0) {
+			// The weights are not complete before the pipeline is drained
+			LOGGER.info("Convergence detection is disabled while the solution rewards are pipelined.");
+			convergenceDetector = new ConvergenceDetector(0, convergenceTolerance);
+		} else {
+			convergenceDetector = new ConvergenceDetector(convergenceWindow, convergenceTolerance);
+		}
+		QSolution bestSolutionSoFar = null;
+		try {
+			while (episode < plannedEpisodes && !isBudgetUsedUp(episode)) {
+				File episodeModelFile = materializer.newFile("solution_" + episode + "_" + originalModel.getName());
 
-			LOGGER.info("EPISODE " + episode + " TOTAL REWARD " + totalReward + "\n\n\n");
+				Model episodeModel = copyModel(episodeSource, episodeModelFile);
+				errorsToFix = copyErrors(episodeErrors, episodeSource, episodeModel);
+				QSolution solution = handleEpisode(episodeModel, episode);
+				if (stopReason == StopReason.CANCELLED) {
+					// The unfinished episode is not kept or rewarded as a solution
+					episodeModel.unload();
+					break;
+				}
+				solution.getSequence().addAll(0, reusedActions);
+				solution.setRewardCalculator(rewardCalculator);
+				boolean foundNewBest = false;
 
-			// RESET initial model and extract actions + errors
-			errorsToFix.clear();
-			errorsToFix.addAll(originalErrors);
-			episode++;
+				if (solution.getSequence().isEmpty() || !isUnique(solution)) {
+					// Duplicates are cut off before the model is saved and measured
+					LOGGER.info("Solution discarded.");
+					discardedSequences++;
+					episodeModel.unload();
+					LOGGER.info("EPISODE " + episode + " TOTAL REWARD " + solution.getWeight() + "\n\n\n");
+				} else {
+					possibleSolutions.add(solution);
+					exploredSequences.add(solution.getSequence());
+					materializer.register(solution, episodeModelFile, episodeModel);
+					LOGGER.info("Solution added to possible solitons: " + solution.getSequence().toString());
+					if (rewardCalculator.hasSolutionPreferences()) {
+						// The solution preferences measure the model file
+						solution.getModel();
+					}
+
+					if (rewardPipeline != null) {
+						rewardPipeline.submit(solution, episodeModel);
+					} else {
+						double totalReward = solution.getWeight();
+						totalReward += rewardCalculator.calculateRewardFor(episodeModel, solution);
+						solution.setWeight(totalReward);
+						LOGGER.info("EPISODE " + episode + " TOTAL REWARD " + totalReward + "\n\n\n");
+						publishRewardedSolution(solution, publisher);
+					}
+					if (bestSolutionSoFar == null || solution.getWeight() > bestSolutionSoFar.getWeight()) {
+						bestSolutionSoFar = solution;
+						foundNewBest = true;
+					}
+				}
+
+				episode++;
+				convergenceDetector.recordEpisode(foundNewBest);
+				if (episode < plannedEpisodes && convergenceDetector.isConverged()) {
+					stopReason = StopReason.CONVERGED;
+					LOGGER.info("The learning converged after " + episode + " episodes.");
+				}
+			}
+			if (stopReason == StopReason.CANCELLED) {
+				cancelRepair(materializer, episode, startTime);
+			}
+			if (rewardPipeline != null) {
+				rewardPipeline.drain(solution -> publishRewardedSolution(solution, publisher));
+			}
+		} finally {
+			if (rewardPipeline != null) {
+				rewardPipeline.shutdown();
+			}
+			int restored = qTable.undoWarmStart();
+			if (restored > 0) {
+				LOGGER.info("Restored " + restored + " warm-started weights that were not learned.");
+			}
+			if (episodeSource != model) {
+				episodeSource.unload();
+			}
+		}
+		if (isLearning) {
+			rewardCalculator.rewardPostRepair(possibleSolutions);
 		}
-		rewardCalculator.rewardPostRepair(possibleSolutions);
 		QSolution bestSequence = findSolutionWithHighestWeight(possibleSolutions);
-		duplicateFile.delete();
 
 		long endTime = System.currentTimeMillis();
 		long executionTime = (endTime - startTime);
-		LOGGER.info("Time repairing model: " + executionTime + " ms");
+		// The greedy episode of the inference mode counts as an episode
+		int episodesRun = inferenceMode ? episode + 1 : episode;
+		int episodesSaved = stopReason == StopReason.CONVERGED ? plannedEpisodes - episode : 0;
+		lastRepairReport = new RepairReport(stopReason == null ? StopReason.COMPLETED : stopReason, episodesRun,
+				validationCounter.getNumberOfValidations() - validationsAtStart, possibleSolutions.size(),
+				executionTime, episodesSaved);
+		LOGGER.info("Time repairing model: " + executionTime + " ms\n" + lastRepairReport);
 		LOGGER.info("\n-----------------ALL SEQUENCES FOUND-------------------" + "\nSIZE: " + possibleSolutions.size()
 				+ "\nDISCARDED SEQUENCES: " + discardedSequences
 				+ "\n--------::::B E S T   S E Q U E N C E   I S::::---------\n" + bestSequence + " with "
 				+ bestSequence.getSequence().size() + " actions.");
 
-		saveKnowledge();
+		if (isLearning && savesKnowledge) {
+			saveKnowledge();
+			recordRepair(model, bestSequence);
+		}
+		cacheRepair(cacheKey, bestSequence);
+		recordForDeltaRepair(fragmentSignatures, bestSequence);
 		return bestSequence;
 	}
 
+	/**
+	 * Takes the solution from an earlier repair of the same model. The model of
+	 * the solution is rebuilt by replaying its actions when it is requested.
+	 * 
+	 * @param model        to repair
+	 * @param cachedRepair of the model
+	 * @param publisher    of the solutions
+	 * @param startTime    of the repair
+	 * @return the cached solution
+	 */
+	private QSolution repairFromCache(Model model, RepairCache.CachedRepair cachedRepair,
+			SubmissionPublisher<Solution> publisher, long startTime) {
+		possibleSolutions.clear();
+		solutionRanking = new SolutionRanking(solutionRankingSize);
+		exploredSequences.clear();
+		SolutionMaterializer materializer = openMaterializer(model);
+		QSolution solution = initializeSolution();
+		solution.getSequence().addAll(cachedRepair.getSequence());
+		solution.setWeight(cachedRepair.getWeight());
+		solution.setOriginal(originalModel);
+		solution.setRewardCalculator(rewardCalculator);
+		File cachedFile = materializer.newFile("solution_cached_" + originalModel.getName());
+		materializer.registerForReplay(solution, cachedFile);
+		possibleSolutions.add(solution);
+		exploredSequences.add(solution.getSequence());
+		publishRewardedSolution(solution, publisher);
+
+		stopReason = StopReason.CACHED;
+		lastRepairReport = new RepairReport(stopReason, 0,
+				validationCounter.getNumberOfValidations() - validationsAtStart, possibleSolutions.size(),
+				System.currentTimeMillis() - startTime);
+		LOGGER.info("Took the solution of " + originalModel.getName() + " from the cache: " + solution.getSequence()
+				+ "\n" + lastRepairReport);
+		return solution;
+	}
+
+	/**
+	 * Caches the best solution of the repair, unless it was stopped by the
+	 * budget.
+	 * 
+	 * @param cacheKey of the repair, or null if there is no cache
+	 * @param solution the best solution
+	 */
+	private void cacheRepair(String cacheKey, QSolution solution) {
+		if (cacheKey != null && lastRepairReport.isConverged() && !solution.getSequence().isEmpty()) {
+			repairCache.put(cacheKey, solution, qTable);
+		}
+	}
+
+	/**
+	 * Remembers the best solution of the repair for a later delta repair of the
+	 * model.
+	 * 
+	 * @param fragmentSignatures of the model before the repair, or null if delta
+	 *                           repairs are disabled
+	 * @param solution           the best solution
+	 */
+	private void recordForDeltaRepair(Map<String, String> fragmentSignatures, QSolution solution) {
+		if (fragmentSignatures != null && !solution.getSequence().isEmpty()) {
+			repairHistory.record(originalModel, fragmentSignatures, solution.getSequence());
+		}
+	}
+
+	/**
+	 * Repairs each group of packages in parallel, and combines the best sequences
+	 * of the groups into a single solution. The solution preferences reward the
+	 * combined solution once what the groups learned is added to the Q-table.
+	 * 
+	 * @param model        to repair
+	 * @param groups       of packages with errors
+	 * @param materializer of the combined solution
+	 * @param publisher    of the combined solution
+	 * @param startTime    of the repair
+	 * @return the combined solution
+	 */
+	private QSolution repairDecomposed(Model model, List<PackageGroup> groups, SolutionMaterializer materializer,
+			SubmissionPublisher<Solution> publisher, long startTime) {
+		LOGGER.info("Repairing " + groups.size() + " independent groups of packages in parallel.");
+		PackageDecomposition decomposition = new PackageDecomposition(this, groups);
+		try {
+			decomposition.start(model, originalModel.getName(), materializer, budget);
+			if (!decomposition.await(repairHandle)) {
+				stopReason = StopReason.CANCELLED;
+				cancelRepair(materializer, 0, startTime);
+			}
+			boolean hasLearned = decomposition.mergeLearningInto(qTable);
+
+			QSolution combinedSolution = initializeSolution();
+			combinedSolution.getSequence().addAll(decomposition.getCombinedSequence());
+			combinedSolution.setWeight(decomposition.getCombinedWeight());
+			combinedSolution.setOriginal(originalModel);
+			combinedSolution.setRewardCalculator(rewardCalculator);
+			File combinedFile = materializer.newFile("solution_combined_" + originalModel.getName());
+			materializer.registerForReplay(combinedSolution, combinedFile);
+			possibleSolutions.add(combinedSolution);
+			exploredSequences.add(combinedSolution.getSequence());
+			if (rewardCalculator.hasSolutionPreferences()) {
+				// The solution preferences measure the model file
+				combinedSolution.getModel();
+				double totalReward = combinedSolution.getWeight();
+				totalReward += rewardCalculator.calculateRewardFor(materializer.load(combinedSolution), combinedSolution);
+				combinedSolution.setWeight(totalReward);
+				hasLearned = true;
+			}
+			publishRewardedSolution(combinedSolution, publisher);
+
+			lastRepairReport = decomposition.createReport(
+					validationCounter.getNumberOfValidations() - validationsAtStart, possibleSolutions.size(),
+					System.currentTimeMillis() - startTime);
+			stopReason = lastRepairReport.getStopReason();
+			LOGGER.info("Combined the solutions of " + groups.size() + " groups of packages: "
+					+ combinedSolution.getSequence() + "\n" + lastRepairReport);
+			if (hasLearned && savesKnowledge) {
+				saveKnowledge();
+			}
+			if (savesKnowledge) {
+				recordRepair(model, combinedSolution);
+			}
+			return combinedSolution;
+		} finally {
+			decomposition.close();
+		}
+	}
+
+	/**
+	 * Gives a fixer for a group of packages the settings of this fixer. The group
+	 * fixer does not save its knowledge or record its repair, as what it learns is
+	 * added to this fixer.
+	 * 
+	 * @param groupFixer
+	 */
+	void configureSubProblemFixer(QModelFixer groupFixer) {
+		groupFixer.numberOfEpisodes = numberOfEpisodes;
+		groupFixer.randomFactor = randomFactor;
+		groupFixer.pipelineSolutionRewards = pipelineSolutionRewards;
+		groupFixer.avoidKnownSequences = avoidKnownSequences;
+		groupFixer.maxStateRecurrences = maxStateRecurrences;
+		groupFixer.solutionCacheSize = solutionCacheSize;
+		groupFixer.inferenceMode = inferenceMode;
+		groupFixer.compiledPolicy = compiledPolicy;
+		groupFixer.fallbackEpisodes = fallbackEpisodes;
+		groupFixer.explorationStrategy = explorationStrategy;
+		groupFixer.errorScheduler = errorScheduler;
+		groupFixer.convergenceWindow = convergenceWindow;
+		groupFixer.convergenceTolerance = convergenceTolerance;
+		groupFixer.repairRepository = repairRepository;
+		groupFixer.scratchWorkspace = scratchWorkspace;
+		groupFixer.savesKnowledge = false;
+	}
+
+	/**
+	 * Adds the repair to the repository of previous repairs, if there is one.
+	 * 
+	 * @param model    that was repaired
+	 * @param solution the best solution of the repair
+	 */
+	private void recordRepair(Model model, QSolution solution) {
+		if (repairRepository != null && !solution.getSequence().isEmpty()) {
+			repairRepository.add(model.getStructuralFeatures(), solution.getSequence());
+			repairRepository.save();
+		}
+	}
+
+	/**
+	 * Follows the learned policy greedily in a single episode. Nothing is written
+	 * to the Q-table. If the episode repairs the model, its solution is kept and
+	 * published.
+	 * 
+	 * @param model        to repair
+	 * @param materializer of the solutions
+	 * @param publisher    of the solutions
+	 * @return true if the model was repaired, false if the policy meets an unknown
+	 *         error, goes in circles or leaves errors in the model
+	 */
+	private boolean repairGreedily(Model model, SolutionMaterializer materializer,
+			SubmissionPublisher<Solution> publisher) {
+		File episodeModelFile = materializer.newFile("solution_greedy_" + originalModel.getName());
+		Model episodeModel = copyModel(model, episodeModelFile);
+		errorsToFix = copyErrors(originalErrors, model, episodeModel);
+		QSolution solution = handleGreedyEpisode(episodeModel);
+		if (solution == null) {
+			episodeModel.unload();
+			return false;
+		}
+		solution.setRewardCalculator(rewardCalculator);
+		possibleSolutions.add(solution);
+		exploredSequences.add(solution.getSequence());
+		materializer.register(solution, episodeModelFile, episodeModel);
+		LOGGER.info("The learned policy repaired the model: " + solution.getSequence().toString());
+		publishRewardedSolution(solution, publisher);
+		return true;
+	}
+
+	/**
+	 * Handles the greedy episode of the inference mode. The rewards are estimated
+	 * for the weight of the solution, but not recorded.
+	 * 
+	 * @param episodeModel
+	 * @return the solution, or null if the episode did not repair the model
+	 */
+	private QSolution handleGreedyEpisode(Model episodeModel) {
+		QSolution solution = initializeSolution();
+		LoopDetector loopDetector = new LoopDetector(0);
+		loopDetector.recordState(errorsToFix);
+		int totalReward = 0;
+		int step = 0;
+
+		while (step < numberOfSteps && !isBudgetUsedUp(0)) {
+			Error currentErrorToFix = selectErrorToFix(errorsToFix, episodeModel);
+			if (currentErrorToFix == null) {
+				break;
+			}
+			Action action = getGreedyActionFor(currentErrorToFix);
+			if (action == null) {
+				LOGGER.info("The learned policy has no action for error " + currentErrorToFix.getCode());
+				return null;
+			}
+			LOGGER.info("GREEDY STEP " + step + ", Fixing error " + currentErrorToFix.getCode() + " with action "
+					+ action.getName());
+
+			rewardCalculator.initializePreferencesBeforeChoosingAction(episodeModel);
+			List<String> targetIdentifiers = getTargetIdentifiers(currentErrorToFix, episodeModel);
+			List<Error> errorsBeforeAction = new ArrayList<>(errorsToFix);
+			errorsToFix = modelProcessor.tryApplyAction(currentErrorToFix, action, episodeModel);
+			if (errorsToFix == null) {
+				return null;
+			}
+			StepContext stepContext = new StepContext(errorsBeforeAction, errorsToFix);
+			totalReward += rewardCalculator.estimateRewardFor(episodeModel, currentErrorToFix, action, stepContext);
+			solution.getSequence().add(new AppliedAction(currentErrorToFix, action, targetIdentifiers));
+			step++;
+			reportProgress(0, step);
+			if (loopDetector.recordState(errorsToFix)) {
+				LOGGER.info("The learned policy is going in circles.");
+				return null;
+			}
+		}
+
+		for (Error error : errorsToFix) {
+			if (!episodeModel.getModelType().doesNotSupportError(error.getCode())) {
+				return null;
+			}
+		}
+		solution.setOriginal(originalModel);
+		solution.setWeight(totalReward);
+		return solution;
+	}
+
+	/**
+	 * Gets the action the learned policy takes for the error, from the compiled
+	 * policy if one is set.
+	 * 
+	 * @param error
+	 * @return the optimal action, or null if the policy has no action for the error
+	 */
+	private Action getGreedyActionFor(Error error) {
+		if (compiledPolicy != null) {
+			return compiledPolicy.getOptimalAction(error.getCode());
+		}
+		try {
+			return knowledge.getOptimalActionForErrorCode(error.getCode());
+		} catch (UnsupportedErrorException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Ranks and publishes a solution once its reward is complete.
+	 * 
+	 * @param solution
+	 * @param publisher
+	 */
+	private void publishRewardedSolution(QSolution solution, SubmissionPublisher<Solution> publisher) {
+		bestWeight = Math.max(bestWeight, solution.getWeight());
+		solutionRanking.offer(solution);
+		publisher.submit(solution);
+	}
+
+	/**
+	 * Cleans up after a cancelled repair. The files of the solutions are deleted,
+	 * and the solutions are forgotten. Rewards that are not yet applied are
+	 * skipped, and the knowledge is not saved. The Q-table keeps the updates of
+	 * the steps that were finished, each of which is complete.
+	 * 
+	 * @param materializer of the solutions
+	 * @param episode      the number of episodes run
+	 * @param startTime    of the repair
+	 * @throws CancellationException always
+	 */
+	private void cancelRepair(SolutionMaterializer materializer, int episode, long startTime) {
+		materializer.releaseAll();
+		lastRepairReport = new RepairReport(StopReason.CANCELLED, episode,
+				validationCounter.getNumberOfValidations() - validationsAtStart, possibleSolutions.size(),
+				System.currentTimeMillis() - startTime);
+		possibleSolutions.clear();
+		solutionRanking = new SolutionRanking(solutionRankingSize);
+		exploredSequences.clear();
+		LOGGER.info("Cancelled the repair of " + originalModel.getName() + "\n" + lastRepairReport);
+		throw new CancellationException("The repair of " + originalModel.getName() + " was cancelled");
+	}
+
+	/**
+	 * Reports the progress of the repair to its handle.
+	 * 
+	 * @param episode
+	 * @param step
+	 */
+	private void reportProgress(int episode, int step) {
+		int errorsRemaining = errorsToFix == null ? 0 : errorsToFix.size();
+		repairHandle.setProgress(
+				new RepairProgress(episode, step, errorsRemaining, possibleSolutions.size(), bestWeight));
+	}
+
+	/**
+	 * Checks if the repair is cancelled or any limit of the budget is reached, and
+	 * records the reason to stop the first time it is.
+	 * 
+	 * @param episode the number of episodes finished before the current one
+	 * @return true if the repair should stop
+	 */
+	private boolean isBudgetUsedUp(int episode) {
+		if (stopReason == null && repairHandle.isCancelled()) {
+			stopReason = StopReason.CANCELLED;
+		}
+		if (stopReason == null) {
+			stopReason = budget.getReachedLimit(System.currentTimeMillis() - repairStartTime, episode,
+					validationCounter.getNumberOfValidations() - validationsAtStart);
+			if (stopReason != null) {
+				LOGGER.info("Stopping the repair: " + stopReason);
+			}
+		}
+		return stopReason != null;
+	}
+
+	/**
+	 * Gets the report of the last repair.
+	 * 
+	 * @return the report, or null if no repair has finished
+	 */
+	public RepairReport getLastRepairReport() {
+		return lastRepairReport;
+	}
+
 	/**
 	 * Logs all encountered unsupported errors with a warning and removes them from
 	 * the errorsToFix.
@@ -281,48 +1373,113 @@ public abstract class QModelFixer implements ModelFixer {
 	protected abstract Model initializeModelFromFile();
 
 	/**
-	 * Gets the model from the file
+	 * Initializes the model from its serialized content. The model is located at
+	 * {@link QModelFixer#originalModel}, which is not read.
 	 * 
-	 * @param model file
+	 * @param content the serialized model
 	 * @return the model
+	 * @throws IOException if the content could not be read
 	 */
-	protected abstract Model getModel(File model);
+	protected abstract Model initializeModelFromStream(InputStream content) throws IOException;
 
 	/**
-	 * Takes the original file as parameter and creates a duplicate of the file that
-	 * will represent the repaired model.
+	 * Creates the location of a model that is repaired from memory. Nothing is
+	 * written to it unless the file of the original model or of a solution is
+	 * requested.
 	 * 
-	 * @param file to copy
-	 * @param path to the new copy
-	 * @return the created duplicate
+	 * @return the location, which does not exist
 	 */
-	private File createDuplicateFile(File fileToCopy, String path) {
-		File destinationFile = new File(path);
-		try {
-			Files.copy(fileToCopy.toPath(), destinationFile.toPath());
-		} catch (FileAlreadyExistsException e) {
-			if (destinationFile.toPath().toString().contains("temp")) {
-				destinationFile.delete();
-				try {
-					Files.copy(fileToCopy.toPath(), destinationFile.toPath());
-				} catch (IOException e1) {
-					e1.printStackTrace();
-				}
+	protected File createInMemoryLocation() {
+		return scratchWorkspace.getRoot().resolve("model_" + UUID.randomUUID()).toFile();
+	}
+
+	/**
+	 * Loads a model the fixer has written, like the model of a solution.
+	 * 
+	 * @param file containing the model
+	 * @return the model
+	 */
+	protected abstract Model loadModel(File file);
+
+	/**
+	 * Creates a copy of the model in memory. The copy is not written to the
+	 * destination until it is saved.
+	 * 
+	 * @param model       to copy
+	 * @param destination the file the copy is saved to
+	 * @return the copy
+	 */
+	protected abstract Model copyModel(Model model, File destination);
+
+	/**
+	 * Creates an unsaved copy holding only the specified packages of the model.
+	 * The packages keep their order, so the package at index i in the copy is the
+	 * one at packageIndices.get(i) in the model.
+	 * 
+	 * @param model          to copy
+	 * @param packageIndices of the packages to copy, in ascending order
+	 * @param destination    the file the copy is saved to
+	 * @return the copy
+	 */
+	protected abstract Model copyPackages(Model model, List<Integer> packageIndices, File destination);
+
+	/**
+	 * Gets the name of a file that only the fixers read, like the model of a group
+	 * of packages. A model type can give such files a format of its own.
+	 * 
+	 * @param name of the file
+	 * @return the name to write the file to
+	 */
+	protected String getInternalFileName(String name) {
+		return name;
+	}
+
+	/**
+	 * Creates a fixer of the same kind, with the same preferences, for repairing a
+	 * group of packages. The fixer learns into the knowledge it is given, and does
+	 * not load the knowledge file.
+	 * 
+	 * @param knowledge to learn into, like a copy of the knowledge of this fixer
+	 * @return a new fixer
+	 */
+	protected abstract QModelFixer createSubProblemFixer(Knowledge knowledge);
+
+	/**
+	 * Copies the errors, replacing their contexts with the corresponding elements
+	 * in the copy of the model.
+	 * 
+	 * @param errors to copy
+	 * @param model  the errors were found in
+	 * @param copy   of the model
+	 * @return the errors with contexts in the copy
+	 */
+	private List<Error> copyErrors(List<Error> errors, Model model, Model copy) {
+		List<Error> copiedErrors = new ArrayList<>();
+		for (Error error : errors) {
+			List<Object> contexts = new ArrayList<>();
+			for (Object context : error.getContexts()) {
+				Object copiedContext = copy.resolve(model.getIdentifierOf(context));
+				contexts.add(copiedContext == null ? context : copiedContext);
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
+			copiedErrors.add(new Error(error.getCode(), error.getMessage(), contexts, error.getPackageIndex()));
 		}
-		return destinationFile;
+		return copiedErrors;
 	}
 
 	/**
-	 * Takes the original model-file and creates a duplicate of the file that will
-	 * represent the repaired model.
+	 * Gets the identifiers of the contexts of the error, so the action applied to
+	 * it can be replayed.
 	 * 
-	 * @return the created duplicate
+	 * @param error
+	 * @param model the error was found in
+	 * @return the identifiers of the contexts
 	 */
-	protected File createDuplicateFile() {
-		return createDuplicateFile(originalModel, originalModel.getParent() + "_temp_" + originalModel.getName());
+	private List<String> getTargetIdentifiers(Error error, Model model) {
+		List<String> identifiers = new ArrayList<>();
+		for (Object context : error.getContexts()) {
+			identifiers.add(model.getIdentifierOf(context));
+		}
+		return identifiers;
 	}
 
 	/**
@@ -344,37 +1501,47 @@ public abstract class QModelFixer implements ModelFixer {
 	 */
 	private QSolution handleEpisode(Model episodeModel, int episode) {
 		QSolution solution = initializeSolution();
+		SequenceIndex.Cursor sequenceCursor = exploredSequences.start();
+		LoopDetector loopDetector = new LoopDetector(maxStateRecurrences);
+		loopDetector.recordState(errorsToFix);
 		int totalReward = 0;
 		int step = 0;
+		boolean isEndedByLoop = false;
 
-		while (step < numberOfSteps) {
-			while (!errorsToFix.isEmpty()
-					&& episodeModel.getModelType().doesNotSupportError(errorsToFix.get(0).getCode())) {
-				errorsToFix.remove(0);
-			}
-			if (!errorsToFix.isEmpty()) {
-				Error currentErrorToFix = errorsToFix.get(0);
+		while (step < numberOfSteps && !isBudgetUsedUp(episode)) {
+			Error currentErrorToFix = selectErrorToFix(errorsToFix, episodeModel);
+			if (currentErrorToFix != null) {
 				try {
 					LOGGER.info("EPISODE " + episode + ", STEP " + step + ", Fixing error "
 							+ currentErrorToFix.getCode() + ": " + currentErrorToFix.getMessage());
-					totalReward += handleStep(episodeModel, solution, episode, currentErrorToFix);
+					totalReward += handleStep(episodeModel, solution, episode, currentErrorToFix, sequenceCursor,
+							loopDetector);
+					if (loopDetector.recordState(errorsToFix)) {
+						LOGGER.info("EPISODE " + episode + " is going in circles. Ending episode after step " + step);
+						isEndedByLoop = true;
+						step++;
+						break;
+					}
 				} catch (UnsupportedErrorException e) {
 					LOGGER.warning("Encountered error that could not be resolved. Adding to unsupported errors.\nCode: "
 							+ currentErrorToFix.getCode() + "\nMessage: " + currentErrorToFix.getMessage());
 					episodeModel.getModelType().addUnsupportedErrorCode(e.getErrorCode());
-					errorsToFix.remove(0);
+					errorsToFix.remove(currentErrorToFix);
 				}
 				step++;
+				reportProgress(episode, step);
 			} else {
 				break;
 			}
 		}
 
 		int val;
-		if (solution.getSequence().size() > 7) {
-			val = checkForLoopsIn(solution.getSequence());
+		if (isEndedByLoop) {
+			totalReward -= loopDetector.getPenaltyForEndedEpisode(solution.getSequence(), numberOfSteps - step);
+		} else if (solution.getSequence().size() > 7) {
+			val = LoopDetector.countLoopsIn(solution.getSequence());
 			if (val > 1) {
-				totalReward -= val * 1000;
+				totalReward -= val * LoopDetector.LOOP_PENALTY;
 			}
 		}
 		solution.setOriginal(originalModel);
@@ -382,6 +1549,39 @@ public abstract class QModelFixer implements ModelFixer {
 		return solution;
 	}
 
+	/**
+	 * Selects the next error to fix among the supported errors.
+	 * 
+	 * @param errors       in the model
+	 * @param episodeModel
+	 * @return the error selected by the scheduler, or null if none of the errors
+	 *         are supported
+	 */
+	private Error selectErrorToFix(List<Error> errors, Model episodeModel) {
+		List<Error> supportedErrors = new ArrayList<>();
+		for (Error error : errors) {
+			if (!episodeModel.getModelType().doesNotSupportError(error.getCode())) {
+				supportedErrors.add(error);
+			}
+		}
+		if (supportedErrors.isEmpty()) {
+			return null;
+		}
+		return errorScheduler.selectNext(supportedErrors, episodeModel);
+	}
+
+	/**
+	 * Gets the error the episode is expected to fix after the current step, which
+	 * is used for the weight update.
+	 * 
+	 * @param episodeModel
+	 * @return the next error, the first error if none are supported
+	 */
+	private Error nextErrorAfterStep(Model episodeModel) {
+		Error nextError = selectErrorToFix(errorsToFix, episodeModel);
+		return nextError == null ? errorsToFix.get(0) : nextError;
+	}
+
 	/**
 	 * Initializes a new solution-object of the correct type.
 	 * 
@@ -396,12 +1596,14 @@ public abstract class QModelFixer implements ModelFixer {
 	 * @param sequence
 	 * @param episode
 	 * @param currentErrorToFix
+	 * @param sequenceCursor following the episode through the known sequences
+	 * @param loopDetector tracking the states of the episode
 	 * @return the reward from the step
 	 * @throws UnsupportedErrorException if the error code is not in the Q-table,
 	 *                                   and cannot be added
 	 */
-	private int handleStep(Model episodeModel, QSolution sequence, int episode, Error currentErrorToFix)
-			throws UnsupportedErrorException {
+	private int handleStep(Model episodeModel, QSolution sequence, int episode, Error currentErrorToFix,
+			SequenceIndex.Cursor sequenceCursor, LoopDetector loopDetector) throws UnsupportedErrorException {
 		if (!qTable.containsErrorCode(currentErrorToFix.getCode())) {
 			LOGGER.info("Error " + currentErrorToFix.getCode() + ", " + currentErrorToFix.getMessage()
 					+ ", does not exist in Q-table. Attempting to solve...");
@@ -418,21 +1620,28 @@ public abstract class QModelFixer implements ModelFixer {
 		}
 
 		rewardCalculator.initializePreferencesBeforeChoosingAction(episodeModel);
-		Action action = chooseAction(currentErrorToFix);
+		Action action = chooseAction(currentErrorToFix, sequenceCursor, loopDetector);
 		LOGGER.info("Chose action " + action.getName() + " in context " + action.getContextId() + " with weight "
 				+ action.getWeight());
 
+		List<String> targetIdentifiers = getTargetIdentifiers(currentErrorToFix, episodeModel);
+		List<Error> errorsBeforeAction = new ArrayList<>(errorsToFix);
 		errorsToFix.clear();
+		action.recordVisit();
 		errorsToFix = modelProcessor.tryApplyAction(currentErrorToFix, action, episodeModel);
-		reward = rewardCalculator.calculateRewardFor(episodeModel, currentErrorToFix, action);
+		StepContext step = new StepContext(errorsBeforeAction, errorsToFix);
+		reward = rewardCalculator.calculateRewardFor(episodeModel, currentErrorToFix, action, step);
+		errorScheduler.recordStep(currentErrorToFix, errorsBeforeAction, errorsToFix);
 
 		sequence.setId(episode);
 		List<AppliedAction> appliedActions = sequence.getSequence();
-		appliedActions.add(new AppliedAction(currentErrorToFix, action));
+		appliedActions.add(new AppliedAction(currentErrorToFix, action, targetIdentifiers));
+		sequenceCursor.advance(action);
 		
 		int context = action.getContextId();
+		double weightBeforeUpdate = action.getWeight();
 		if (!errorsToFix.isEmpty()) {
-			Error nextErrorToFix = errorsToFix.get(0);
+			Error nextErrorToFix = nextErrorAfterStep(episodeModel);
 			LOGGER.info("Next error code: " + nextErrorToFix.getCode());
 			if (!qTable.containsErrorCode(nextErrorToFix.getCode())) {
 				LOGGER.info("Error " + nextErrorToFix.getCode() + ", " + nextErrorToFix.getMessage()
@@ -447,7 +1656,7 @@ public abstract class QModelFixer implements ModelFixer {
 				}
 			}
 			
-			nextErrorToFix = errorsToFix.get(0);
+			nextErrorToFix = nextErrorAfterStep(episodeModel);
 			Action a;
 			try {
 				a = knowledge.getOptimalActionForErrorCode(nextErrorToFix.getCode());
@@ -478,6 +1687,7 @@ public abstract class QModelFixer implements ModelFixer {
 		else {
 			updateQTable(qTable, currentErrorToFix.getCode(), context, action.getId(), reward);
 		}
+		convergenceDetector.recordWeightChange(Math.abs(action.getWeight() - weightBeforeUpdate));
 
 		return reward;
 	}
@@ -508,60 +1718,19 @@ public abstract class QModelFixer implements ModelFixer {
 
 	/**
 	 * Checks if a solution is equal to any other with respect to the other
-	 * potential soluions.
+	 * potential soluions. The lookup only depends on the length of the sequence.
 	 * 
 	 * @param solution
 	 * @return true if the solution is unique, false otherwise
 	 */
 	private boolean isUnique(QSolution solution) {
-		for (QSolution otherSolution : possibleSolutions) {
-			if (solution.getSequence().size() == otherSolution.getSequence().size()) {
-				List<AppliedAction> solutionSequence = solution.getSequence();
-				List<AppliedAction> otherSequence = otherSolution.getSequence();
-
-				boolean solutionsAreEqual = true;
-				for (int i = 0; i < solution.getSequence().size() && solutionsAreEqual; i++) {
-					if (!solutionSequence.get(i).getAction().equals(otherSequence.get(i).getAction())) {
-						solutionsAreEqual = false;
-					}
-				}
-				if (solutionsAreEqual) {
-					LOGGER.info("Solution " + solution.getSequence().toString() + " already exists.");
-					return false;
-				}
-			}
+		if (exploredSequences.contains(solution.getSequence())) {
+			LOGGER.info("Solution " + solution.getSequence().toString() + " already exists.");
+			return false;
 		}
 		return true;
 	}
 
-	private int checkForLoopsIn(List<AppliedAction> performedActions) {
-		List<Error> errors = new ArrayList<Error>();
-		int value = 0;
-		int index, index2 = 0;
-		for (int i = 0; i < performedActions.size(); i++) {
-			errors.add(performedActions.get(i).getError());
-			if (errors.size() > 2) {
-				if (performedActions.get(i).getError().getCode() == errors.get(i - 2).getCode()) {
-					if (performedActions.get(i).getError().getContexts().get(0) == null) {
-						index = 1;
-					} else {
-						index = 0;
-					}
-					if (errors.get(i - 2).getContexts().get(0) == null) {
-						index2 = 1;
-					} else {
-						index2 = 0;
-					}
-					if (performedActions.get(i).getError().getContexts().get(index).getClass() == errors.get(i - 2)
-							.getContexts().get(index2).getClass()) {
-						value++;
-					}
-				}
-			}
-		}
-		return value;
-	}
-
 	/**
 	 * Finds the solution with the highest weight from the list passed as parameter.
 	 * If the list is empty, an empty solution is returned.
@@ -585,10 +1754,67 @@ public abstract class QModelFixer implements ModelFixer {
 		return highWeightSolution;
 	}
 
+	/**
+	 * Creates the materializer of the solutions of a repair, with a scratch
+	 * directory of its own. The solutions of the oldest repairs are discarded if
+	 * more would be retained than allowed.
+	 * 
+	 * @param model the original model
+	 * @return the materializer
+	 */
+	private SolutionMaterializer openMaterializer(Model model) {
+		while (retainedMaterializers.size() >= retainedRepairs) {
+			retainedMaterializers.removeFirst().releaseAll();
+			LOGGER.info("Discarded the solutions of an earlier repair to stay within " + retainedRepairs
+					+ " retained repairs.");
+		}
+		ScratchDirectory directory = scratchWorkspace.openDirectory(originalModel.getName());
+		lastMaterializer = new SolutionMaterializer(model, destination -> copyModel(model, destination),
+				this::loadModel, modelProcessor, directory, solutionCacheSize);
+		retainedMaterializers.addLast(lastMaterializer);
+		return lastMaterializer;
+	}
+
+	/**
+	 * Discards all the solutions of the last repair, deleting its scratch
+	 * directory with the files of the solutions. The solutions can no longer be
+	 * written to file, and their models are unloaded together with the original
+	 * model.
+	 */
+	public void discardSolutions() {
+		if (lastMaterializer != null) {
+			retainedMaterializers.remove(lastMaterializer);
+			lastMaterializer.releaseAll();
+			lastMaterializer = null;
+		}
+		for (Solution solution : possibleSolutions) {
+			solution.discard();
+		}
+	}
+
+	/**
+	 * Gets all the solutions from the last repair, the one with the highest weight
+	 * first.
+	 * 
+	 * @return a list of the solutions
+	 */
 	@Override
 	public List<Solution> getPossibleSolutions() {
 		List<Solution> solutions = new ArrayList<>(possibleSolutions);
 		solutions.sort(Collections.reverseOrder());
 		return solutions;
 	}
+
+	/**
+	 * Gets the best solutions from the last repair, the one with the highest
+	 * weight first. The number of solutions is limited by
+	 * {@link QModelFixer#setSolutionRankingSize(int)}. The ranking is kept up to
+	 * date as the solutions are rewarded, so it is cheaper than sorting all the
+	 * solutions.
+	 * 
+	 * @return an unmodifiable list of the best solutions
+	 */
+	public List<Solution> getRankedSolutions() {
+		return solutionRanking.toList();
+	}
 }
\ No newline at end of file
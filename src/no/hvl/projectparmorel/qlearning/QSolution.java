@@ -1,6 +1,7 @@
 package no.hvl.projectparmorel.qlearning;
 
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,6 +12,7 @@ public abstract class QSolution extends Solution  implements Comparable<QSolutio
 	private List<AppliedAction> sequence;
 	private double weight;
 	private RewardCalculator rewardCalculator;
+	private SolutionMaterializer materializer;
 
 	public QSolution() {
 		super();
@@ -53,6 +55,99 @@ public abstract class QSolution extends Solution  implements Comparable<QSolutio
 		this.rewardCalculator = rewardCalculator;
 	}
 	
+	/**
+	 * Gets the file containing the repaired model. The model is written to the file
+	 * the first time it is requested.
+	 * 
+	 * @return the file containing the model
+	 * @throws UncheckedIOException  if the model does not fit in the scratch
+	 *                               workspace
+	 * @throws IllegalStateException if the solutions of the repair have been
+	 *                               discarded
+	 */
+	@Override
+	public File getModel() {
+		if (materializer != null) {
+			return materializer.materialize(this);
+		}
+		return super.getModel();
+	}
+
+	/**
+	 * Gets the repaired model in memory, without writing it to file. The
+	 * representation stays loaded until the solution is discarded, or the
+	 * solutions of the repair are discarded, so it should be copied if it is kept
+	 * longer.
+	 * 
+	 * @return the representation of the repaired model
+	 * @throws IllegalStateException if the solution has been discarded
+	 */
+	public Object getModelRepresentation() {
+		return loadModel().getRepresentation();
+	}
+
+	/**
+	 * Gets the repaired model serialized, without writing it to file.
+	 * 
+	 * @return the content of the repaired model
+	 * @throws IllegalStateException if the solution has been discarded
+	 */
+	public byte[] getModelContent() {
+		return loadModel().getContent();
+	}
+
+	private Model loadModel() {
+		if (materializer == null) {
+			throw new IllegalStateException("The model of solution " + getId() + " is not in memory");
+		}
+		return materializer.load(this);
+	}
+
+	/**
+	 * Gets the file containing the original model. A model that was repaired from
+	 * memory is written to the file the first time it is requested.
+	 * 
+	 * @return the file containing the original model
+	 * @throws IllegalStateException if the original model was written from memory
+	 *                               and the solutions of the repair have been
+	 *                               discarded
+	 */
+	@Override
+	public File getOriginal() {
+		if (materializer != null && super.getOriginal() != null) {
+			return materializer.materializeOriginal(super.getOriginal());
+		}
+		return super.getOriginal();
+	}
+
+	@Override
+	public void discard() {
+		if (materializer != null) {
+			materializer.release(this);
+			materializer = null;
+		} else {
+			super.discard();
+		}
+	}
+
+	/**
+	 * Set the materializer writing the model to file when it is requested.
+	 * 
+	 * @param materializer
+	 */
+	void setMaterializer(SolutionMaterializer materializer) {
+		this.materializer = materializer;
+	}
+
+	/**
+	 * Gets the location of the model file without writing the model to it.
+	 * 
+	 * @return the location of the model file
+	 */
+	File getModelLocation() {
+		return super.getModel();
+	}
+
 	public List<AppliedAction> getSequence() {
 		return sequence;
 	}
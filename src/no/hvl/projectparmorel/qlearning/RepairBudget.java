@@ -0,0 +1,98 @@
+package no.hvl.projectparmorel.qlearning;
+
+/**
+ * Limits how much work a repair may do. A repair stops when any of the limits
+ * is reached, and returns the best solution found so far. The limits are
+ * checked between the steps of an episode, so a step in progress is always
+ * finished.
+ * 
+ * A new budget has no limits.
+ */
+public class RepairBudget {
+	private long timeLimit;
+	private int maxEpisodes;
+	private long maxValidations;
+
+	public RepairBudget() {
+		timeLimit = Long.MAX_VALUE;
+		maxEpisodes = Integer.MAX_VALUE;
+		maxValidations = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Sets the wall-clock time the repair may take.
+	 * 
+	 * @param timeLimit in milliseconds
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Gets the wall-clock time the repair may take.
+	 * 
+	 * @return the time limit in milliseconds
+	 */
+	public long getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Sets the maximum number of episodes. The repair never runs more episodes
+	 * than it has planned, so a larger limit has no effect.
+	 * 
+	 * @param maxEpisodes
+	 */
+	public void setMaxEpisodes(int maxEpisodes) {
+		this.maxEpisodes = maxEpisodes;
+	}
+
+	/**
+	 * Gets the maximum number of episodes.
+	 * 
+	 * @return the maximum number of episodes
+	 */
+	public int getMaxEpisodes() {
+		return maxEpisodes;
+	}
+
+	/**
+	 * Sets the maximum number of times the model may be validated to extract its
+	 * errors.
+	 * 
+	 * @param maxValidations
+	 */
+	public void setMaxValidations(long maxValidations) {
+		this.maxValidations = maxValidations;
+	}
+
+	/**
+	 * Gets the maximum number of validations.
+	 * 
+	 * @return the maximum number of validations
+	 */
+	public long getMaxValidations() {
+		return maxValidations;
+	}
+
+	/**
+	 * Finds the first limit that is reached.
+	 * 
+	 * @param elapsedTime in milliseconds
+	 * @param episodes    that have been started
+	 * @param validations that have been done
+	 * @return the reason to stop, or null if no limit is reached
+	 */
+	StopReason getReachedLimit(long elapsedTime, int episodes, long validations) {
+		if (elapsedTime >= timeLimit) {
+			return StopReason.TIME_LIMIT;
+		}
+		if (episodes >= maxEpisodes) {
+			return StopReason.EPISODE_LIMIT;
+		}
+		if (validations >= maxValidations) {
+			return StopReason.VALIDATION_LIMIT;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,162 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import no.hvl.projectparmorel.qlearning.knowledge.QTable;
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+/**
+ * Remembers the best solutions of finished repairs, so a model submitted again
+ * with the same preferences is repaired without running the episodes.
+ *
+ * A repair is looked up by the content hash of the model and the preferences.
+ * Only the sequence of actions is kept, and the model of the solution is
+ * rebuilt by replaying it when it is requested.
+ *
+ * Entries expire after the time to live, and the least recently used entries
+ * are dropped once the cache is full. An entry is also dropped once the
+ * knowledge has changed enough to repair the model differently: the cache
+ * remembers the optimal action for each error code in the sequence, and the
+ * entry is dropped when one of them is no longer optimal.
+ */
+public class RepairCache {
+	public static final int DEFAULT_SIZE = 64;
+	public static final long DEFAULT_TIME_TO_LIVE_MINUTES = 60;
+
+	private final long timeToLive;
+	private final Map<String, CachedRepair> cache;
+
+	public RepairCache() {
+		this(DEFAULT_SIZE, DEFAULT_TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * @param size       the maximum number of repairs kept
+	 * @param timeToLive how long a repair is kept
+	 * @param unit       of the time to live
+	 */
+	public RepairCache(int size, long timeToLive, TimeUnit unit) {
+		this.timeToLive = unit.toMillis(timeToLive);
+		cache = new LinkedHashMap<String, CachedRepair>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedRepair> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	/**
+	 * Creates the key of a repair.
+	 *
+	 * @param model       to repair
+	 * @param preferences of the repair
+	 * @return the key
+	 */
+	static String keyFor(Model model, List<PreferenceOption> preferences) {
+		return keyFor(model.getContentHash(), preferences);
+	}
+
+	/**
+	 * Creates the key of a repair. The order of the preferences does not change
+	 * the reward, so the key does not depend on it.
+	 *
+	 * @param contentHash of the model to repair
+	 * @param preferences of the repair
+	 * @return the key
+	 */
+	static String keyFor(String contentHash, List<PreferenceOption> preferences) {
+		List<PreferenceOption> sortedPreferences = new ArrayList<>(preferences);
+		Collections.sort(sortedPreferences);
+		return contentHash + sortedPreferences;
+	}
+
+	/**
+	 * Gets the sequence of a cached repair, unless it has expired or the
+	 * knowledge no longer agrees with it.
+	 *
+	 * @param key    of the repair
+	 * @param qTable holding the current knowledge
+	 * @return the cached repair, or null if there is none
+	 */
+	synchronized CachedRepair get(String key, QTable qTable) {
+		CachedRepair cached = cache.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - cached.createdAt > timeToLive
+				|| !cached.optimalActions.equals(getOptimalActions(cached.sequence, qTable))) {
+			cache.remove(key);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Caches the best solution of a repair.
+	 *
+	 * @param key      of the repair
+	 * @param solution the best solution
+	 * @param qTable   holding the knowledge after the repair
+	 */
+	synchronized void put(String key, QSolution solution, QTable qTable) {
+		List<AppliedAction> sequence = Collections.unmodifiableList(new ArrayList<>(solution.getSequence()));
+		cache.put(key, new CachedRepair(sequence, solution.getWeight(), getOptimalActions(sequence, qTable)));
+	}
+
+	/**
+	 * Removes all the cached repairs.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Gets the number of cached repairs, including the ones that have expired
+	 * but not been looked up since.
+	 *
+	 * @return the number of repairs
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	private Map<Integer, Integer> getOptimalActions(List<AppliedAction> sequence, QTable qTable) {
+		Map<Integer, Integer> optimalActions = new HashMap<>();
+		for (AppliedAction appliedAction : sequence) {
+			int errorCode = appliedAction.getError().getCode();
+			List<Action> actions = qTable.getActionsForErrorCode(errorCode);
+			optimalActions.put(errorCode, actions.isEmpty() ? null : Collections.max(actions).getId());
+		}
+		return optimalActions;
+	}
+
+	static class CachedRepair {
+		private final List<AppliedAction> sequence;
+		private final double weight;
+		private final Map<Integer, Integer> optimalActions;
+		private final long createdAt;
+
+		private CachedRepair(List<AppliedAction> sequence, double weight, Map<Integer, Integer> optimalActions) {
+			this.sequence = sequence;
+			this.weight = weight;
+			this.optimalActions = optimalActions;
+			createdAt = System.currentTimeMillis();
+		}
+
+		List<AppliedAction> getSequence() {
+			return sequence;
+		}
+
+		double getWeight() {
+			return weight;
+		}
+	}
+}
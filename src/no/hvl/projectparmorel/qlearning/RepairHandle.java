@@ -0,0 +1,81 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.concurrent.CompletableFuture;
+
+import no.hvl.projectparmorel.Solution;
+
+/**
+ * Follows a repair started with
+ * {@link QModelFixer#startRepair(java.io.File, RepairBudget)}.
+ * 
+ * Cancelling is cooperative. The repair checks for it before each episode and
+ * between steps. A cancelled repair deletes the files of its solutions, skips
+ * the rewards that were not yet applied and does not save the knowledge. Its
+ * result completes with a {@link java.util.concurrent.CancellationException}.
+ */
+public class RepairHandle {
+	private volatile boolean cancelled;
+	private volatile RepairProgress progress;
+	private CompletableFuture<Solution> result;
+
+	RepairHandle() {
+		progress = new RepairProgress(0, 0, 0, 0, Double.NEGATIVE_INFINITY);
+		result = new CompletableFuture<>();
+	}
+
+	/**
+	 * Asks the repair to stop as soon as the current step is finished.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Checks if the repair has been asked to stop.
+	 * 
+	 * @return true if the repair is cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Checks if the repair has finished, failed or been cancelled.
+	 * 
+	 * @return true if the repair is done
+	 */
+	public boolean isDone() {
+		return result.isDone();
+	}
+
+	/**
+	 * Gets how far the repair has come.
+	 * 
+	 * @return the latest progress
+	 */
+	public RepairProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Gets the best solution when the repair is done. Cancelling the returned
+	 * future does not stop the repair, use {@link RepairHandle#cancel()}.
+	 * 
+	 * @return a future completed with the best solution
+	 */
+	public CompletableFuture<Solution> getResult() {
+		return result.copy();
+	}
+
+	void setProgress(RepairProgress progress) {
+		this.progress = progress;
+	}
+
+	void complete(Solution solution) {
+		result.complete(solution);
+	}
+
+	void completeExceptionally(Throwable failure) {
+		result.completeExceptionally(failure);
+	}
+}
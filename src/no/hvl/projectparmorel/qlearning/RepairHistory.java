@@ -0,0 +1,126 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the last repair of each model file, so the repair of an edited
+ * version of the model can start from it.
+ *
+ * The fragment signatures of the model are kept with the best sequence of its
+ * repair. When the edited model is repaired, the actions of the sequence can be
+ * reused as long as they only touch fragments with the same signature in both
+ * versions. The reuse stops at the first action in an edited fragment, as the
+ * actions after it were chosen for the model it left behind.
+ */
+class RepairHistory {
+	private static final String PATH_SEPARATOR = "/";
+
+	private final Map<File, PreviousRepair> repairs;
+
+	/**
+	 * @param size the maximum number of model files remembered
+	 */
+	RepairHistory(int size) {
+		repairs = new LinkedHashMap<File, PreviousRepair>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<File, PreviousRepair> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	/**
+	 * Remembers the repair of the model file, replacing the repair before it.
+	 *
+	 * @param modelFile  that was repaired
+	 * @param signatures of the fragments of the model before the repair
+	 * @param sequence   the best sequence of the repair
+	 */
+	synchronized void record(File modelFile, Map<String, String> signatures, List<AppliedAction> sequence) {
+		repairs.put(modelFile.getAbsoluteFile(), new PreviousRepair(signatures, new ArrayList<>(sequence)));
+	}
+
+	/**
+	 * Gets the actions of the last repair of the model file that can be replayed
+	 * on the current version of the model.
+	 *
+	 * @param modelFile  about to be repaired
+	 * @param signatures of the fragments of the current version
+	 * @return the first actions of the last repair that only touch unchanged
+	 *         fragments, empty if the file has not been repaired before
+	 */
+	synchronized List<AppliedAction> getReusableActions(File modelFile, Map<String, String> signatures) {
+		PreviousRepair previous = repairs.get(modelFile.getAbsoluteFile());
+		if (previous == null) {
+			return Collections.emptyList();
+		}
+		List<AppliedAction> reusable = new ArrayList<>();
+		for (AppliedAction appliedAction : previous.sequence) {
+			if (!touchesOnlyUnchangedFragments(appliedAction, previous.signatures, signatures)) {
+				break;
+			}
+			reusable.add(appliedAction);
+		}
+		return reusable;
+	}
+
+	/**
+	 * Checks if all the elements the action was applied to are in fragments that
+	 * are the same in both versions. Elements in other resources are not part of
+	 * any fragment, but at least one of the elements must be in the model.
+	 */
+	private boolean touchesOnlyUnchangedFragments(AppliedAction appliedAction, Map<String, String> previousSignatures,
+			Map<String, String> signatures) {
+		List<String> targetIdentifiers = appliedAction.getTargetIdentifiers();
+		if (targetIdentifiers == null) {
+			return false;
+		}
+		boolean isInModel = false;
+		for (String identifier : targetIdentifiers) {
+			if (identifier == null || !identifier.startsWith(PATH_SEPARATOR)) {
+				continue;
+			}
+			String fragment = fragmentOf(identifier, signatures);
+			if (fragment == null || !signatures.get(fragment).equals(previousSignatures.get(fragment))) {
+				return false;
+			}
+			isInModel = true;
+		}
+		return isInModel;
+	}
+
+	/**
+	 * Finds the fragment the identified element is in.
+	 *
+	 * @param identifier of the element
+	 * @param signatures of the fragments
+	 * @return the identifier of the fragment, or null if the element is in none
+	 */
+	static String fragmentOf(String identifier, Map<String, String> signatures) {
+		String fragment = identifier;
+		while (!fragment.isEmpty()) {
+			if (signatures.containsKey(fragment)) {
+				return fragment;
+			}
+			fragment = fragment.substring(0, fragment.lastIndexOf(PATH_SEPARATOR));
+		}
+		return null;
+	}
+
+	private static class PreviousRepair {
+		private final Map<String, String> signatures;
+		private final List<AppliedAction> sequence;
+
+		private PreviousRepair(Map<String, String> signatures, List<AppliedAction> sequence) {
+			this.signatures = signatures;
+			this.sequence = sequence;
+		}
+	}
+}
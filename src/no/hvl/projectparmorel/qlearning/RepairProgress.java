@@ -0,0 +1,71 @@
+package no.hvl.projectparmorel.qlearning;
+
+/**
+ * A snapshot of how far a repair has come.
+ */
+public class RepairProgress {
+	private int episode;
+	private int step;
+	private int errorsRemaining;
+	private int solutions;
+	private double bestWeight;
+
+	public RepairProgress(int episode, int step, int errorsRemaining, int solutions, double bestWeight) {
+		this.episode = episode;
+		this.step = step;
+		this.errorsRemaining = errorsRemaining;
+		this.solutions = solutions;
+		this.bestWeight = bestWeight;
+	}
+
+	/**
+	 * Gets the episode in progress.
+	 * 
+	 * @return the episode number
+	 */
+	public int getEpisode() {
+		return episode;
+	}
+
+	/**
+	 * Gets the last step finished in the episode.
+	 * 
+	 * @return the step number
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	/**
+	 * Gets the number of errors left in the model of the episode.
+	 * 
+	 * @return the number of remaining errors
+	 */
+	public int getErrorsRemaining() {
+		return errorsRemaining;
+	}
+
+	/**
+	 * Gets the number of unique solutions found so far.
+	 * 
+	 * @return the number of solutions
+	 */
+	public int getSolutions() {
+		return solutions;
+	}
+
+	/**
+	 * Gets the highest weight of the solutions found so far.
+	 * 
+	 * @return the best weight, or negative infinity if no solution has been found
+	 */
+	public double getBestWeight() {
+		return bestWeight;
+	}
+
+	@Override
+	public String toString() {
+		return "RepairProgress [episode=" + episode + ", step=" + step + ", errorsRemaining=" + errorsRemaining
+				+ ", solutions=" + solutions + ", bestWeight=" + bestWeight + "]";
+	}
+}
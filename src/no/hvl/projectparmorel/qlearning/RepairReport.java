@@ -0,0 +1,101 @@
+package no.hvl.projectparmorel.qlearning;
+
+/**
+ * Describes how a repair went.
+ */
+public class RepairReport {
+	private StopReason stopReason;
+	private int episodes;
+	private long validations;
+	private int solutions;
+	private long executionTime;
+	private int episodesSaved;
+
+	public RepairReport(StopReason stopReason, int episodes, long validations, int solutions, long executionTime) {
+		this(stopReason, episodes, validations, solutions, executionTime, 0);
+	}
+
+	public RepairReport(StopReason stopReason, int episodes, long validations, int solutions, long executionTime,
+			int episodesSaved) {
+		this.stopReason = stopReason;
+		this.episodes = episodes;
+		this.validations = validations;
+		this.solutions = solutions;
+		this.executionTime = executionTime;
+		this.episodesSaved = episodesSaved;
+	}
+
+	/**
+	 * Checks if the search ran to the end or converged. Otherwise a better
+	 * solution might have been found with a larger budget. Cached solutions come
+	 * from searches that ran to the end.
+	 * 
+	 * @return true if the search was not stopped by the budget
+	 */
+	public boolean isConverged() {
+		return stopReason == StopReason.COMPLETED || stopReason == StopReason.CONVERGED
+				|| stopReason == StopReason.CACHED;
+	}
+
+	/**
+	 * Gets the reason the repair stopped.
+	 * 
+	 * @return the stop reason
+	 */
+	public StopReason getStopReason() {
+		return stopReason;
+	}
+
+	/**
+	 * Gets the number of episodes that were run.
+	 * 
+	 * @return the number of episodes
+	 */
+	public int getEpisodes() {
+		return episodes;
+	}
+
+	/**
+	 * Gets the number of times the model was validated.
+	 * 
+	 * @return the number of validations
+	 */
+	public long getValidations() {
+		return validations;
+	}
+
+	/**
+	 * Gets the number of unique solutions found.
+	 * 
+	 * @return the number of solutions
+	 */
+	public int getSolutions() {
+		return solutions;
+	}
+
+	/**
+	 * Gets the time the repair took.
+	 * 
+	 * @return the execution time in milliseconds
+	 */
+	public long getExecutionTime() {
+		return executionTime;
+	}
+
+	/**
+	 * Gets the number of planned episodes that were skipped because the learning
+	 * converged.
+	 * 
+	 * @return the number of episodes saved
+	 */
+	public int getEpisodesSaved() {
+		return episodesSaved;
+	}
+
+	@Override
+	public String toString() {
+		return "RepairReport [stopReason=" + stopReason + ", episodes=" + episodes + ", validations=" + validations
+				+ ", solutions=" + solutions + ", executionTime=" + executionTime + " ms, episodesSaved=" + episodesSaved
+				+ "]";
+	}
+}
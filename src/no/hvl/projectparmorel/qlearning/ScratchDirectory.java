@@ -0,0 +1,98 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The directory of a single repair in a {@link ScratchWorkspace}. Files outside
+ * the directory can be adopted, so they are deleted together with it.
+ */
+class ScratchDirectory {
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private final ScratchWorkspace workspace;
+	private final Path path;
+	private final Set<File> adoptedFiles;
+	private boolean isClosed;
+
+	ScratchDirectory(ScratchWorkspace workspace, Path path) {
+		this.workspace = workspace;
+		this.path = path;
+		adoptedFiles = new HashSet<>();
+	}
+
+	/**
+	 * Gets a file in the directory. The file is not created.
+	 *
+	 * @param name of the file
+	 * @return the file
+	 */
+	File newFile(String name) {
+		return path.resolve(name).toFile();
+	}
+
+	/**
+	 * Checks whether the file is in the directory or adopted by it.
+	 *
+	 * @param file
+	 * @return true if the file is deleted with the directory
+	 */
+	synchronized boolean contains(File file) {
+		return file.toPath().toAbsolutePath().startsWith(path) || adoptedFiles.contains(file);
+	}
+
+	/**
+	 * Makes a file outside the directory be deleted together with it.
+	 *
+	 * @param file
+	 */
+	synchronized void adopt(File file) {
+		adoptedFiles.add(file);
+	}
+
+	/**
+	 * Counts a file that has been written towards the size of the workspace.
+	 *
+	 * @param file that has been written
+	 */
+	void written(File file) {
+		workspace.recordWrite(file);
+	}
+
+	/**
+	 * Deletes a file written to the workspace.
+	 *
+	 * @param file
+	 */
+	void delete(File file) {
+		file.delete();
+		workspace.recordDelete(file);
+	}
+
+	/**
+	 * Deletes the directory with all its files, and the adopted files.
+	 */
+	void close() {
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+			for (File file : adoptedFiles) {
+				file.delete();
+			}
+		}
+		try (Stream<Path> files = Files.walk(path)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		} catch (IOException e) {
+			logger.warning("Could not delete the scratch directory " + path + ": " + e.getMessage());
+		}
+		workspace.closed(this);
+	}
+}
@@ -0,0 +1,179 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The place on disk where the files of the repairs are written, like the models
+ * of the solutions. Each repair gets a directory of its own, so repairs running
+ * at the same time, also of the same model, never share a file. The directory
+ * of a repair is deleted when its solutions are discarded, when the workspace
+ * is closed or when the JVM exits.
+ *
+ * The size of the solution files in the workspace is bounded. A file that
+ * would exceed the bound is deleted again and the write fails. Files that have
+ * been written are never deleted to make room, since they may belong to other
+ * repairs or be in use by the caller that requested them.
+ *
+ * The root can be put on a memory backed file system, like tmpfs, to keep the
+ * files of the repairs off the disk.
+ */
+public class ScratchWorkspace implements Closeable {
+	public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+	private static ScratchWorkspace defaultWorkspace;
+
+	private final Path root;
+	private final long maxBytes;
+	private final Map<File, Long> writtenFiles;
+	private final Set<ScratchDirectory> openDirectories;
+	private final Thread cleanupHook;
+	private long usedBytes;
+
+	/**
+	 * @param root     the directory the directories of the repairs are created
+	 *                 in. It is created when it is first needed.
+	 * @param maxBytes the maximum size of the solution files in the workspace
+	 */
+	public ScratchWorkspace(Path root, long maxBytes) {
+		this.root = root.toAbsolutePath();
+		this.maxBytes = maxBytes;
+		writtenFiles = new LinkedHashMap<>();
+		openDirectories = new HashSet<>();
+		cleanupHook = new Thread(this::closeDirectories, "parmorel-scratch-cleanup");
+		Runtime.getRuntime().addShutdownHook(cleanupHook);
+	}
+
+	/**
+	 * Gets the workspace used by fixers that are not given one. It is located in
+	 * the temporary directory of the JVM.
+	 *
+	 * @return the default workspace
+	 */
+	public static synchronized ScratchWorkspace getDefault() {
+		if (defaultWorkspace == null) {
+			defaultWorkspace = new ScratchWorkspace(Paths.get(System.getProperty("java.io.tmpdir"), "parmorel"),
+					DEFAULT_MAX_BYTES);
+		}
+		return defaultWorkspace;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * Gets the size of the solution files in the workspace.
+	 *
+	 * @return the size in bytes
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Creates a directory for a repair.
+	 *
+	 * @param name the directory name starts with, like the name of the model
+	 * @return the directory
+	 * @throws UncheckedIOException if the directory could not be created
+	 */
+	synchronized ScratchDirectory openDirectory(String name) {
+		try {
+			Files.createDirectories(root);
+			ScratchDirectory directory = new ScratchDirectory(this, Files.createTempDirectory(root, name + "_"));
+			openDirectories.add(directory);
+			return directory;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not create a directory in " + root, e);
+		}
+	}
+
+	/**
+	 * Counts a file that has been written. If the workspace has become too large,
+	 * the file is deleted again and the write fails.
+	 *
+	 * @param file that has been written
+	 * @throws UncheckedIOException if the file does not fit in the workspace
+	 */
+	synchronized void recordWrite(File file) {
+		Long previousSize = writtenFiles.remove(file);
+		long size = file.length();
+		long newUsedBytes = usedBytes + size - (previousSize == null ? 0 : previousSize);
+		if (newUsedBytes > maxBytes) {
+			file.delete();
+			if (previousSize != null) {
+				usedBytes -= previousSize;
+			}
+			throw new UncheckedIOException(new IOException("The scratch workspace " + root + " is full, " + file
+					+ " of " + size + " bytes does not fit in " + maxBytes + " bytes"));
+		}
+		usedBytes = newUsedBytes;
+		writtenFiles.put(file, size);
+	}
+
+	/**
+	 * Stops counting a file that has been deleted.
+	 *
+	 * @param file that has been deleted
+	 */
+	synchronized void recordDelete(File file) {
+		Long size = writtenFiles.remove(file);
+		if (size != null) {
+			usedBytes -= size;
+		}
+	}
+
+	/**
+	 * Forgets a directory that has been deleted.
+	 *
+	 * @param directory
+	 */
+	synchronized void closed(ScratchDirectory directory) {
+		openDirectories.remove(directory);
+		Iterator<Map.Entry<File, Long>> files = writtenFiles.entrySet().iterator();
+		while (files.hasNext()) {
+			Map.Entry<File, Long> file = files.next();
+			if (directory.contains(file.getKey())) {
+				usedBytes -= file.getValue();
+				files.remove();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the directories of all the repairs. The solutions of the repairs can
+	 * no longer be written to file.
+	 */
+	@Override
+	public void close() {
+		closeDirectories();
+		try {
+			Runtime.getRuntime().removeShutdownHook(cleanupHook);
+		} catch (IllegalStateException e) {
+			// The JVM is already shutting down
+		}
+	}
+
+	private void closeDirectories() {
+		List<ScratchDirectory> directories;
+		synchronized (this) {
+			directories = new ArrayList<>(openDirectories);
+		}
+		for (ScratchDirectory directory : directories) {
+			directory.close();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A trie of the action sequences that have been kept as possible solutions.
+ *
+ * Looking up a sequence only depends on its length, not on how many solutions
+ * have been found. A {@link Cursor} can follow an episode step by step, telling
+ * whether it is still reproducing a known sequence.
+ */
+class SequenceIndex {
+	private Node root;
+	private int size;
+
+	SequenceIndex() {
+		clear();
+	}
+
+	/**
+	 * Adds the sequence to the index.
+	 *
+	 * @param sequence
+	 * @return true if the sequence was added, false if it was already in the index
+	 */
+	boolean add(List<AppliedAction> sequence) {
+		Node node = root;
+		for (AppliedAction appliedAction : sequence) {
+			node = node.children.computeIfAbsent(new ActionKey(appliedAction.getAction()), key -> new Node());
+		}
+		if (node.isEndOfSequence) {
+			return false;
+		}
+		node.isEndOfSequence = true;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Checks if the sequence is in the index. Two sequences are equal if they
+	 * consist of equal actions in the same order.
+	 *
+	 * @param sequence
+	 * @return true if the sequence is in the index, false otherwise
+	 */
+	boolean contains(List<AppliedAction> sequence) {
+		Node node = root;
+		for (AppliedAction appliedAction : sequence) {
+			node = node.children.get(new ActionKey(appliedAction.getAction()));
+			if (node == null) {
+				return false;
+			}
+		}
+		return node.isEndOfSequence;
+	}
+
+	/**
+	 * Gets a cursor positioned at the start of all sequences.
+	 *
+	 * @return a new cursor
+	 */
+	Cursor start() {
+		return new Cursor(root);
+	}
+
+	/**
+	 * Gets the number of sequences in the index.
+	 *
+	 * @return the number of sequences
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the sequences from the index.
+	 */
+	void clear() {
+		root = new Node();
+		size = 0;
+	}
+
+	/**
+	 * Follows an episode through the index as actions are applied.
+	 */
+	static class Cursor {
+		private Node node;
+
+		private Cursor(Node node) {
+			this.node = node;
+		}
+
+		/**
+		 * Moves the cursor past the specified action.
+		 *
+		 * @param action
+		 */
+		void advance(Action action) {
+			if (node != null) {
+				node = node.children.get(new ActionKey(action));
+			}
+		}
+
+		/**
+		 * Checks if the actions applied so far are the start of a known sequence.
+		 *
+		 * @return true if the episode is following a known sequence
+		 */
+		boolean isOnKnownSequence() {
+			return node != null;
+		}
+
+		/**
+		 * Checks if applying the specified action next would make the episode equal
+		 * to a known sequence.
+		 *
+		 * @param action
+		 * @return true if the action completes a known sequence
+		 */
+		boolean completesKnownSequence(Action action) {
+			if (node == null) {
+				return false;
+			}
+			Node next = node.children.get(new ActionKey(action));
+			return next != null && next.isEndOfSequence;
+		}
+	}
+
+	private static class Node {
+		private Map<ActionKey, Node> children = new HashMap<>();
+		private boolean isEndOfSequence;
+	}
+
+	/**
+	 * An immutable snapshot of what makes actions equal, see
+	 * {@link Action#equals(Object)}. Actions can be altered after they are applied,
+	 * so they cannot be used as keys directly.
+	 */
+	private static class ActionKey {
+		private final int id;
+		private final int contextId;
+		private final String name;
+		private final SerializableMethod method;
+
+		private ActionKey(Action action) {
+			id = action.getId();
+			contextId = action.getContextId();
+			name = action.getName();
+			method = action.getMethod();
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(id, contextId, name);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof ActionKey) {
+				ActionKey otherKey = (ActionKey) other;
+				return id == otherKey.id && contextId == otherKey.contextId && Objects.equals(name, otherKey.name)
+						&& method == otherKey.method;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Writes the models of solutions to file when they are needed.
+ *
+ * A solution is kept as the sequence of actions that produced it. The episode
+ * models of the most recently used solutions are kept in memory, and are saved
+ * the first time the file of the solution is requested. A solution whose model
+ * is no longer in memory, and has not been written to file, is rebuilt by
+ * replaying its actions on a copy of the original model. Values the actions
+ * generate, like placeholder names, can differ in a rebuilt model.
+ *
+ * Nothing a caller has been given is taken back before the solutions are
+ * released. Once the file of a solution has been written it is kept, and the
+ * model is loaded from that file if it is needed again, so a solution that has
+ * been measured is never rebuilt. A model handed out in memory stays loaded.
+ * The cache only bounds the models that have not been handed out. The files
+ * are written to the scratch directory of the repair, which is deleted when all
+ * the solutions are released. The original model is unloaded then.
+ */
+class SolutionMaterializer {
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private Model original;
+	private Function<File, Model> modelCopier;
+	private Function<File, Model> modelLoader;
+	private ModelProcessor modelProcessor;
+	private ScratchDirectory directory;
+	private Map<QSolution, Model> cache;
+	private Map<QSolution, Model> handedOutModels;
+	private Set<QSolution> savedSolutions;
+	private boolean isReleased;
+
+	/**
+	 * @param original       the model that was repaired
+	 * @param modelCopier    creating an unsaved copy of the original model that
+	 *                       will be saved to the specified file
+	 * @param modelLoader    loading the model saved in the specified file
+	 * @param modelProcessor used to replay the actions
+	 * @param directory      the scratch directory of the repair
+	 * @param cacheSize      the maximum number of solution models kept in memory
+	 *                       that have not been handed out
+	 */
+	SolutionMaterializer(Model original, Function<File, Model> modelCopier, Function<File, Model> modelLoader,
+			ModelProcessor modelProcessor, ScratchDirectory directory, int cacheSize) {
+		this.original = original;
+		this.modelCopier = modelCopier;
+		this.modelLoader = modelLoader;
+		this.modelProcessor = modelProcessor;
+		this.directory = directory;
+		handedOutModels = new HashMap<>();
+		savedSolutions = new HashSet<>();
+		cache = new LinkedHashMap<QSolution, Model>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<QSolution, Model> eldest) {
+				if (size() > cacheSize) {
+					eldest.getValue().unload();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets a file in the scratch directory of the repair. The file is not created.
+	 *
+	 * @param name of the file
+	 * @return the file
+	 */
+	File newFile(String name) {
+		return directory.newFile(name);
+	}
+
+	/**
+	 * Registers the solution, so its model is written to the destination when it
+	 * is requested.
+	 *
+	 * @param solution
+	 * @param destination  the file the model is written to
+	 * @param episodeModel the unsaved model the episode produced
+	 */
+	synchronized void register(QSolution solution, File destination, Model episodeModel) {
+		solution.setModel(destination);
+		solution.setMaterializer(this);
+		cache.put(solution, episodeModel);
+	}
+
+	/**
+	 * Registers a solution that has no model yet. The model is built by replaying
+	 * the actions of the solution the first time it is requested.
+	 *
+	 * @param solution
+	 * @param destination the file the model is written to
+	 */
+	synchronized void registerForReplay(QSolution solution, File destination) {
+		solution.setModel(destination);
+		solution.setMaterializer(this);
+	}
+
+	/**
+	 * Makes sure the model of the solution is written to its file. The file is
+	 * kept until the solution is discarded or all the solutions are released. A
+	 * file that is already written is returned without touching the model.
+	 *
+	 * @param solution
+	 * @return the file containing the model
+	 * @throws UncheckedIOException  if the model does not fit in the scratch
+	 *                               workspace
+	 * @throws IllegalStateException if all the solutions have been released
+	 */
+	synchronized File materialize(QSolution solution) {
+		if (isReleased) {
+			throw new IllegalStateException("The solutions of the repair have been released");
+		}
+		File destination = solution.getModelLocation();
+		if (savedSolutions.contains(solution)) {
+			return destination;
+		}
+		getModel(solution).save();
+		directory.written(destination);
+		savedSolutions.add(solution);
+		return destination;
+	}
+
+	/**
+	 * Gets the model of the solution without writing it to file. The model stays
+	 * in memory until the solution is discarded or all the solutions are
+	 * released, and is unloaded then.
+	 *
+	 * @param solution
+	 * @return the unsaved model
+	 * @throws IllegalStateException if all the solutions have been released
+	 */
+	synchronized Model load(QSolution solution) {
+		if (isReleased) {
+			throw new IllegalStateException("The solutions of the repair have been released");
+		}
+		Model model = handedOutModels.get(solution);
+		if (model == null) {
+			model = cache.remove(solution);
+			if (model == null) {
+				model = rebuild(solution);
+			}
+			handedOutModels.put(solution, model);
+		}
+		return model;
+	}
+
+	/**
+	 * Makes sure the original model is written to its file. This is only needed
+	 * when the model was not read from that file, but from memory.
+	 *
+	 * @param original the file of the original model
+	 * @return the file
+	 * @throws IllegalStateException if the original model was written from memory
+	 *                               and all the solutions have been released
+	 */
+	synchronized File materializeOriginal(File original) {
+		if (isReleased && !original.exists()) {
+			throw new IllegalStateException("The solutions of the repair have been released");
+		}
+		if (!original.exists()) {
+			Model copy = modelCopier.apply(original);
+			copy.save();
+			copy.unload();
+			directory.adopt(original);
+		}
+		return original;
+	}
+
+	/**
+	 * Gets the model of the solution from memory, or loads or rebuilds it into
+	 * the cache.
+	 *
+	 * @param solution
+	 * @return the model
+	 */
+	private Model getModel(QSolution solution) {
+		Model model = handedOutModels.get(solution);
+		if (model == null) {
+			model = cache.get(solution);
+		}
+		if (model == null) {
+			model = rebuild(solution);
+			cache.put(solution, model);
+		}
+		return model;
+	}
+
+	/**
+	 * Loads the model of the solution from its file if it has been written, or
+	 * replays its actions otherwise.
+	 *
+	 * @param solution
+	 * @return the model
+	 */
+	private Model rebuild(QSolution solution) {
+		if (savedSolutions.contains(solution)) {
+			return modelLoader.apply(solution.getModelLocation());
+		}
+		return replay(solution, solution.getModelLocation());
+	}
+
+	/**
+	 * Unloads the model of the solution and deletes its file.
+	 *
+	 * @param solution
+	 */
+	synchronized void release(QSolution solution) {
+		unload(cache.remove(solution));
+		unload(handedOutModels.remove(solution));
+		if (savedSolutions.remove(solution)) {
+			directory.delete(solution.getModelLocation());
+		}
+	}
+
+	/**
+	 * Unloads the models of all the solutions and deletes the scratch directory of
+	 * the repair, together with the file of the original model if it was written
+	 * from memory. The original model is unloaded. The models and files of the
+	 * solutions can no longer be requested afterwards.
+	 */
+	synchronized void releaseAll() {
+		if (isReleased) {
+			return;
+		}
+		for (Model model : cache.values()) {
+			model.unload();
+		}
+		cache.clear();
+		for (Model model : handedOutModels.values()) {
+			model.unload();
+		}
+		handedOutModels.clear();
+		savedSolutions.clear();
+		directory.close();
+		original.unload();
+		isReleased = true;
+	}
+
+	/**
+	 * Rebuilds the model of the solution by replaying its actions on a copy of the
+	 * original model.
+	 *
+	 * @param solution
+	 * @param destination
+	 * @return the rebuilt model
+	 */
+	private Model replay(QSolution solution, File destination) {
+		Model model = replay(solution.getSequence(), destination);
+		logger.info("Rebuilt solution " + solution.getId() + " by replaying " + solution.getSequence().size()
+				+ " actions.");
+		return model;
+	}
+
+	/**
+	 * Replays the actions on a copy of the original model.
+	 *
+	 * @param sequence    of actions applied to the original model
+	 * @param destination the file the copy is saved to
+	 * @return the unsaved copy with the actions applied
+	 */
+	Model replay(List<AppliedAction> sequence, File destination) {
+		Model model = modelCopier.apply(destination);
+		for (AppliedAction appliedAction : sequence) {
+			Error target = appliedAction.getError().resolveIn(model);
+			modelProcessor.replayAction(target, appliedAction.getAction(), model);
+		}
+		return model;
+	}
+
+	private static void unload(Model model) {
+		if (model != null) {
+			model.unload();
+		}
+	}
+}
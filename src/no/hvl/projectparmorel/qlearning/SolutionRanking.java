@@ -0,0 +1,57 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import no.hvl.projectparmorel.Solution;
+
+/**
+ * Keeps the solutions with the highest weights.
+ *
+ * The solutions are kept in a priority queue with the lowest weight at the
+ * head, so a new solution only has to be compared to the worst one kept.
+ */
+class SolutionRanking {
+	private final int size;
+	private PriorityQueue<QSolution> solutions;
+
+	/**
+	 * @param size the number of solutions to keep
+	 */
+	SolutionRanking(int size) {
+		this.size = size;
+		solutions = new PriorityQueue<>();
+	}
+
+	/**
+	 * Adds the solution to the ranking if it is among the best.
+	 *
+	 * @param solution
+	 * @return true if the solution was kept, false otherwise
+	 */
+	boolean offer(QSolution solution) {
+		if (solutions.size() < size) {
+			solutions.add(solution);
+			return true;
+		}
+		if (size > 0 && solution.compareTo(solutions.peek()) > 0) {
+			solutions.poll();
+			solutions.add(solution);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the kept solutions, the one with the highest weight first.
+	 *
+	 * @return an unmodifiable list of the solutions
+	 */
+	List<Solution> toList() {
+		List<QSolution> ranked = new ArrayList<>(solutions);
+		ranked.sort(Collections.reverseOrder());
+		return Collections.unmodifiableList(new ArrayList<Solution>(ranked));
+	}
+}
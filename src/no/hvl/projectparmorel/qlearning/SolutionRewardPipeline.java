@@ -0,0 +1,100 @@
+package no.hvl.projectparmorel.qlearning;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import no.hvl.projectparmorel.qlearning.reward.RewardCalculator;
+
+/**
+ * Computes the solution level rewards in the background while the next
+ * episodes are explored.
+ *
+ * The slow part of the solution preferences, measuring distance and metrics,
+ * runs on a single background thread. The files of the solution and of the
+ * original model are written on the calling thread before the measurement is
+ * submitted, and are kept until the solution is discarded, so the background
+ * thread only reads files and never touches a model in memory. The Q-table is
+ * only updated from {@link SolutionRewardPipeline#drain()}, on the calling
+ * thread and in the order the solutions were submitted.
+ */
+class SolutionRewardPipeline {
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private RewardCalculator rewardCalculator;
+	private ExecutorService executor;
+	private Queue<PendingReward> pendingRewards;
+
+	SolutionRewardPipeline(RewardCalculator rewardCalculator) {
+		this.rewardCalculator = rewardCalculator;
+		pendingRewards = new ArrayDeque<>();
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "parmorel-solution-rewards");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Writes the solution to file and starts measuring it in the background.
+	 *
+	 * @param solution
+	 * @param episodeModel
+	 */
+	void submit(QSolution solution, Model episodeModel) {
+		solution.getModel();
+		solution.getOriginal();
+		Future<?> measurement = executor.submit(() -> rewardCalculator.prepareRewardFor(solution));
+		pendingRewards.add(new PendingReward(solution, episodeModel, measurement));
+	}
+
+	/**
+	 * Waits for the pending measurements and applies the rewards to the Q-table in
+	 * submission order.
+	 *
+	 * @param onRewarded called with each solution once its reward is applied
+	 */
+	void drain(Consumer<QSolution> onRewarded) {
+		while (!pendingRewards.isEmpty()) {
+			PendingReward pending = pendingRewards.poll();
+			try {
+				pending.measurement.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				logger.warning("Measuring solution " + pending.solution.getId() + " failed in the background: "
+						+ e.getCause());
+			}
+			QSolution solution = pending.solution;
+			double totalReward = solution.getWeight();
+			totalReward += rewardCalculator.calculateRewardFor(pending.episodeModel, solution);
+			solution.setWeight(totalReward);
+			logger.info("EPISODE " + solution.getId() + " TOTAL REWARD " + totalReward);
+			onRewarded.accept(solution);
+		}
+	}
+
+	/**
+	 * Stops the background thread. Pending measurements are abandoned.
+	 */
+	void shutdown() {
+		executor.shutdownNow();
+		pendingRewards.clear();
+	}
+
+	private static class PendingReward {
+		private final QSolution solution;
+		private final Model episodeModel;
+		private final Future<?> measurement;
+
+		private PendingReward(QSolution solution, Model episodeModel, Future<?> measurement) {
+			this.solution = solution;
+			this.episodeModel = episodeModel;
+			this.measurement = measurement;
+		}
+	}
+}
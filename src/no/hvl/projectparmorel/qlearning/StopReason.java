@@ -0,0 +1,35 @@
+package no.hvl.projectparmorel.qlearning;
+
+/**
+ * Tells why a repair stopped searching for solutions.
+ */
+public enum StopReason {
+	/**
+	 * All the planned episodes were run.
+	 */
+	COMPLETED,
+	/**
+	 * The learning converged before all the planned episodes were run.
+	 */
+	CONVERGED,
+	/**
+	 * The solution was taken from an earlier repair of the same model.
+	 */
+	CACHED,
+	/**
+	 * The time limit of the {@link RepairBudget} was reached.
+	 */
+	TIME_LIMIT,
+	/**
+	 * The episode limit of the {@link RepairBudget} was reached.
+	 */
+	EPISODE_LIMIT,
+	/**
+	 * The validation limit of the {@link RepairBudget} was reached.
+	 */
+	VALIDATION_LIMIT,
+	/**
+	 * The repair was cancelled through its {@link RepairHandle}.
+	 */
+	CANCELLED
+}
@@ -29,7 +29,7 @@ public class EcoreAction extends Action {
 	}
 
 	@Override
-	protected String getActionType() {
+	public String getActionType() {
 		return TYPE;
 	}
 
@@ -0,0 +1,196 @@
+package no.hvl.projectparmorel.qlearning.ecore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+
+/**
+ * How Ecore models are loaded and how the files only the fixer reads are
+ * written. For small models the repair is dominated by loading, so the fast
+ * profile reuses the XML parsers, resolves references by ID only once the whole
+ * document is read and looks elements up by ID in a map.
+ *
+ * Files the fixer writes for itself, like the models of the groups of packages
+ * repaired in parallel, can be written in the binary resource format, which is
+ * read and written much faster than XMI. This is not part of the fast profile
+ * and must be enabled on its own, since tools that read the models by path,
+ * like the distance preference, only read XMI. The models of the solutions are
+ * always written as XMI.
+ */
+public class EcoreLoadProfile {
+	/**
+	 * The extension of model files in the binary resource format.
+	 */
+	public static final String BINARY_EXTENSION = "ecorebin";
+
+	private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl(true);
+
+	private boolean useParserPool;
+	private boolean deferIdrefResolution;
+	private boolean useDeprecatedMethods = true;
+	private boolean useIntrinsicIdMaps;
+	private boolean binaryInternalFiles;
+
+	/**
+	 * Creates a profile loading with the default options of EMF.
+	 *
+	 * @return the profile
+	 */
+	public static EcoreLoadProfile standard() {
+		return new EcoreLoadProfile();
+	}
+
+	/**
+	 * Creates a profile with all the optimizations of loading enabled. The
+	 * internal files are still written as XMI, see
+	 * {@link EcoreLoadProfile#setBinaryInternalFiles(boolean)}.
+	 *
+	 * @return the profile
+	 */
+	public static EcoreLoadProfile fast() {
+		EcoreLoadProfile profile = new EcoreLoadProfile();
+		profile.setUseParserPool(true);
+		profile.setDeferIdrefResolution(true);
+		profile.setUseDeprecatedMethods(false);
+		profile.setUseIntrinsicIdMaps(true);
+		return profile;
+	}
+
+	/**
+	 * Sets whether the XML parsers are taken from a pool shared by all the
+	 * fixers, instead of being created for every load.
+	 *
+	 * @param useParserPool
+	 */
+	public void setUseParserPool(boolean useParserPool) {
+		this.useParserPool = useParserPool;
+	}
+
+	/**
+	 * Sets whether references by ID are resolved once the whole document is read,
+	 * instead of as soon as they are read.
+	 *
+	 * @param deferIdrefResolution
+	 */
+	public void setDeferIdrefResolution(boolean deferIdrefResolution) {
+		this.deferIdrefResolution = deferIdrefResolution;
+	}
+
+	/**
+	 * Sets whether the deprecated, slower methods of the XML handler are used.
+	 *
+	 * @param useDeprecatedMethods
+	 */
+	public void setUseDeprecatedMethods(boolean useDeprecatedMethods) {
+		this.useDeprecatedMethods = useDeprecatedMethods;
+	}
+
+	/**
+	 * Sets whether the resources keep a map from IDs to elements, instead of
+	 * searching the resource for an ID.
+	 *
+	 * @param useIntrinsicIdMaps
+	 */
+	public void setUseIntrinsicIdMaps(boolean useIntrinsicIdMaps) {
+		this.useIntrinsicIdMaps = useIntrinsicIdMaps;
+	}
+
+	/**
+	 * Sets whether the files only the fixer reads are written in the binary
+	 * resource format. The content hash of the models is then computed from the
+	 * binary format too. A fixer with preferences that measure the solution
+	 * files, like the distance to the original, keeps writing XMI, since the
+	 * measurements read the files of the groups as XMI.
+	 *
+	 * @param binaryInternalFiles
+	 */
+	public void setBinaryInternalFiles(boolean binaryInternalFiles) {
+		this.binaryInternalFiles = binaryInternalFiles;
+	}
+
+	public boolean isBinaryInternalFiles() {
+		return binaryInternalFiles;
+	}
+
+	/**
+	 * Gets the options XMI models are loaded with.
+	 *
+	 * @return a new map of options
+	 */
+	public Map<Object, Object> getLoadOptions() {
+		Map<Object, Object> options = new HashMap<>();
+		if (useParserPool) {
+			options.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+		}
+		if (deferIdrefResolution) {
+			options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		}
+		options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, useDeprecatedMethods);
+		return options;
+	}
+
+	/**
+	 * Makes the resource set load models with this profile. Files with the
+	 * extension {@value #BINARY_EXTENSION} are loaded in the binary format.
+	 *
+	 * @param resourceSet
+	 */
+	void configure(ResourceSet resourceSet) {
+		Map<String, Object> factories = resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap();
+		factories.put("ecore", (Resource.Factory) this::createResource);
+		factories.put(BINARY_EXTENSION, (Resource.Factory) this::createBinaryResource);
+		resourceSet.getLoadOptions().putAll(getLoadOptions());
+	}
+
+	/**
+	 * Creates an empty XMI resource for an Ecore model.
+	 *
+	 * @param uri of the resource
+	 * @return the resource
+	 */
+	Resource createResource(URI uri) {
+		return prepare(new EcoreResourceFactoryImpl().createResource(uri));
+	}
+
+	/**
+	 * Creates an empty resource for a file only the fixer reads. The resource is
+	 * binary if the profile writes internal files in the binary format.
+	 *
+	 * @param uri of the resource
+	 * @return the resource
+	 */
+	Resource createInternalResource(URI uri) {
+		return binaryInternalFiles ? createBinaryResource(uri) : createResource(uri);
+	}
+
+	/**
+	 * Gets the name of a file only the fixer reads, with the extension that makes
+	 * it load in the right format.
+	 *
+	 * @param name of the file
+	 * @return the name to write the file to
+	 */
+	String getInternalFileName(String name) {
+		return binaryInternalFiles ? name + "." + BINARY_EXTENSION : name;
+	}
+
+	private Resource createBinaryResource(URI uri) {
+		return prepare(new BinaryResourceImpl(uri));
+	}
+
+	private Resource prepare(Resource resource) {
+		if (useIntrinsicIdMaps && resource instanceof ResourceImpl) {
+			((ResourceImpl) resource).setIntrinsicIDToEObjectMap(new HashMap<>());
+		}
+		return resource;
+	}
+}
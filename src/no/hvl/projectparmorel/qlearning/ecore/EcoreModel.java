@@ -1,24 +1,79 @@
 package no.hvl.projectparmorel.qlearning.ecore;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
+import org.eclipse.emf.ecore.util.InternalEList;
 
 import no.hvl.projectparmorel.qlearning.Model;
 import no.hvl.projectparmorel.qlearning.ModelType;
 
 public class EcoreModel implements Model {
+	private static final String PATH_SEPARATOR = "/";
+
 	private Resource model;
 	private Resource modelCopy;
+	private EcoreLoadProfile loadProfile;
 	
 	public EcoreModel(ResourceSet resourceSet, Resource model, URI destinationURI) {
+		this(resourceSet, model, destinationURI, EcoreLoadProfile.standard());
+	}
+
+	public EcoreModel(ResourceSet resourceSet, Resource model, URI destinationURI, EcoreLoadProfile loadProfile) {
 		this.model = model;
-		modelCopy = resourceSet.createResource(destinationURI);
+		this.loadProfile = loadProfile;
+		modelCopy = loadProfile.createResource(destinationURI);
+		resourceSet.getResources().add(modelCopy);
+	}
+
+	/**
+	 * Creates a model that is not part of a resource set. This is used for copies
+	 * that only live in memory until they are saved.
+	 * 
+	 * @param model
+	 * @param destinationURI
+	 */
+	public EcoreModel(Resource model, URI destinationURI) {
+		this(model, destinationURI, EcoreLoadProfile.standard());
+	}
+
+	/**
+	 * Creates a model that is not part of a resource set, with resources created
+	 * by the profile.
+	 * 
+	 * @param model
+	 * @param destinationURI
+	 * @param loadProfile
+	 */
+	public EcoreModel(Resource model, URI destinationURI, EcoreLoadProfile loadProfile) {
+		this.model = model;
+		this.loadProfile = loadProfile;
+		modelCopy = loadProfile.createResource(destinationURI);
 	}
 	
 	@Override
@@ -48,8 +103,295 @@ public class EcoreModel implements Model {
 		}
 	}
 
+	/**
+	 * The hash is a SHA-256 digest of the model saved with the default options
+	 * of its resource, or in the binary resource format if the load profile
+	 * writes internal files in it.
+	 */
+	@Override
+	public String getContentHash() {
+		if (!loadProfile.isBinaryInternalFiles()) {
+			return hash(getContent());
+		}
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			BinaryResourceImpl.EObjectOutputStream output = new BinaryResourceImpl.EObjectOutputStream(content, null);
+			output.saveResource(model);
+			output.flush();
+			return hash(content.toByteArray());
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not compute the hash of " + model.getURI(), e);
+		}
+	}
+
+	@Override
+	public byte[] getContent() {
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			model.save(content, null);
+			return content.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not serialize " + model.getURI(), e);
+		}
+	}
+
+	/**
+	 * The fragments are the packages at the root of the resource, and each element
+	 * they contain directly, like a classifier or a sub-package. The signature of a
+	 * package covers its own features, like its name, while the signature of a
+	 * contained element covers everything inside it. References are described by
+	 * the identifiers of their targets, so an element is also seen as edited when
+	 * the element it references has moved.
+	 */
+	@Override
+	public Map<String, String> getFragmentSignatures() {
+		Map<String, String> signatures = new LinkedHashMap<>();
+		List<EObject> roots = model.getContents();
+		for (int i = 0; i < roots.size(); i++) {
+			String rootIdentifier = PATH_SEPARATOR + i;
+			StringBuilder rootContent = new StringBuilder();
+			appendFeatures(rootContent, roots.get(i));
+			signatures.put(rootIdentifier, hash(rootContent.toString().getBytes(StandardCharsets.UTF_8)));
+
+			List<EObject> fragments = roots.get(i).eContents();
+			for (int j = 0; j < fragments.size(); j++) {
+				StringBuilder content = new StringBuilder();
+				TreeIterator<EObject> contents = EcoreUtil.getAllContents(Collections.singletonList(fragments.get(j)));
+				while (contents.hasNext()) {
+					EObject element = contents.next();
+					content.append(getIdentifierOf(element));
+					appendFeatures(content, element);
+				}
+				signatures.put(rootIdentifier + PATH_SEPARATOR + j,
+						hash(content.toString().getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+		return signatures;
+	}
+
+	/**
+	 * Describes the persisted features of the element, except its contents.
+	 * 
+	 * @param content to append the description to
+	 * @param element
+	 */
+	private void appendFeatures(StringBuilder content, EObject element) {
+		content.append('[').append(element.eClass().getName());
+		for (EStructuralFeature feature : element.eClass().getEAllStructuralFeatures()) {
+			if (feature.isTransient() || feature.isDerived() || !element.eIsSet(feature)
+					|| (feature instanceof EReference && ((EReference) feature).isContainment())) {
+				continue;
+			}
+			content.append(' ').append(feature.getName()).append('=');
+			Object value = element.eGet(feature, false);
+			if (value instanceof InternalEList<?>) {
+				// The basic list does not resolve proxies
+				for (Object item : ((InternalEList<?>) value).basicList()) {
+					content.append(describe(item)).append(',');
+				}
+			} else {
+				content.append(describe(value));
+			}
+		}
+		content.append(']');
+	}
+
+	private String describe(Object value) {
+		if (!(value instanceof EObject)) {
+			return String.valueOf(value);
+		}
+		String identifier = getIdentifierOf(value);
+		return identifier != null ? identifier : EcoreUtil.getURI((EObject) value).toString();
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest) {
+				hash.append(String.format("%02x", b));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	@Override
+	public void unload() {
+		model.unload();
+		modelCopy.unload();
+		if (model.getResourceSet() != null) {
+			model.getResourceSet().getResources().remove(model);
+		}
+		if (modelCopy.getResourceSet() != null) {
+			modelCopy.getResourceSet().getResources().remove(modelCopy);
+		}
+	}
+
+	/**
+	 * Elements in the model are identified by their containment path, e.g. /0/3/1
+	 * for the second child of the fourth child of the first root. The path does
+	 * not depend on names, so it stays valid when actions rename elements. Elements
+	 * in other resources are identified by their URI.
+	 */
+	@Override
+	public String getIdentifierOf(Object element) {
+		if (!(element instanceof EObject)) {
+			return null;
+		}
+		EObject eObject = (EObject) element;
+		Resource resource = eObject.eResource();
+		if (resource == null) {
+			return null;
+		}
+		if (resource != model) {
+			return EcoreUtil.getURI(eObject).toString();
+		}
+		StringBuilder path = new StringBuilder();
+		EObject current = eObject;
+		while (current.eContainer() != null) {
+			path.insert(0, PATH_SEPARATOR + current.eContainer().eContents().indexOf(current));
+			current = current.eContainer();
+		}
+		path.insert(0, PATH_SEPARATOR + resource.getContents().indexOf(current));
+		return path.toString();
+	}
+
+	@Override
+	public Object resolve(String identifier) {
+		if (identifier == null) {
+			return null;
+		}
+		if (identifier.startsWith(PATH_SEPARATOR)) {
+			return resolvePath(identifier);
+		}
+		URI uri = URI.createURI(identifier);
+		if (model.getResourceSet() != null) {
+			return model.getResourceSet().getEObject(uri, true);
+		}
+		EPackage ePackage = EPackage.Registry.INSTANCE.getEPackage(uri.trimFragment().toString());
+		if (ePackage == null || ePackage.eResource() == null) {
+			return null;
+		}
+		return ePackage.eResource().getEObject(uri.fragment());
+	}
+
+	/**
+	 * Follows the containment path from the roots of the model.
+	 * 
+	 * @param path
+	 * @return the element at the end of the path, or null if there is none
+	 */
+	private EObject resolvePath(String path) {
+		String[] indices = path.substring(1).split(PATH_SEPARATOR);
+		List<EObject> candidates = model.getContents();
+		EObject element = null;
+		for (String index : indices) {
+			int position = Integer.parseInt(index);
+			if (position < 0 || position >= candidates.size()) {
+				return null;
+			}
+			element = candidates.get(position);
+			candidates = element.eContents();
+		}
+		return element;
+	}
+
+	@Override
+	public List<List<Integer>> getIndependentPackageGroups() {
+		List<EObject> roots = model.getContents();
+		int[] groupOf = new int[roots.size()];
+		for (int i = 0; i < groupOf.length; i++) {
+			groupOf[i] = i;
+		}
+		for (int i = 0; i < roots.size(); i++) {
+			TreeIterator<EObject> contents = EcoreUtil.getAllContents(Collections.singletonList(roots.get(i)));
+			while (contents.hasNext()) {
+				// The basic list does not resolve proxies, which belong to no package
+				InternalEList<EObject> references = (InternalEList<EObject>) contents.next().eCrossReferences();
+				for (EObject referenced : references.basicList()) {
+					if (referenced.eResource() == model) {
+						int j = roots.indexOf(EcoreUtil.getRootContainer(referenced));
+						if (j >= 0) {
+							groupOf[findGroup(groupOf, i)] = findGroup(groupOf, j);
+						}
+					}
+				}
+			}
+		}
+
+		Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < groupOf.length; i++) {
+			groups.computeIfAbsent(findGroup(groupOf, i), group -> new ArrayList<>()).add(i);
+		}
+		return new ArrayList<>(groups.values());
+	}
+
+	/**
+	 * Finds the representative of the group the package is in.
+	 * 
+	 * @param groupOf the parent of each package in its group
+	 * @param index   of the package
+	 * @return the index of the representative package
+	 */
+	private int findGroup(int[] groupOf, int index) {
+		while (groupOf[index] != index) {
+			groupOf[index] = groupOf[groupOf[index]];
+			index = groupOf[index];
+		}
+		return index;
+	}
+
+	/**
+	 * The features are the numbers of packages, classes, abstract classes,
+	 * interfaces, data types, enumerations, attributes, references, containment
+	 * references, operations and super types, and the depth of the containment
+	 * hierarchy. The numbers are log-scaled, so a model twice the size of another
+	 * is not twice as far from it.
+	 */
+	@Override
+	public double[] getStructuralFeatures() {
+		int[] counts = new int[12];
+		TreeIterator<EObject> contents = model.getAllContents();
+		while (contents.hasNext()) {
+			EObject element = contents.next();
+			if (element instanceof EPackage) {
+				counts[0]++;
+			} else if (element instanceof EClass) {
+				EClass eClass = (EClass) element;
+				counts[1]++;
+				counts[2] += eClass.isAbstract() ? 1 : 0;
+				counts[3] += eClass.isInterface() ? 1 : 0;
+				counts[10] += eClass.getESuperTypes().size();
+			} else if (element instanceof EEnum) {
+				counts[5]++;
+			} else if (element instanceof EDataType) {
+				counts[4]++;
+			} else if (element instanceof EAttribute) {
+				counts[6]++;
+			} else if (element instanceof EReference) {
+				counts[7]++;
+				counts[8] += ((EReference) element).isContainment() ? 1 : 0;
+			} else if (element instanceof EOperation) {
+				counts[9]++;
+			}
+			int depth = 1;
+			for (EObject container = element.eContainer(); container != null; container = container.eContainer()) {
+				depth++;
+			}
+			counts[11] = Math.max(counts[11], depth);
+		}
+
+		double[] features = new double[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			features[i] = Math.log1p(counts[i]);
+		}
+		return features;
+	}
+
 	@Override
 	public ModelType getModelType() {
 		return ModelType.ECORE;
 	}
-}
\ No newline at end of file
+}
@@ -47,8 +47,19 @@ public class EcoreModelProcessor implements ModelProcessor {
 	private ErrorExtractor errorExtractor;
 
 	public EcoreModelProcessor(Knowledge knowledge) {
+		this(knowledge, new EcoreErrorExtractor());
+	}
+
+	/**
+	 * Creates a model processor that uses the specified error extractor to find
+	 * the errors after applying actions.
+	 * 
+	 * @param knowledge
+	 * @param errorExtractor
+	 */
+	public EcoreModelProcessor(Knowledge knowledge, ErrorExtractor errorExtractor) {
 		this.knowledge = knowledge;
-		errorExtractor = new EcoreErrorExtractor();
+		this.errorExtractor = errorExtractor;
 	}
 
 	@Override
@@ -145,6 +156,14 @@ public class EcoreModelProcessor implements ModelProcessor {
 		throw new IllegalArgumentException("The model needs to be of type org.eclipse.emf.ecore.resource.Resource");
 	}
 
+	@Override
+	public boolean replayAction(Error error, Action action, Model model) {
+		if (model instanceof EcoreModel) {
+			return applyActionTo(error, action, (Resource) model.getRepresentation(), action.getContextId());
+		}
+		throw new IllegalArgumentException("The model needs to be of type org.eclipse.emf.ecore.resource.Resource");
+	}
+
 	/**
 	 * Extracts package content from the model, and matches the location where the
 	 * error resides to the correct type and tries to apply the action to this error
@@ -158,6 +177,24 @@ public class EcoreModelProcessor implements ModelProcessor {
 	 *         otherwise
 	 */
 	private List<Error> tryApplyAction(Error error, Action action, Resource model, int hierarchy) {
+		if (applyActionTo(error, action, model, hierarchy)) {
+			List<Error> newErrors = errorExtractor.extractErrorsFrom(model, false);
+			return newErrors;
+		}
+		return null;
+	}
+
+	/**
+	 * Matches the location where the error resides to the correct type and applies
+	 * the action to this error location.
+	 * 
+	 * @param error
+	 * @param action
+	 * @param model
+	 * @param hierarchy
+	 * @return true if the error location was found, false otherwise
+	 */
+	private boolean applyActionTo(Error error, Action action, Resource model, int hierarchy) {
 		EPackage ePackage = (EPackage) model.getContents().get(error.getPackageIndex());
 		EObject object = (EObject) error.getContexts().get(hierarchy);
 
@@ -172,10 +209,9 @@ public class EcoreModelProcessor implements ModelProcessor {
 					success = identifyObjectTypeAndApplyAction(error, action, object, epa.getEClassifiers().get(j));
 				}
 			}
-			List<Error> newErrors = errorExtractor.extractErrorsFrom(model, false);
-			return newErrors;
+			return true;
 		}
-		return null;
+		return false;
 	}
 
 	/**
@@ -1,65 +1,220 @@
 package no.hvl.projectparmorel.qlearning.ecore;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
 
+import no.hvl.projectparmorel.Solution;
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
 import no.hvl.projectparmorel.qlearning.ActionExtractor;
 import no.hvl.projectparmorel.qlearning.ErrorExtractor;
 import no.hvl.projectparmorel.qlearning.Model;
 import no.hvl.projectparmorel.qlearning.ModelProcessor;
 import no.hvl.projectparmorel.qlearning.QModelFixer;
 import no.hvl.projectparmorel.qlearning.QSolution;
+import no.hvl.projectparmorel.qlearning.RepairBudget;
+import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
 import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
 
 public class EcoreQModelFixer extends QModelFixer {
 	private URI uri;
-	private ResourceSet resourceSet;
+	private EcoreLoadProfile loadProfile = EcoreLoadProfile.fast();
 	
 	public EcoreQModelFixer() {
 		super();
-		resourceSet = new ResourceSetImpl();
-		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("ecore",
-				new EcoreResourceFactoryImpl());
 		EcorePackage.eINSTANCE.eClass();
 	}
 	
 	public EcoreQModelFixer(List<PreferenceOption> preferences) {
 		super(preferences);
-		resourceSet = new ResourceSetImpl();
-		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("ecore",
-				new EcoreResourceFactoryImpl());
+	}
+
+	private EcoreQModelFixer(Knowledge knowledge) {
+		super(knowledge);
+	}
+
+	/**
+	 * @param knowledgeFile the knowledge is loaded from and saved to
+	 */
+	public EcoreQModelFixer(File knowledgeFile) {
+		super(knowledgeFile);
+		EcorePackage.eINSTANCE.eClass();
+	}
+
+	/**
+	 * @param preferences
+	 * @param knowledgeFile the knowledge is loaded from and saved to
+	 */
+	public EcoreQModelFixer(List<PreferenceOption> preferences, File knowledgeFile) {
+		super(preferences, knowledgeFile);
+	}
+
+	/**
+	 * Sets how models are loaded. The fast profile is used by default.
+	 * 
+	 * @param loadProfile
+	 */
+	public void setLoadProfile(EcoreLoadProfile loadProfile) {
+		this.loadProfile = loadProfile;
+	}
+
+	/**
+	 * Creates the resource set of a repair. Each repair loads its model into a
+	 * resource set of its own, which is unloaded when the solutions of the repair
+	 * are discarded, so the fixer does not hold on to the models it has repaired.
+	 * 
+	 * @return an empty resource set
+	 */
+	private ResourceSet createResourceSet() {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		loadProfile.configure(resourceSet);
+		return resourceSet;
 	}
 
 	@Override
 	protected Model initializeModelFromFile() {
 		this.uri = URI.createFileURI(originalModel.getAbsolutePath());
-		Resource modelResource = getModel(uri);
+		ResourceSet resourceSet = createResourceSet();
+		Resource modelResource = resourceSet.getResource(uri, true);
 		
-		return new EcoreModel(resourceSet, modelResource, uri);
+		return new EcoreModel(resourceSet, modelResource, uri, loadProfile);
 	}
 
-	private Resource getModel(URI uri) {
-		return resourceSet.getResource(uri, true);
+	@Override
+	protected Model initializeModelFromStream(InputStream content) throws IOException {
+		this.uri = URI.createFileURI(originalModel.getAbsolutePath());
+		ResourceSet resourceSet = createResourceSet();
+		Resource modelResource = loadProfile.createResource(uri);
+		resourceSet.getResources().add(modelResource);
+		modelResource.load(content, loadProfile.getLoadOptions());
+
+		return new EcoreModel(resourceSet, modelResource, uri, loadProfile);
 	}
 
 	@Override
-	protected Model getModel(File model) {
-		URI episodeModelUri = URI.createFileURI(model.getAbsolutePath());
-		Resource episodeModelResource = getModel(episodeModelUri);
-		
-		return new EcoreModel(resourceSet, episodeModelResource, uri);
+	protected File createInMemoryLocation() {
+		return new File(super.createInMemoryLocation().getPath() + ".ecore");
+	}
+
+	/**
+	 * Fixes a model that is already loaded. The resource is not changed. The files
+	 * of the solutions are written to the scratch workspace when they are
+	 * requested, like for {@link QModelFixer#fixModel(File)}. A file URI of the
+	 * resource only names the original model.
+	 * 
+	 * @param model the resource of the model
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 */
+	public Solution fixModel(Resource model) throws NoErrorsInModelException {
+		return fixModel(model, new RepairBudget());
+	}
+
+	/**
+	 * Fixes a model that is already loaded within the budget, like
+	 * {@link EcoreQModelFixer#fixModel(Resource)}. The repair works on a copy of
+	 * the resource, so the resource can be unloaded by its owner at any time.
+	 * 
+	 * @param model  the resource of the model
+	 * @param budget limiting the repair
+	 * @return the best solution found
+	 * @throws NoErrorsInModelException if there are no errors in the model
+	 */
+	public Solution fixModel(Resource model, RepairBudget budget) throws NoErrorsInModelException {
+		URI modelUri = model.getURI();
+		File location = modelUri != null && modelUri.isFile() ? new File(modelUri.toFileString())
+				: createInMemoryLocation();
+		return fixModel(location, () -> {
+			this.uri = URI.createFileURI(originalModel.getAbsolutePath());
+			ResourceSet resourceSet = createResourceSet();
+			Resource modelResource = loadProfile.createResource(uri);
+			Copier copier = new Copier();
+			Collection<EObject> contents = copier.copyAll(model.getContents());
+			copier.copyReferences();
+			modelResource.getContents().addAll(contents);
+			resourceSet.getResources().add(modelResource);
+			return new EcoreModel(resourceSet, modelResource, uri, loadProfile);
+		}, budget);
+	}
+
+	@Override
+	protected Model loadModel(File file) {
+		ResourceSet resourceSet = createResourceSet();
+		Resource modelResource = resourceSet.getResource(URI.createFileURI(file.getAbsolutePath()), true);
+		return new EcoreModel(resourceSet, modelResource, uri, loadProfile);
+	}
+
+	@Override
+	protected Model copyModel(Model model, File destination) {
+		Resource original = (Resource) model.getRepresentation();
+		URI destinationUri = URI.createFileURI(destination.getAbsolutePath());
+		Resource copy = loadProfile.createResource(destinationUri);
+
+		Copier copier = new Copier();
+		Collection<EObject> contents = copier.copyAll(original.getContents());
+		copier.copyReferences();
+		copy.getContents().addAll(contents);
+
+		return new EcoreModel(copy, uri, loadProfile);
+	}
+
+	@Override
+	protected Model copyPackages(Model model, List<Integer> packageIndices, File destination) {
+		Resource original = (Resource) model.getRepresentation();
+		URI destinationUri = URI.createFileURI(destination.getAbsolutePath());
+		Resource copy = writesBinaryInternalFiles() ? loadProfile.createInternalResource(destinationUri)
+				: loadProfile.createResource(destinationUri);
+
+		List<EObject> packages = new ArrayList<>();
+		for (Integer packageIndex : packageIndices) {
+			packages.add(original.getContents().get(packageIndex));
+		}
+		Copier copier = new Copier();
+		Collection<EObject> contents = copier.copyAll(packages);
+		copier.copyReferences();
+		copy.getContents().addAll(contents);
+
+		return new EcoreModel(copy, uri, loadProfile);
+	}
+
+	@Override
+	protected String getInternalFileName(String name) {
+		return writesBinaryInternalFiles() ? loadProfile.getInternalFileName(name) : name;
+	}
+
+	/**
+	 * Checks whether the internal files are written in the binary format. The
+	 * solution preferences read the files by path as XMI, so they are only binary
+	 * when there are no solution preferences.
+	 * 
+	 * @return true if the internal files are binary
+	 */
+	private boolean writesBinaryInternalFiles() {
+		return loadProfile.isBinaryInternalFiles() && !rewardCalculator.hasSolutionPreferences();
+	}
+
+	@Override
+	protected QModelFixer createSubProblemFixer(Knowledge knowledge) {
+		EcoreQModelFixer subProblemFixer = new EcoreQModelFixer(knowledge);
+		subProblemFixer.setPreferences(rewardCalculator.getPreferences());
+		subProblemFixer.setLoadProfile(loadProfile);
+		return subProblemFixer;
 	}
 
 	@Override
 	protected void updateRewardCalculator() {
-		modelProcessor = new EcoreModelProcessor(knowledge);
+		modelProcessor = new EcoreModelProcessor(knowledge, errorExtractor);
 	}
 
 	@Override
@@ -79,6 +234,6 @@ public class EcoreQModelFixer extends QModelFixer {
 
 	@Override
 	protected ModelProcessor initializeModelProcessor() {
-		return new EcoreModelProcessor(knowledge);
+		return new EcoreModelProcessor(knowledge, errorExtractor);
 	}
 }
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.eclipse.emf.ecore.resource.Resource;
 import org.junit.platform.commons.util.ExceptionUtils;
 
 import it.cs.gssi.similaritymetamodels.EComparator;
@@ -14,6 +15,11 @@ import no.hvl.projectparmorel.exceptions.DistanceUnavailableException;
 import no.hvl.projectparmorel.qlearning.QSolution;
 
 public class EcoreSolution extends QSolution { 
+	/**
+	 * The metrics are read from the console, which is shared by all threads, so
+	 * only one solution is measured at a time.
+	 */
+	private static final Object CONSOLE_LOCK = new Object();
 
 	private Logger logger;
 
@@ -50,6 +56,16 @@ public class EcoreSolution extends QSolution {
 		return distanceFromOriginal;
 	}
 	
+	/**
+	 * Gets the repaired model as a resource in memory, without writing it to file.
+	 * See {@link QSolution#getModelRepresentation()} for how long it stays loaded.
+	 * 
+	 * @return the resource of the repaired model
+	 */
+	public Resource getResource() {
+		return (Resource) getModelRepresentation();
+	}
+
 	/**
 	 * Resets the cached distance, making the next call to {@link no.hvl.projectparmorel.qlearning.ecore.EcoreSolution#calculateDistanceFromOriginal()} calculate the distance again.
 	 */
@@ -61,16 +77,20 @@ public class EcoreSolution extends QSolution {
 	private List<Double> calculateMetrics() {
 		final String qualityModel = String.format("././model/quality.model", 2);
 		ConsoleOutputCapturer c = new ConsoleOutputCapturer();
-		c.start();
-		try {
-			new QualityEvalEngine().execute(getModel().getAbsolutePath(), qualityModel);
-		} catch (Exception e) {
-			e.printStackTrace();
-			logger.warning("Could not calculate the metrics");
-			metrics = Arrays.asList(-1.0, -1.0, -1.0, -1.0, -1.0);
-			return metrics;
+		String s;
+		synchronized (CONSOLE_LOCK) {
+			c.start();
+			try {
+				new QualityEvalEngine().execute(getModel().getAbsolutePath(), qualityModel);
+			} catch (Exception e) {
+				c.stop();
+				e.printStackTrace();
+				logger.warning("Could not calculate the metrics");
+				metrics = Arrays.asList(-1.0, -1.0, -1.0, -1.0, -1.0);
+				return metrics;
+			}
+			s = c.stop();
 		}
-		String s = c.stop();
 		double d = 0.0;
 		String metric = new String();
 		String[] arrOfStr = s.split("\r\n", 20);
@@ -0,0 +1,56 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import java.util.List;
+import java.util.Random;
+
+import no.hvl.projectparmorel.qlearning.Action;
+
+/**
+ * Statistics shared by the exploration strategies.
+ */
+class ActionStatistics {
+
+	private ActionStatistics() {
+	}
+
+	/**
+	 * Sums the visits of the actions.
+	 * 
+	 * @param actions
+	 * @return the total number of visits
+	 */
+	static long totalVisits(List<Action> actions) {
+		long visits = 0;
+		for (Action action : actions) {
+			visits += action.getVisitCount();
+		}
+		return visits;
+	}
+
+	/**
+	 * Gets the action with the highest weight.
+	 * 
+	 * @param actions
+	 * @return the optimal action. If two are equal, the first is returned.
+	 */
+	static Action optimalAction(List<Action> actions) {
+		Action optimalAction = actions.get(0);
+		for (Action action : actions) {
+			if (action.compareTo(optimalAction) > 0) {
+				optimalAction = action;
+			}
+		}
+		return optimalAction;
+	}
+
+	/**
+	 * Gets a random action.
+	 * 
+	 * @param actions
+	 * @param random
+	 * @return an action
+	 */
+	static Action randomAction(List<Action> actions, Random random) {
+		return actions.get(random.nextInt(actions.size()));
+	}
+}
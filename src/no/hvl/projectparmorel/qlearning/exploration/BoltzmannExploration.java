@@ -0,0 +1,60 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import java.util.List;
+import java.util.Random;
+
+import no.hvl.projectparmorel.qlearning.Action;
+
+/**
+ * Chooses actions with probabilities that grow exponentially with their
+ * weights. Actions with almost the same weight are chosen about equally often,
+ * while clearly worse actions are rarely chosen. The temperature cools as the
+ * error code is visited, so the choices become greedier for well known errors.
+ */
+public class BoltzmannExploration implements ExplorationStrategy {
+	/**
+	 * The default temperature, in the scale of the rewards given by the
+	 * preferences.
+	 */
+	public static final double DEFAULT_TEMPERATURE = 50;
+
+	private double temperature;
+	private Random random;
+
+	public BoltzmannExploration() {
+		this(DEFAULT_TEMPERATURE);
+	}
+
+	/**
+	 * @param temperature for an error code that has not been visited
+	 */
+	public BoltzmannExploration(double temperature) {
+		this.temperature = temperature;
+		random = new Random();
+	}
+
+	@Override
+	public Action chooseAction(int errorCode, List<Action> actions) {
+		double currentTemperature = temperature / Math.sqrt(1 + ActionStatistics.totalVisits(actions));
+		Action optimalAction = ActionStatistics.optimalAction(actions);
+		if (!(currentTemperature > 0)) {
+			return optimalAction;
+		}
+		double maxWeight = optimalAction.getWeight();
+		double[] probabilities = new double[actions.size()];
+		double sum = 0;
+		for (int i = 0; i < probabilities.length; i++) {
+			probabilities[i] = Math.exp((actions.get(i).getWeight() - maxWeight) / currentTemperature);
+			sum += probabilities[i];
+		}
+
+		double target = random.nextDouble() * sum;
+		for (int i = 0; i < probabilities.length; i++) {
+			target -= probabilities[i];
+			if (target < 0) {
+				return actions.get(i);
+			}
+		}
+		return actions.get(actions.size() - 1);
+	}
+}
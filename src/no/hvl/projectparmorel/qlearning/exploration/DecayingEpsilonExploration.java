@@ -0,0 +1,58 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import java.util.List;
+import java.util.Random;
+
+import no.hvl.projectparmorel.qlearning.Action;
+
+/**
+ * Explores with a probability that decays with the number of visits to the
+ * error code. A new error code is explored with the initial probability, while
+ * one that has been repaired many times mostly follows the learned weights.
+ */
+public class DecayingEpsilonExploration implements ExplorationStrategy {
+	private double initialEpsilon;
+	private double decayRate;
+	private double minimumEpsilon;
+	private Random random;
+
+	/**
+	 * Creates a strategy starting at the fixed random factor used without a
+	 * strategy.
+	 */
+	public DecayingEpsilonExploration() {
+		this(0.25, 0.95, 0.01);
+	}
+
+	/**
+	 * @param initialEpsilon the probability of exploring an error code that has
+	 *                       not been visited
+	 * @param decayRate      the factor the probability is multiplied by for every
+	 *                       visit to the error code
+	 * @param minimumEpsilon the lowest probability of exploring
+	 */
+	public DecayingEpsilonExploration(double initialEpsilon, double decayRate, double minimumEpsilon) {
+		this.initialEpsilon = initialEpsilon;
+		this.decayRate = decayRate;
+		this.minimumEpsilon = minimumEpsilon;
+		random = new Random();
+	}
+
+	@Override
+	public Action chooseAction(int errorCode, List<Action> actions) {
+		if (random.nextDouble() < getEpsilon(ActionStatistics.totalVisits(actions))) {
+			return ActionStatistics.randomAction(actions, random);
+		}
+		return ActionStatistics.optimalAction(actions);
+	}
+
+	/**
+	 * Gets the probability of exploring an error code.
+	 * 
+	 * @param visits to the error code
+	 * @return the probability
+	 */
+	double getEpsilon(long visits) {
+		return Math.max(minimumEpsilon, initialEpsilon * Math.pow(decayRate, visits));
+	}
+}
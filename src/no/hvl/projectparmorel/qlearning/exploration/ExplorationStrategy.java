@@ -0,0 +1,23 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.Action;
+
+/**
+ * Decides between exploring and following the learned weights when an action is
+ * chosen in a learning episode. The strategies can use the visit counts of the
+ * actions, which are kept in the knowledge, so an error code that has been
+ * tried often is explored less than a new one.
+ */
+public interface ExplorationStrategy {
+
+	/**
+	 * Chooses an action for the error code.
+	 * 
+	 * @param errorCode
+	 * @param actions   for the error code in all contexts, not empty
+	 * @return the chosen action
+	 */
+	Action chooseAction(int errorCode, List<Action> actions);
+}
@@ -0,0 +1,63 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import no.hvl.projectparmorel.qlearning.Action;
+
+/**
+ * Chooses the action with the highest upper confidence bound. Actions that
+ * have not been visited are tried first. After that the weight of an action is
+ * given a bonus that shrinks as the action is visited more than the others for
+ * the same error code, so rarely tried actions are revisited without random
+ * choices.
+ */
+public class UcbExploration implements ExplorationStrategy {
+	/**
+	 * The default exploration weight, in the scale of the rewards given by the
+	 * preferences.
+	 */
+	public static final double DEFAULT_EXPLORATION_WEIGHT = 100;
+
+	private double explorationWeight;
+	private Random random;
+
+	public UcbExploration() {
+		this(DEFAULT_EXPLORATION_WEIGHT);
+	}
+
+	/**
+	 * @param explorationWeight scaling the bonus of rarely visited actions
+	 */
+	public UcbExploration(double explorationWeight) {
+		this.explorationWeight = explorationWeight;
+		random = new Random();
+	}
+
+	@Override
+	public Action chooseAction(int errorCode, List<Action> actions) {
+		List<Action> unvisitedActions = new ArrayList<>();
+		for (Action action : actions) {
+			if (action.getVisitCount() == 0) {
+				unvisitedActions.add(action);
+			}
+		}
+		if (!unvisitedActions.isEmpty()) {
+			return ActionStatistics.randomAction(unvisitedActions, random);
+		}
+
+		double logOfTotalVisits = Math.log(ActionStatistics.totalVisits(actions));
+		Action bestAction = actions.get(0);
+		double bestBound = Double.NEGATIVE_INFINITY;
+		for (Action action : actions) {
+			double bound = action.getWeight()
+					+ explorationWeight * Math.sqrt(logOfTotalVisits / action.getVisitCount());
+			if (bound > bestBound) {
+				bestBound = bound;
+				bestAction = action;
+			}
+		}
+		return bestAction;
+	}
+}
@@ -1,6 +1,7 @@
 package no.hvl.projectparmorel.qlearning.knowledge;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,15 @@ class ActionMap {
 		actions.put(action.getId(), action);
 	}
 
+	/**
+	 * Gets all the actions in the map.
+	 * 
+	 * @return the actions
+	 */
+	protected Collection<Action> getActions() {
+		return actions.values();
+	}
+
 	/**
 	 * Gets the value for the specified action id
 	 * 
@@ -0,0 +1,339 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import no.hvl.projectparmorel.qlearning.Action;
+import no.hvl.projectparmorel.qlearning.SerializableMethod;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+/**
+ * A read-only snapshot of the Q-table, compiled for repairing without learning.
+ *
+ * The error codes are kept in a sorted array, and the actions for each error
+ * code are ranked by weight across all contexts. Finding the optimal action is
+ * then a binary search and an array lookup, rather than a walk through the
+ * nested maps of the Q-table. The actions are copies, so later learning does
+ * not change the policy.
+ *
+ * A policy can be saved to a compact binary file and loaded without the
+ * knowledge file. The visit counts and the stored preference weights of the
+ * actions are kept when compiling, but are not saved. The methods of the
+ * actions are saved by name, so loading a policy never deserializes objects
+ * from the file.
+ */
+public final class CompiledPolicy {
+	private static final int MAGIC_NUMBER = 0x50524D50;
+	private static final int FORMAT_VERSION = 2;
+	private static final int MAX_PARAMETERS = 255;
+	private static final Map<String, Class<?>> PRIMITIVE_TYPES = indexPrimitiveTypes();
+
+	private final int[] errorCodes;
+	private final Action[][] rankedActions;
+
+	/**
+	 * @param errorCodes    sorted in ascending order
+	 * @param rankedActions the actions for the error code at the same index, the
+	 *                      action with the highest weight first
+	 */
+	private CompiledPolicy(int[] errorCodes, Action[][] rankedActions) {
+		this.errorCodes = errorCodes;
+		this.rankedActions = rankedActions;
+	}
+
+	/**
+	 * Compiles the actions in the directory into a policy.
+	 *
+	 * @param directory
+	 * @return the compiled policy
+	 */
+	static CompiledPolicy compile(ErrorContextActionDirectory directory) {
+		Set<Integer> errorCodeSet = directory.getAllErrorCodes();
+		int[] errorCodes = new int[errorCodeSet.size()];
+		int index = 0;
+		for (Integer errorCode : errorCodeSet) {
+			errorCodes[index++] = errorCode;
+		}
+		Arrays.sort(errorCodes);
+
+		Action[][] rankedActions = new Action[errorCodes.length][];
+		for (int i = 0; i < errorCodes.length; i++) {
+			List<Action> actions = directory.getActionsForErrorCode(errorCodes[i]);
+			Action[] copies = new Action[actions.size()];
+			for (int j = 0; j < copies.length; j++) {
+				copies[j] = copyOf(actions.get(j));
+			}
+			Arrays.sort(copies, Collections.reverseOrder());
+			rankedActions[i] = copies;
+		}
+		return new CompiledPolicy(errorCodes, rankedActions);
+	}
+
+	/**
+	 * Checks if the policy has actions for the specified error code.
+	 *
+	 * @param errorCode
+	 * @return true if the error code has at least one action, false otherwise
+	 */
+	public boolean containsErrorCode(int errorCode) {
+		int index = Arrays.binarySearch(errorCodes, errorCode);
+		return index >= 0 && rankedActions[index].length > 0;
+	}
+
+	/**
+	 * Gets the action with the highest weight for the specified error code.
+	 *
+	 * @param errorCode
+	 * @return the optimal action, or null if the policy has no action for the
+	 *         error code
+	 */
+	public Action getOptimalAction(int errorCode) {
+		int index = Arrays.binarySearch(errorCodes, errorCode);
+		if (index < 0 || rankedActions[index].length == 0) {
+			return null;
+		}
+		return rankedActions[index][0];
+	}
+
+	/**
+	 * Gets the actions for the specified error code, the action with the highest
+	 * weight first.
+	 *
+	 * @param errorCode
+	 * @return an unmodifiable list of the actions, empty if the error code is not
+	 *         in the policy
+	 */
+	public List<Action> getRankedActions(int errorCode) {
+		int index = Arrays.binarySearch(errorCodes, errorCode);
+		if (index < 0) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(rankedActions[index]));
+	}
+
+	/**
+	 * Finds the specified action.
+	 *
+	 * @param errorCode
+	 * @param contextId
+	 * @param actionId
+	 * @return the action, or null if it is not in the policy
+	 */
+	Action findAction(int errorCode, int contextId, int actionId) {
+		for (Action action : getRankedActions(errorCode)) {
+			if (action.getContextId() == contextId && action.getId() == actionId) {
+				return action;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the error codes in the policy.
+	 *
+	 * @return the error codes in ascending order
+	 */
+	public int[] getErrorCodes() {
+		return errorCodes.clone();
+	}
+
+	/**
+	 * Saves the policy to the specified file.
+	 *
+	 * @param file
+	 * @throws IOException if the file could not be written
+	 */
+	public void save(File file) throws IOException {
+		try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+			save(outputStream);
+		}
+	}
+
+	/**
+	 * Writes the policy to the specified stream. The stream is not closed.
+	 *
+	 * @param outputStream
+	 * @throws IOException if the policy could not be written
+	 */
+	public void save(OutputStream outputStream) throws IOException {
+		DataOutputStream output = new DataOutputStream(outputStream);
+		output.writeInt(MAGIC_NUMBER);
+		output.writeInt(FORMAT_VERSION);
+		output.writeInt(errorCodes.length);
+		for (int i = 0; i < errorCodes.length; i++) {
+			output.writeInt(errorCodes[i]);
+			output.writeInt(rankedActions[i].length);
+			for (Action action : rankedActions[i]) {
+				output.writeUTF(action.getActionType());
+				output.writeInt(action.getId());
+				output.writeUTF(action.getName());
+				output.writeInt(action.getContextId());
+				output.writeDouble(action.getWeight());
+				writeMethod(output, action.getMethod());
+			}
+		}
+		output.flush();
+	}
+
+	/**
+	 * Loads a policy from the specified file.
+	 *
+	 * @param file
+	 * @return the loaded policy
+	 * @throws IOException if the file could not be read or is not a policy
+	 */
+	public static CompiledPolicy load(File file) throws IOException {
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			return load(inputStream);
+		}
+	}
+
+	/**
+	 * Reads a policy from the specified stream. The stream is not closed.
+	 *
+	 * @param inputStream
+	 * @return the loaded policy
+	 * @throws IOException if the policy could not be read
+	 */
+	public static CompiledPolicy load(InputStream inputStream) throws IOException {
+		DataInputStream input = new DataInputStream(inputStream);
+		if (input.readInt() != MAGIC_NUMBER) {
+			throw new IOException("The stream does not contain a compiled policy.");
+		}
+		int version = input.readInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported compiled policy version " + version);
+		}
+		int[] errorCodes = new int[input.readInt()];
+		Action[][] rankedActions = new Action[errorCodes.length][];
+		for (int i = 0; i < errorCodes.length; i++) {
+			errorCodes[i] = input.readInt();
+			if (i > 0 && errorCodes[i] <= errorCodes[i - 1]) {
+				throw new IOException("The error codes of the compiled policy are not sorted.");
+			}
+			rankedActions[i] = new Action[input.readInt()];
+			for (int j = 0; j < rankedActions[i].length; j++) {
+				String type = input.readUTF();
+				int id = input.readInt();
+				String name = input.readUTF();
+				int contextId = input.readInt();
+				double weight = input.readDouble();
+				SerializableMethod method = readMethod(input);
+				rankedActions[i][j] = createAction(type, id, name, method, contextId, weight);
+			}
+		}
+		return new CompiledPolicy(errorCodes, rankedActions);
+	}
+
+	/**
+	 * Copies the action with its weight, visit count and stored preference
+	 * weights.
+	 *
+	 * @param action
+	 * @return the copy
+	 */
+	static Action copyOf(Action action) {
+		Action copy = createAction(action.getActionType(), action.getId(), action.getName(), action.getMethod(),
+				action.getContextId(), action.getWeight());
+		copy.addVisits(action.getVisitCount(), action.getLastUpdated());
+		copy.getPreferenceMap().copyStoredWeightsFrom(action.getPreferenceMap());
+		return copy;
+	}
+
+	private static Action createAction(String type, int id, String name, SerializableMethod method, int contextId,
+			double weight) {
+		Action action;
+		switch (type) {
+		case EcoreAction.TYPE:
+			action = new EcoreAction(id, name, method, contextId);
+			break;
+		default:
+			throw new UnsupportedOperationException("This action type does not have an deserializeable definition.");
+		}
+		action.setWeight(weight);
+		return action;
+	}
+
+	/**
+	 * Writes the method by the names of its class, itself and its parameter types,
+	 * so reading it back does not deserialize any objects.
+	 */
+	private static void writeMethod(DataOutputStream output, SerializableMethod method) throws IOException {
+		if (method == null) {
+			output.writeInt(-1);
+			return;
+		}
+		Class<?>[] parameterTypes = method.getMethod().getParameterTypes();
+		output.writeInt(parameterTypes.length);
+		output.writeUTF(method.getMethod().getDeclaringClass().getName());
+		output.writeUTF(method.getMethod().getName());
+		for (Class<?> parameterType : parameterTypes) {
+			output.writeUTF(parameterType.getName());
+		}
+	}
+
+	private static SerializableMethod readMethod(DataInputStream input) throws IOException {
+		int parameterCount = input.readInt();
+		if (parameterCount < 0) {
+			return null;
+		}
+		if (parameterCount > MAX_PARAMETERS) {
+			throw new IOException("The method of an action in the compiled policy has " + parameterCount
+					+ " parameters.");
+		}
+		String className = input.readUTF();
+		String methodName = input.readUTF();
+		Class<?>[] parameterTypes = new Class<?>[parameterCount];
+		for (int i = 0; i < parameterCount; i++) {
+			parameterTypes[i] = classForName(input.readUTF());
+		}
+		try {
+			return new SerializableMethod(classForName(className).getMethod(methodName, parameterTypes));
+		} catch (NoSuchMethodException e) {
+			throw new IOException("Could not find the method " + className + "." + methodName
+					+ " of an action in the compiled policy.", e);
+		}
+	}
+
+	/**
+	 * Finds the class without initializing it.
+	 *
+	 * @param name of the class, as given by {@link Class#getName()}
+	 * @return the class
+	 * @throws IOException if the class could not be found
+	 */
+	private static Class<?> classForName(String name) throws IOException {
+		Class<?> primitiveType = PRIMITIVE_TYPES.get(name);
+		if (primitiveType != null) {
+			return primitiveType;
+		}
+		try {
+			return Class.forName(name, false, CompiledPolicy.class.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Could not find the class " + name + " of an action in the compiled policy.", e);
+		}
+	}
+
+	private static Map<String, Class<?>> indexPrimitiveTypes() {
+		Map<String, Class<?>> primitiveTypes = new HashMap<>();
+		for (Class<?> primitiveType : Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class,
+				long.class, float.class, double.class, void.class)) {
+			primitiveTypes.put(primitiveType.getName(), primitiveType);
+		}
+		return primitiveTypes;
+	}
+}
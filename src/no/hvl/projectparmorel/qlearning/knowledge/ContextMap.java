@@ -1,6 +1,7 @@
 package no.hvl.projectparmorel.qlearning.knowledge;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,6 +107,19 @@ class ContextMap {
 		return null;
 	}
 
+	/**
+	 * Gets the actions in all the contexts.
+	 * 
+	 * @return the actions
+	 */
+	protected List<Action> getActions() {
+		List<Action> allActions = new ArrayList<>();
+		for (ActionMap actionMap : actions.values()) {
+			allActions.addAll(actionMap.getActions());
+		}
+		return allActions;
+	}
+
 	/**
 	 * Gets the number of contexts
 	 * 
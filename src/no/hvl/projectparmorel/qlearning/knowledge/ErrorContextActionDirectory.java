@@ -33,6 +33,14 @@ public interface ErrorContextActionDirectory {
 	 */
 	abstract Action getOptimalActionForErrorCode(Integer errorCode);
 
+	/**
+	 * Gets the actions in all the contexts for the specified error code.
+	 * 
+	 * @param errorCode
+	 * @return the actions, or an empty list if the error code is not in the directory
+	 */
+	abstract List<Action> getActionsForErrorCode(Integer errorCode);
+
 	/**
 	 * Checks that the provided value exists for the specified error code and context id
 	 * 
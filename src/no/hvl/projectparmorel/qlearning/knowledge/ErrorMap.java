@@ -1,6 +1,7 @@
 package no.hvl.projectparmorel.qlearning.knowledge;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +76,20 @@ class ErrorMap {
 		return contextForErrorCode.getOptimalAction();
 	}
 
+	/**
+	 * Gets the actions in all the contexts for the specified error code.
+	 * 
+	 * @param errorCode
+	 * @return the actions, or an empty list if the error code is not in the map
+	 */
+	protected List<Action> getActionsForErrorCode(Integer errorCode) {
+		ContextMap contextForErrorCode = contexts.get(errorCode);
+		if (contextForErrorCode == null) {
+			return new ArrayList<>();
+		}
+		return contextForErrorCode.getActions();
+	}
+
 	/**
 	 * Gets the number of contexts that exists for a specified error.
 	 * 
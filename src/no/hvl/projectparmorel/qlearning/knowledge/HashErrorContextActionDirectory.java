@@ -37,6 +37,11 @@ public class HashErrorContextActionDirectory implements ErrorContextActionDirect
 		return errors.getOptimalActionForErrorCode(errorCode);
 	}
 
+	@Override
+	public List<Action> getActionsForErrorCode(Integer errorCode) {
+		return errors.getActionsForErrorCode(errorCode);
+	}
+
 	@Override
 	public Action getAction(Integer errorCode, Integer contextId, Integer actionId) {
 		return errors.getAction(errorCode, contextId, actionId);
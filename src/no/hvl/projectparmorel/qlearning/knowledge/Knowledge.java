@@ -32,11 +32,45 @@ import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
 public class Knowledge {
 	private Logger logger;
 	public static final String KNOWLEDGE_FILE_NAME = "knowledge.xml";
+	/**
+	 * Fixers running in parallel share the knowledge file.
+	 */
+	private static final Object FILE_LOCK = new Object();
 	private QTable qTable;
+	private final File file;
 
 	public Knowledge() {
+		this(new File(KNOWLEDGE_FILE_NAME));
+	}
+
+	/**
+	 * @param file the knowledge is loaded from and saved to
+	 */
+	public Knowledge(File file) {
 		logger = Logger.getLogger("MyLog");
 		qTable = new QTable();
+		this.file = file;
+	}
+
+	/**
+	 * Gets the file the knowledge is loaded from and saved to.
+	 * 
+	 * @return the knowledge file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Creates a copy of the knowledge, kept in the same file. The actions are
+	 * copied, so learning in the copy does not change this knowledge.
+	 * 
+	 * @return the copy
+	 */
+	public Knowledge copy() {
+		Knowledge copy = new Knowledge(file);
+		copy.qTable.mergeLearningFrom(qTable, copy.qTable.compilePolicy());
+		return copy;
 	}
 
 	/**
@@ -83,9 +117,10 @@ public class Knowledge {
 			TransformerFactory transformerFactory = TransformerFactory.newInstance();
 			Transformer transformer = transformerFactory.newTransformer();
 			DOMSource domSource = new DOMSource(document);
-			File file = new File(KNOWLEDGE_FILE_NAME);
 			StreamResult streamResult = new StreamResult(file);
-			transformer.transform(domSource, streamResult);
+			synchronized (FILE_LOCK) {
+				transformer.transform(domSource, streamResult);
+			}
 			logger.info("Saving completed to " + file.getAbsolutePath());
 		} catch (ParserConfigurationException pce) {
 			pce.printStackTrace();
@@ -101,11 +136,13 @@ public class Knowledge {
 	public boolean load() {
 		try {
 			logger.info("Loading initialized");
-			File fXmlFile = new File(KNOWLEDGE_FILE_NAME);
-			logger.info("File created: " + fXmlFile.getAbsolutePath());
+			logger.info("File created: " + file.getAbsolutePath());
 			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
 			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(fXmlFile);
+			Document doc;
+			synchronized (FILE_LOCK) {
+				doc = dBuilder.parse(file);
+			}
 			doc.getDocumentElement().normalize();
 
 			logger.info("Root found: " + doc.getDocumentElement().getNodeName());
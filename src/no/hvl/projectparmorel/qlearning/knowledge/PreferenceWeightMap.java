@@ -1,9 +1,12 @@
 package no.hvl.projectparmorel.qlearning.knowledge;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -13,40 +16,67 @@ import org.w3c.dom.NodeList;
 
 import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
 
+/**
+ * Stores the weights the preferences have given an action.
+ *
+ * There is one map for every action in the knowledge, so the weights are kept
+ * in fixed size arrays indexed by the preference id, with a bitmask telling
+ * which preferences are present. Stored weights of preferences this version
+ * does not know, like those saved by a newer version, are kept aside and
+ * written back unchanged.
+ */
 public class PreferenceWeightMap {
+	private static final PreferenceOption[] PREFERENCES_BY_ID = indexPreferencesById();
+
 	private final String XML_ID_NAME = "id";
 	private final String XML_VALUE_NAME = "value";
-	
+
+	/**
+	 * These are the weights updated through the execution.
+	 */
+	private int[] executionWeights;
+	private int executionPreferences;
 	/**
-	 * This is the map updated through the execution.
+	 * These are the weights updated at the end of each execution and stored.
 	 */
-	private Map<PreferenceOption, Integer> executionPreferenceMap;
+	private int[] storedWeights;
+	private int storedPreferences;
 	/**
-	 * This is the map updated at the end of each execution and stored.
+	 * Stored weights of unknown preference ids, or null if there are none.
 	 */
-	private Map<Integer, Integer> storedPreferenceMap;
-	
+	private Map<Integer, Integer> unknownStoredWeights;
+
 	public PreferenceWeightMap() {
-		 executionPreferenceMap = new HashMap<PreferenceOption, Integer>();
-		 storedPreferenceMap = new HashMap<Integer, Integer>();
+		executionWeights = new int[PREFERENCES_BY_ID.length];
+		storedWeights = new int[PREFERENCES_BY_ID.length];
 	}
-	
+
 	public PreferenceWeightMap(Map<PreferenceOption, Integer> preferenceMap) {
-		this.executionPreferenceMap = preferenceMap;
-		storedPreferenceMap = new HashMap<Integer, Integer>();
+		this();
+		for (Map.Entry<PreferenceOption, Integer> entry : preferenceMap.entrySet()) {
+			set(entry.getKey().id, entry.getValue());
+		}
 	}
 
 	public PreferenceWeightMap(NodeList preferenceList) throws IOException {
 		this();
-		for(int i = 0; i < preferenceList.getLength(); i++) {
+		for (int i = 0; i < preferenceList.getLength(); i++) {
 			Node context = preferenceList.item(i);
-			if(context.getNodeType() == Node.ELEMENT_NODE) {
+			if (context.getNodeType() == Node.ELEMENT_NODE) {
 				Element preferenceElement = (Element) context;
 				String preferenceIdAsString = preferenceElement.getAttribute(XML_ID_NAME);
-				if(preferenceIdAsString.length() > 0) {
-					Integer preferenceId = Integer.parseInt(preferenceIdAsString);
-					Integer value = Integer.parseInt(preferenceElement.getAttribute(XML_VALUE_NAME));
-					storedPreferenceMap.put(preferenceId, value);
+				if (preferenceIdAsString.length() > 0) {
+					int preferenceId = Integer.parseInt(preferenceIdAsString);
+					int value = Integer.parseInt(preferenceElement.getAttribute(XML_VALUE_NAME));
+					if (isKnownPreferenceId(preferenceId)) {
+						storedWeights[preferenceId] = value;
+						storedPreferences |= 1 << preferenceId;
+					} else {
+						if (unknownStoredWeights == null) {
+							unknownStoredWeights = new TreeMap<>();
+						}
+						unknownStoredWeights.put(preferenceId, value);
+					}
 				}
 			} else {
 				throw new IOException("Could not instantiate preference map from " + context.getNodeName());
@@ -54,79 +84,215 @@ public class PreferenceWeightMap {
 		}
 	}
 
+	/**
+	 * Gets a copy of the weights updated through the execution.
+	 *
+	 * @return a map from preference to weight
+	 */
 	public Map<PreferenceOption, Integer> getPreferenceMap() {
-		return executionPreferenceMap;
-	}	
-	
+		Map<PreferenceOption, Integer> preferenceMap = new EnumMap<>(PreferenceOption.class);
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (isSet(executionPreferences, id)) {
+				preferenceMap.put(PREFERENCES_BY_ID[id], executionWeights[id]);
+			}
+		}
+		return preferenceMap;
+	}
+
 	/**
 	 * Gets all the preferences.
-	 * 
+	 *
 	 * @return all the preferences.
 	 */
-	public Set<PreferenceOption> getAllPreferenceIds(){
-		return executionPreferenceMap.keySet();
+	public Set<PreferenceOption> getAllPreferenceIds() {
+		Set<PreferenceOption> preferences = EnumSet.noneOf(PreferenceOption.class);
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (isSet(executionPreferences, id)) {
+				preferences.add(PREFERENCES_BY_ID[id]);
+			}
+		}
+		return preferences;
 	}
-	
+
 	/**
 	 * Gets the weight for the corresponding preference id.
-	 * 
+	 *
 	 * @param preferenceId to get weight for
-	 * @return the corresponding weight
+	 * @return the corresponding weight, or 0 if the preference is not in the map
 	 */
 	public int getWeightFor(PreferenceOption preference) {
-		return executionPreferenceMap.get(preference);
+		return executionWeights[preference.id];
+	}
+
+	/**
+	 * Sums the weights of the specified preferences that are in the map.
+	 *
+	 * @param preferences
+	 * @return the total weight
+	 */
+	public int getTotalWeightFor(List<PreferenceOption> preferences) {
+		int totalWeight = 0;
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (isSet(executionPreferences, id) && preferences.contains(PREFERENCES_BY_ID[id])) {
+				totalWeight += executionWeights[id];
+			}
+		}
+		return totalWeight;
 	}
 
 	/**
 	 * Inserts the value for the specified preference id
-	 * 
+	 *
 	 * @param preferenceId
 	 * @param value
 	 */
 	protected void set(int preferenceId, int value) {
-		executionPreferenceMap.put(PreferenceOption.valueOfID(preferenceId), value);
+		executionWeights[preferenceId] = value;
+		executionPreferences |= 1 << preferenceId;
 	}
 
 	/**
 	 * Checks if the map contains the specific preference id
-	 * 
+	 *
 	 * @param preferenceId
 	 * @return true if the dictionary contains the preference id
 	 */
 	public boolean contains(PreferenceOption preference) {
-		return executionPreferenceMap.containsKey(preference);
+		return isSet(executionPreferences, preference.id);
 	}
 
 	/**
-	 * Saves the preferences for the specified preference ID, and combines it with the old value if it exists.
-	 * 
+	 * Saves the preferences for the specified preference ID, and combines it with
+	 * the old value if it exists.
+	 *
 	 * @param preferenceId
 	 */
 	public void combineAndSavePreference(PreferenceOption preference) {
-		if(storedPreferenceMap.containsKey(preference.id)) {
-			storedPreferenceMap.put(preference.id, storedPreferenceMap.get(preference.id) + executionPreferenceMap.get(preference));
+		combineAndSave(preference.id);
+	}
+
+	/**
+	 * Saves all the preferences updated through the execution, and combines them
+	 * with the old values if they exist.
+	 */
+	public void combineAndSaveAll() {
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (isSet(executionPreferences, id)) {
+				combineAndSave(id);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the stored weights of this map, including those of unknown
+	 * preference ids, with those of another map.
+	 *
+	 * @param other
+	 */
+	void copyStoredWeightsFrom(PreferenceWeightMap other) {
+		System.arraycopy(other.storedWeights, 0, storedWeights, 0, storedWeights.length);
+		storedPreferences = other.storedPreferences;
+		unknownStoredWeights = other.unknownStoredWeights == null ? null : new TreeMap<>(other.unknownStoredWeights);
+	}
+
+	/**
+	 * Adds how much the stored weights of another map changed since a baseline to
+	 * the stored weights of this map, so the learning of several copies adds up.
+	 *
+	 * @param learned  the map that has learned
+	 * @param baseline the stored weights of the learned map before it learned, or
+	 *                 null if it had none
+	 * @return true if any weight was added, false otherwise
+	 */
+	boolean addStoredChanges(PreferenceWeightMap learned, PreferenceWeightMap baseline) {
+		boolean changed = false;
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (!isSet(learned.storedPreferences, id)) {
+				continue;
+			}
+			boolean wasStored = baseline != null && isSet(baseline.storedPreferences, id);
+			int change = learned.storedWeights[id] - (wasStored ? baseline.storedWeights[id] : 0);
+			if (change == 0 && wasStored) {
+				continue;
+			}
+			if (isSet(storedPreferences, id)) {
+				storedWeights[id] += change;
+			} else {
+				storedWeights[id] = change;
+				storedPreferences |= 1 << id;
+			}
+			changed = true;
+		}
+		return changed;
+	}
+
+	private void combineAndSave(int preferenceId) {
+		if (isSet(storedPreferences, preferenceId)) {
+			storedWeights[preferenceId] += executionWeights[preferenceId];
 		} else {
-			storedPreferenceMap.put(preference.id, executionPreferenceMap.get(preference));
+			storedWeights[preferenceId] = executionWeights[preferenceId];
+			storedPreferences |= 1 << preferenceId;
 		}
 	}
 
 	/**
 	 * Saves the content to the document under preferenceMap
+	 *
 	 * @param document
 	 * @param preferenceMap
 	 */
 	public void saveTo(Document document, Element preferenceMap) {
-		for(Integer key : storedPreferenceMap.keySet()) {
-			Element preference = document.createElement("preference");
-			preferenceMap.appendChild(preference);
-			
-			Attr preferenceId = document.createAttribute(XML_ID_NAME);
-			preferenceId.setValue("" + key);
-            preference.setAttributeNode(preferenceId);
-			
-			Attr value = document.createAttribute(XML_VALUE_NAME);
-            value.setValue("" + storedPreferenceMap.get(key));
-            preference.setAttributeNode(value);
+		for (int id = 0; id < PREFERENCES_BY_ID.length; id++) {
+			if (isSet(storedPreferences, id)) {
+				savePreferenceTo(document, preferenceMap, id, storedWeights[id]);
+			}
+		}
+		if (unknownStoredWeights != null) {
+			for (Map.Entry<Integer, Integer> unknownWeight : unknownStoredWeights.entrySet()) {
+				savePreferenceTo(document, preferenceMap, unknownWeight.getKey(), unknownWeight.getValue());
+			}
+		}
+	}
+
+	private void savePreferenceTo(Document document, Element preferenceMap, int id, int weight) {
+		Element preference = document.createElement("preference");
+		preferenceMap.appendChild(preference);
+
+		Attr preferenceId = document.createAttribute(XML_ID_NAME);
+		preferenceId.setValue("" + id);
+		preference.setAttributeNode(preferenceId);
+
+		Attr value = document.createAttribute(XML_VALUE_NAME);
+		value.setValue("" + weight);
+		preference.setAttributeNode(value);
+	}
+
+	private static boolean isSet(int preferences, int preferenceId) {
+		return (preferences & (1 << preferenceId)) != 0;
+	}
+
+	private static boolean isKnownPreferenceId(int preferenceId) {
+		return preferenceId >= 0 && preferenceId < PREFERENCES_BY_ID.length && PREFERENCES_BY_ID[preferenceId] != null;
+	}
+
+	/**
+	 * Creates a lookup table from preference id to preference. The ids are small
+	 * and dense, so they are used directly as array indices.
+	 *
+	 * @return the preferences indexed by id
+	 */
+	private static PreferenceOption[] indexPreferencesById() {
+		int largestId = 0;
+		for (PreferenceOption option : PreferenceOption.values()) {
+			largestId = Math.max(largestId, option.id);
+		}
+		if (largestId >= Integer.SIZE) {
+			throw new IllegalStateException("Preference ids must fit in the bitmask of the preference weight map");
+		}
+		PreferenceOption[] preferences = new PreferenceOption[largestId + 1];
+		for (PreferenceOption option : PreferenceOption.values()) {
+			preferences[option.id] = option;
 		}
+		return preferences;
 	}
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package no.hvl.projectparmorel.qlearning.knowledge;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -11,9 +13,15 @@ import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
 
 public class QTable {
 	ErrorContextActionDirectory qTable;
+	/**
+	 * The weights of the warm-started actions before they were raised, and the
+	 * weights they were raised to.
+	 */
+	private Map<Action, double[]> warmStartedWeights;
 
 	protected QTable() {
 		qTable = new HashErrorContextActionDirectory();
+		warmStartedWeights = new IdentityHashMap<>();
 	}
 
 	/**
@@ -86,6 +94,16 @@ public class QTable {
 		return qTable.getRandomActionForError(errorCode);
 	}
 
+	/**
+	 * Gets the actions in all the contexts for the specified error code.
+	 * 
+	 * @param errorCode
+	 * @return the actions, or an empty list if the error code is not in the Q-table
+	 */
+	public List<Action> getActionsForErrorCode(int errorCode) {
+		return qTable.getActionsForErrorCode(errorCode);
+	}
+
 	/**
 	 * Gets the tag dictionary for the specified action
 	 * 
@@ -149,6 +167,98 @@ public class QTable {
 		return qTable.getOptimalActionForErrorCode(errorCode);
 	}
 
+	/**
+	 * Compiles the current weights into a read-only policy.
+	 * 
+	 * @return the compiled policy
+	 */
+	public CompiledPolicy compilePolicy() {
+		return CompiledPolicy.compile(qTable);
+	}
+
+	/**
+	 * Adds what was learned in another Q-table to this one. The other table must
+	 * have been a copy of the same knowledge when the baseline was compiled from
+	 * it. The change of each weight, visit count and stored preference weight since
+	 * the baseline is added to this table, so the learning from several copies adds
+	 * up. Actions this table does not have are copied from the other table.
+	 * 
+	 * @param learned  the Q-table that has learned
+	 * @param baseline compiled from the learned Q-table before it learned
+	 * @return true if any weight or action was added, false otherwise
+	 */
+	public boolean mergeLearningFrom(QTable learned, CompiledPolicy baseline) {
+		boolean changed = false;
+		for (Integer errorCode : learned.qTable.getAllErrorCodes()) {
+			for (Action action : learned.getActionsForErrorCode(errorCode)) {
+				int contextId = action.getContextId();
+				Action before = baseline.findAction(errorCode, contextId, action.getId());
+				double weightBefore = before == null ? 0 : before.getWeight();
+				int visitsBefore = before == null ? 0 : before.getVisitCount();
+				if (!containsActionForErrorAndContext(errorCode, contextId, action.getId())) {
+					setAction(errorCode, contextId, CompiledPolicy.copyOf(action));
+					changed = true;
+				} else {
+					Action existing = getAction(errorCode, contextId, action.getId());
+					if (action.getWeight() != weightBefore || action.getVisitCount() != visitsBefore) {
+						existing.setWeight(existing.getWeight() + action.getWeight() - weightBefore);
+						existing.addVisits(action.getVisitCount() - visitsBefore, action.getLastUpdated());
+						changed = true;
+					}
+					changed |= existing.getPreferenceMap().addStoredChanges(action.getPreferenceMap(),
+							before == null ? null : before.getPreferenceMap());
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Raises the weight of the action to the seed for the coming repair, if it is
+	 * lower. The raise is undone by {@link QTable#undoWarmStart()}.
+	 * 
+	 * @param errorCode
+	 * @param contextId
+	 * @param actionId
+	 * @param seed      the weight to raise to
+	 * @return true if the weight was raised, false if the action is not in the
+	 *         table or its weight is not lower than the seed
+	 */
+	public boolean warmStart(int errorCode, int contextId, int actionId, double seed) {
+		if (!containsActionForErrorAndContext(errorCode, contextId, actionId)) {
+			return false;
+		}
+		Action action = getAction(errorCode, contextId, actionId);
+		if (action.getWeight() >= seed) {
+			return false;
+		}
+		double[] weights = warmStartedWeights.get(action);
+		double weightBefore = weights == null ? action.getWeight() : weights[0];
+		warmStartedWeights.put(action, new double[] { weightBefore, seed });
+		action.setWeight(seed);
+		return true;
+	}
+
+	/**
+	 * Restores the weights raised by {@link QTable#warmStart}, so they are not
+	 * saved or merged as learning. Weights that have been changed since they were
+	 * raised are kept.
+	 * 
+	 * @return the number of weights restored
+	 */
+	public int undoWarmStart() {
+		int restored = 0;
+		for (Map.Entry<Action, double[]> warmStartedWeight : warmStartedWeights.entrySet()) {
+			Action action = warmStartedWeight.getKey();
+			if (action.getWeight() == warmStartedWeight.getValue()[1]) {
+				action.setWeight(warmStartedWeight.getValue()[0]);
+				restored++;
+			}
+		}
+		warmStartedWeights.clear();
+		return restored;
+	}
+
 	public void updateReward(AppliedAction errorAction, int contextId) {
 		int errorCode = errorAction.getError().getCode();
 		int actionId = errorAction.getAction().getId();
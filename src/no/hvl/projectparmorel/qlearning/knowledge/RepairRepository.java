@@ -0,0 +1,297 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import no.hvl.projectparmorel.qlearning.AppliedAction;
+import no.hvl.projectparmorel.qlearning.QModelFixer;
+
+/**
+ * Remembers the repairs of previous models, so the repair of a new model can
+ * start from what worked for the models most like it.
+ *
+ * Each repair is stored as the structural features of the model together with
+ * the actions of its best sequence. The features are logarithms of counts, so
+ * the similarity of two models is taken from the euclidean distance between
+ * their features, which tells models of different sizes apart. Warm-starting
+ * raises the weights of the actions used on the nearest models, by more the
+ * more similar the model is. A weight is only raised to the boost, never past
+ * it, and the raised weights are only used during the repair. Weights that
+ * were not changed by learning are restored before the knowledge is saved, see
+ * {@link QTable#undoWarmStart()}.
+ *
+ * The oldest repairs are forgotten once the repository is full, and a model
+ * repaired again replaces its earlier repair.
+ */
+public class RepairRepository {
+	private static final String XML_ROOT_NAME = "repairs";
+	private static final String XML_REPAIR_NAME = "repair";
+	private static final String XML_FEATURES_NAME = "features";
+	private static final String XML_ACTION_NAME = "action";
+	private static final String XML_ERROR_NAME = "error";
+	private static final String XML_CONTEXT_NAME = "context";
+	private static final String XML_ID_NAME = "id";
+
+	/**
+	 * The weight given to the actions of an identical model.
+	 */
+	public static final double DEFAULT_BOOST = 50;
+	public static final int DEFAULT_NEIGHBOURS = 3;
+	public static final int DEFAULT_CAPACITY = 200;
+
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private File file;
+	private List<Repair> repairs;
+	private double boost = DEFAULT_BOOST;
+	private int neighbours = DEFAULT_NEIGHBOURS;
+	private int capacity = DEFAULT_CAPACITY;
+
+	/**
+	 * Creates a repository stored in the specified file. The repairs in the file
+	 * are loaded if it exists.
+	 *
+	 * @param file
+	 * @throws IOException if the file exists but could not be read
+	 */
+	public RepairRepository(File file) throws IOException {
+		this.file = file;
+		repairs = new ArrayList<>();
+		if (file.exists()) {
+			load();
+		}
+	}
+
+	/**
+	 * Sets the weight given to the actions of an identical model. Less similar
+	 * models give a proportionally smaller weight.
+	 *
+	 * @param boost
+	 */
+	public synchronized void setBoost(double boost) {
+		this.boost = boost;
+	}
+
+	/**
+	 * Sets the number of nearest models used when warm-starting.
+	 *
+	 * @param neighbours
+	 */
+	public synchronized void setNeighbours(int neighbours) {
+		this.neighbours = neighbours;
+	}
+
+	/**
+	 * Sets the number of repairs kept.
+	 *
+	 * @param capacity
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = capacity;
+		trimToCapacity();
+	}
+
+	/**
+	 * Gets the number of repairs in the repository.
+	 *
+	 * @return the number of repairs
+	 */
+	public synchronized int size() {
+		return repairs.size();
+	}
+
+	/**
+	 * Adds the repair of a model. Sequences without actions are ignored.
+	 *
+	 * @param features of the model
+	 * @param sequence the actions that repaired the model
+	 */
+	public synchronized void add(double[] features, List<AppliedAction> sequence) {
+		if (sequence.isEmpty()) {
+			return;
+		}
+		int[][] actions = new int[sequence.size()][];
+		for (int i = 0; i < actions.length; i++) {
+			AppliedAction appliedAction = sequence.get(i);
+			actions[i] = new int[] { appliedAction.getError().getCode(), appliedAction.getAction().getContextId(),
+					appliedAction.getAction().getId() };
+		}
+		repairs.removeIf(repair -> Arrays.equals(repair.features, features));
+		repairs.add(new Repair(features.clone(), actions));
+		trimToCapacity();
+	}
+
+	/**
+	 * Raises the weights of the actions used on the models most similar to the
+	 * model with the specified features, until the warm-start is undone. Actions
+	 * that are not in the Q-table are skipped.
+	 *
+	 * @param qTable   to warm-start
+	 * @param features of the model about to be repaired
+	 * @return the number of weights raised
+	 */
+	public synchronized int warmStart(QTable qTable, double[] features) {
+		int raised = 0;
+		for (Repair repair : findNearest(features)) {
+			double similarity = similarity(features, repair.features);
+			if (similarity <= 0) {
+				continue;
+			}
+			double seed = boost * similarity;
+			for (int[] action : repair.actions) {
+				if (qTable.warmStart(action[0], action[1], action[2], seed)) {
+					raised++;
+				}
+			}
+		}
+		return raised;
+	}
+
+	/**
+	 * Finds the repairs of the models most similar to the model with the
+	 * specified features.
+	 *
+	 * @param features
+	 * @return the features of the nearest models, the most similar first
+	 */
+	synchronized List<double[]> findNearestFeatures(double[] features) {
+		List<double[]> nearest = new ArrayList<>();
+		for (Repair repair : findNearest(features)) {
+			nearest.add(repair.features.clone());
+		}
+		return nearest;
+	}
+
+	private List<Repair> findNearest(double[] features) {
+		List<Repair> candidates = new ArrayList<>(repairs);
+		candidates.sort(Comparator.comparingDouble((Repair repair) -> similarity(features, repair.features)).reversed());
+		return candidates.subList(0, Math.min(neighbours, candidates.size()));
+	}
+
+	/**
+	 * Computes the similarity of two feature vectors from the euclidean distance
+	 * between them. Vectors of different lengths come from different kinds of
+	 * models, and are not similar.
+	 *
+	 * @param first
+	 * @param second
+	 * @return the similarity, 1 for identical vectors and approaching 0 as they
+	 *         grow apart
+	 */
+	static double similarity(double[] first, double[] second) {
+		if (first.length != second.length) {
+			return 0;
+		}
+		double squaredDistance = 0;
+		for (int i = 0; i < first.length; i++) {
+			double difference = first[i] - second[i];
+			squaredDistance += difference * difference;
+		}
+		return 1 / (1 + Math.sqrt(squaredDistance));
+	}
+
+	private void trimToCapacity() {
+		while (repairs.size() > Math.max(capacity, 0)) {
+			repairs.remove(0);
+		}
+	}
+
+	/**
+	 * Saves the repairs to the file of the repository.
+	 */
+	public synchronized void save() {
+		try {
+			DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Document document = documentBuilder.newDocument();
+			Element root = document.createElement(XML_ROOT_NAME);
+			document.appendChild(root);
+			for (Repair repair : repairs) {
+				Element repairElement = document.createElement(XML_REPAIR_NAME);
+				Element featuresElement = document.createElement(XML_FEATURES_NAME);
+				StringBuilder features = new StringBuilder();
+				for (double feature : repair.features) {
+					if (features.length() > 0) {
+						features.append(' ');
+					}
+					features.append(feature);
+				}
+				featuresElement.appendChild(document.createTextNode(features.toString()));
+				repairElement.appendChild(featuresElement);
+				for (int[] action : repair.actions) {
+					Element actionElement = document.createElement(XML_ACTION_NAME);
+					actionElement.setAttribute(XML_ERROR_NAME, Integer.toString(action[0]));
+					actionElement.setAttribute(XML_CONTEXT_NAME, Integer.toString(action[1]));
+					actionElement.setAttribute(XML_ID_NAME, Integer.toString(action[2]));
+					repairElement.appendChild(actionElement);
+				}
+				root.appendChild(repairElement);
+			}
+
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.transform(new DOMSource(document), new StreamResult(file));
+			logger.info("Saved " + repairs.size() + " repairs to " + file.getAbsolutePath());
+		} catch (ParserConfigurationException | TransformerException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void load() throws IOException {
+		try {
+			DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Document document = documentBuilder.parse(file);
+			document.getDocumentElement().normalize();
+			NodeList repairList = document.getElementsByTagName(XML_REPAIR_NAME);
+			for (int i = 0; i < repairList.getLength(); i++) {
+				Element repairElement = (Element) repairList.item(i);
+				String features = repairElement.getElementsByTagName(XML_FEATURES_NAME).item(0).getTextContent()
+						.trim();
+				double[] featureVector = features.isEmpty() ? new double[0]
+						: Arrays.stream(features.split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+				NodeList actionList = repairElement.getElementsByTagName(XML_ACTION_NAME);
+				int[][] actions = new int[actionList.getLength()][];
+				for (int j = 0; j < actions.length; j++) {
+					Element actionElement = (Element) actionList.item(j);
+					actions[j] = new int[] { Integer.parseInt(actionElement.getAttribute(XML_ERROR_NAME)),
+							Integer.parseInt(actionElement.getAttribute(XML_CONTEXT_NAME)),
+							Integer.parseInt(actionElement.getAttribute(XML_ID_NAME)) };
+				}
+				repairs.add(new Repair(featureVector, actions));
+			}
+			logger.info("Loaded " + repairs.size() + " repairs from " + file.getAbsolutePath());
+		} catch (ParserConfigurationException | SAXException | NumberFormatException | NullPointerException e) {
+			throw new IOException("Could not read the repair repository " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * A repair is the features of a model and the error code, context and id of
+	 * each action that repaired it.
+	 */
+	private static class Repair {
+		private final double[] features;
+		private final int[][] actions;
+
+		private Repair(double[] features, int[][] actions) {
+			this.features = features;
+			this.actions = actions;
+		}
+	}
+}
@@ -23,7 +23,7 @@ public class PreferCloseDinstanceToOriginalPreference extends Preference impleme
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return weight;
 	}
 
@@ -47,4 +47,12 @@ public class PreferCloseDinstanceToOriginalPreference extends Preference impleme
 		return 0;
 	}
 
+	@Override
+	public void prepareRewardFor(QSolution solution) {
+		try {
+			solution.calculateDistanceFromOriginal();
+		} catch (DistanceUnavailableException e) {
+			// Reported when the reward is calculated
+		}
+	}
 }
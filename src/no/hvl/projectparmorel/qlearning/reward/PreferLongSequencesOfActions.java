@@ -73,7 +73,7 @@ class PreferLongSequencesOfActions extends Preference implements PostRepairPrefe
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return 0;
 	}
 
@@ -20,7 +20,7 @@ public class PreferMaintainability extends Preference implements SolutionPrefere
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return weight;
 	}
 
@@ -42,4 +42,8 @@ public class PreferMaintainability extends Preference implements SolutionPrefere
 		}
 	}
 
+	@Override
+	public void prepareRewardFor(QSolution solution) {
+		solution.calculateMaintainability();
+	}
 }
@@ -11,7 +11,7 @@ public class PreferRepairingLowInContextHierarchyPreference extends Preference {
 	}
 
 	@Override
-	public int rewardActionForError(Model model, Error error, Action action) {
+	public int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		int reward = 0;
 		if (action.getContextId() == 1) {
 			reward -= 74 / 100 * weight;
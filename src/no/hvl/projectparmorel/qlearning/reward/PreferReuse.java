@@ -20,7 +20,7 @@ public class PreferReuse extends Preference implements SolutionPreference {
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return weight;
 	}
 
@@ -42,4 +42,8 @@ public class PreferReuse extends Preference implements SolutionPreference {
 		}
 	}
 
+	@Override
+	public void prepareRewardFor(QSolution solution) {
+		solution.calculateReuse();
+	}
 }
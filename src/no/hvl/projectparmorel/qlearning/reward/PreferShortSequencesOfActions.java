@@ -72,7 +72,7 @@ class PreferShortSequencesOfActions extends Preference implements PostRepairPref
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return 0;
 	}
 
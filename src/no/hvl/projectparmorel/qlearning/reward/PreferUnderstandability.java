@@ -20,7 +20,7 @@ public class PreferUnderstandability extends Preference implements SolutionPrefe
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		return weight;
 	}
 
@@ -42,4 +42,8 @@ public class PreferUnderstandability extends Preference implements SolutionPrefe
 		}
 	}
 
+	@Override
+	public void prepareRewardFor(QSolution solution) {
+		solution.calculateUnderstandability();
+	}
 }
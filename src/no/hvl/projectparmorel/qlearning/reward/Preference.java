@@ -19,9 +19,10 @@ abstract class Preference {
 	 * @param model after applying action
 	 * @param error that is being fixed
 	 * @param action applied to try and fix the error
+	 * @param step holding the errors before and after applying the action
 	 * @return the calculated reward
 	 */
-	abstract int rewardActionForError(Model model, Error error, Action action);
+	abstract int rewardActionForError(Model model, Error error, Action action, StepContext step);
 	
 	/**
 	 * Gets the weight specifying how much the preference is affecting the algorithm.
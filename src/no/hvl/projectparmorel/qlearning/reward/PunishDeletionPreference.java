@@ -11,7 +11,7 @@ public class PunishDeletionPreference extends Preference {
 	}
 	
 	@Override
-	public int rewardActionForError(Model model, Error error, Action action) {
+	public int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		int reward = 0;
 		if (action.isDelete()) {
 			reward -= weight;
@@ -2,46 +2,22 @@ package no.hvl.projectparmorel.qlearning.reward;
 
 import no.hvl.projectparmorel.qlearning.Action;
 import no.hvl.projectparmorel.qlearning.Error;
-import no.hvl.projectparmorel.qlearning.ErrorExtractor;
 import no.hvl.projectparmorel.qlearning.Model;
-import no.hvl.projectparmorel.qlearning.ecore.EcoreErrorExtractor;
 
-class PunishModificationOfModelPreference extends Preference implements InitializablePreference {
-
-	private int numbersOfErrorsBeforeApplyingAction;
-	private ErrorExtractor errorExtractor;
+class PunishModificationOfModelPreference extends Preference {
 
 	public PunishModificationOfModelPreference(int weight) {
 		super(weight, PreferenceOption.PUNISH_MODIFICATION_OF_MODEL);
-
-	}
-
-	@Override
-	public void initializePreference(Model model) {
-		switch (model.getModelType()) {
-		case ECORE:
-			errorExtractor = new EcoreErrorExtractor();
-			break;
-		default:
-			throw new UnsupportedOperationException("This preference is not yet implemented for this model type.");
-		}
-
-	}
-
-	@Override
-	public void initializeBeforeApplyingAction(Model model) {
-		numbersOfErrorsBeforeApplyingAction = errorExtractor.extractErrorsFrom(model.getRepresentationCopy(), false)
-				.size();
 	}
 
 	@Override
-	int rewardActionForError(Model model, Error error, Action action) {
+	int rewardActionForError(Model model, Error error, Action action, StepContext step) {
 		int reward = 0;
-		int numberOfErrorsAfter = errorExtractor.extractErrorsFrom(model.getRepresentationCopy(), false).size();
+		int errorsRemoved = step.getNumberOfErrorsRemoved();
 
-		if ((numbersOfErrorsBeforeApplyingAction - numberOfErrorsAfter) > 1) {
-			reward = reward - (2 / 3 * weight * (numbersOfErrorsBeforeApplyingAction - numberOfErrorsAfter));
-		} else if ((numbersOfErrorsBeforeApplyingAction - numberOfErrorsAfter) != 0) {
+		if (errorsRemoved > 1) {
+			reward = reward - (2 / 3 * weight * errorsRemoved);
+		} else if (errorsRemoved != 0) {
 			reward = reward + weight;
 		}
 		return reward;
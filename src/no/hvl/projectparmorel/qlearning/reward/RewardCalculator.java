@@ -106,16 +106,18 @@ public class RewardCalculator {
 	 * Calculates the reward based on the result from applying the specified action
 	 * to the specified error to fix.
 	 * 
+	 * @param model
 	 * @param currentErrorToFix
 	 * @param action
+	 * @param step holding the errors before and after applying the action
 	 * @return the reward
 	 */
-	public int calculateRewardFor(Model model, Error currentErrorToFix, Action action) {
+	public int calculateRewardFor(Model model, Error currentErrorToFix, Action action, StepContext step) {
 		int reward = 0;
 
 		int contextId = action.getContextId();
 		for (Preference preference : preferences) {
-			int rewardFromPreference = preference.rewardActionForError(model, currentErrorToFix, action);
+			int rewardFromPreference = preference.rewardActionForError(model, currentErrorToFix, action, step);
 			if (rewardFromPreference != 0) {
 				addTagMap(currentErrorToFix, contextId, action, preference.getPreferenceOption().id,
 						rewardFromPreference);
@@ -126,6 +128,25 @@ public class RewardCalculator {
 		return reward;
 	}
 
+	/**
+	 * Calculates the reward like
+	 * {@link RewardCalculator#calculateRewardFor(Model, Error, Action, StepContext)},
+	 * without recording the rewards of the preferences in the Q-table.
+	 * 
+	 * @param model
+	 * @param currentErrorToFix
+	 * @param action
+	 * @param step holding the errors before and after applying the action
+	 * @return the reward
+	 */
+	public int estimateRewardFor(Model model, Error currentErrorToFix, Action action, StepContext step) {
+		int reward = 0;
+		for (Preference preference : preferences) {
+			reward += preference.rewardActionForError(model, currentErrorToFix, action, step);
+		}
+		return reward;
+	}
+
 	/**
 	 * Sets the tag map for the error, context and action to the specified tagId and
 	 * value
@@ -163,6 +184,39 @@ public class RewardCalculator {
 		return reward;
 	}
 
+	/**
+	 * Checks if any of the preferences rewards the completed solution.
+	 * 
+	 * @return true if there is at least one solution preference, false otherwise
+	 */
+	public boolean hasSolutionPreferences() {
+		for (Preference preference : preferences) {
+			if (preference instanceof SolutionPreference) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Performs the measurements the solution preferences depend on, without
+	 * updating the Q-table. The results are cached in the solution, making a later
+	 * call to {@link RewardCalculator#calculateRewardFor(Model, QSolution)} cheap.
+	 * The measurements only read the files of the solution and of the original
+	 * model, so this can be called from a background thread once both files have
+	 * been written with {@link QSolution#getModel()} and
+	 * {@link QSolution#getOriginal()}.
+	 * 
+	 * @param solution
+	 */
+	public void prepareRewardFor(QSolution solution) {
+		for (Preference preference : preferences) {
+			if (preference instanceof SolutionPreference) {
+				((SolutionPreference) preference).prepareRewardFor(solution);
+			}
+		}
+	}
+
 	/**
 	 * Calculates rewards that compare the different solutions to each other.
 	 * 
@@ -15,4 +15,16 @@ interface SolutionPreference {
 	 * @return the 
 	 */
 	int rewardcalculateRewardFor(QSolution solution, Model model, QTable qTable);
+
+	/**
+	 * Performs the expensive measurements the reward depends on, such as distance
+	 * or quality metrics, without touching the Q-table. The solution caches the
+	 * result, so a later call to
+	 * {@link SolutionPreference#rewardcalculateRewardFor} returns quickly. This may
+	 * be called from a background thread once the files of the solution and of the
+	 * original model have been written, so it must only read those files.
+	 * 
+	 * @param solution
+	 */
+	void prepareRewardFor(QSolution solution);
 }
@@ -0,0 +1,63 @@
+package no.hvl.projectparmorel.qlearning.reward;
+
+import java.util.Collections;
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.Error;
+
+/**
+ * Holds what is known about a single step, so the preferences can share it
+ * instead of validating the model themselves. The model is validated once per
+ * step, when the action is applied, and the resulting errors are passed to
+ * every preference through this context.
+ */
+public class StepContext {
+	private List<Error> errorsBeforeAction;
+	private List<Error> errorsAfterAction;
+
+	/**
+	 * Creates a context for a step.
+	 *
+	 * @param errorsBeforeAction the errors in the model before the action was
+	 *                           applied
+	 * @param errorsAfterAction  the errors in the model after the action was
+	 *                           applied. If null, the model is considered
+	 *                           unchanged.
+	 */
+	public StepContext(List<Error> errorsBeforeAction, List<Error> errorsAfterAction) {
+		this.errorsBeforeAction = Collections.unmodifiableList(errorsBeforeAction);
+		if (errorsAfterAction == null) {
+			this.errorsAfterAction = this.errorsBeforeAction;
+		} else {
+			this.errorsAfterAction = Collections.unmodifiableList(errorsAfterAction);
+		}
+	}
+
+	/**
+	 * Gets the errors in the model before the action was applied.
+	 *
+	 * @return an unmodifiable list of errors
+	 */
+	public List<Error> getErrorsBeforeAction() {
+		return errorsBeforeAction;
+	}
+
+	/**
+	 * Gets the errors in the model after the action was applied.
+	 *
+	 * @return an unmodifiable list of errors
+	 */
+	public List<Error> getErrorsAfterAction() {
+		return errorsAfterAction;
+	}
+
+	/**
+	 * Gets the number of errors that disappeared when applying the action. The
+	 * number is negative if the action introduced more errors than it removed.
+	 *
+	 * @return the number of errors removed
+	 */
+	public int getNumberOfErrorsRemoved() {
+		return errorsBeforeAction.size() - errorsAfterAction.size();
+	}
+}
@@ -0,0 +1,98 @@
+package no.hvl.projectparmorel.qlearning.scheduling;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.hvl.projectparmorel.qlearning.Error;
+import no.hvl.projectparmorel.qlearning.Model;
+
+/**
+ * Fixes the error whose repairs have removed the most other errors first. For
+ * every error code the scheduler learns how many of the other errors
+ * disappeared on average when an error with the code was fixed. Error codes
+ * that have not been fixed yet are ranked after the ones known to remove other
+ * errors, and errors with the same rank are fixed in the order they are
+ * reported.
+ *
+ * The statistics are kept for the lifetime of the scheduler, so a scheduler
+ * set on a fixer learns across its repairs.
+ */
+public class CascadeImpactScheduler implements ErrorScheduler {
+	private Map<Integer, ImpactStatistics> statistics;
+
+	public CascadeImpactScheduler() {
+		statistics = new HashMap<>();
+	}
+
+	@Override
+	public synchronized Error selectNext(List<Error> errors, Model model) {
+		Error selectedError = errors.get(0);
+		double largestImpact = getAverageImpact(selectedError.getCode());
+		for (int i = 1; i < errors.size(); i++) {
+			double impact = getAverageImpact(errors.get(i).getCode());
+			if (impact > largestImpact) {
+				largestImpact = impact;
+				selectedError = errors.get(i);
+			}
+		}
+		return selectedError;
+	}
+
+	@Override
+	public synchronized void recordStep(Error fixedError, List<Error> errorsBefore, List<Error> errorsAfter) {
+		if (errorsAfter == null) {
+			return;
+		}
+		Map<String, Integer> remainingErrors = new HashMap<>();
+		for (Error error : errorsAfter) {
+			remainingErrors.merge(keyOf(error), 1, Integer::sum);
+		}
+		boolean fixedErrorSkipped = false;
+		int removedErrors = 0;
+		for (Error error : errorsBefore) {
+			if (!fixedErrorSkipped && error == fixedError) {
+				fixedErrorSkipped = true;
+				continue;
+			}
+			String key = keyOf(error);
+			Integer count = remainingErrors.get(key);
+			if (count == null || count == 0) {
+				removedErrors++;
+			} else {
+				remainingErrors.put(key, count - 1);
+			}
+		}
+		statistics.computeIfAbsent(fixedError.getCode(), code -> new ImpactStatistics()).add(removedErrors);
+	}
+
+	/**
+	 * Gets the average number of other errors removed by fixing an error with the
+	 * specified code.
+	 * 
+	 * @param errorCode
+	 * @return the average, or 0 if no error with the code has been fixed
+	 */
+	synchronized double getAverageImpact(int errorCode) {
+		ImpactStatistics impact = statistics.get(errorCode);
+		return impact == null ? 0 : impact.getAverage();
+	}
+
+	private String keyOf(Error error) {
+		return error.getCode() + ":" + error.getMessage();
+	}
+
+	private static class ImpactStatistics {
+		private long removedErrors;
+		private int fixes;
+
+		private void add(int removed) {
+			removedErrors += removed;
+			fixes++;
+		}
+
+		private double getAverage() {
+			return (double) removedErrors / fixes;
+		}
+	}
+}
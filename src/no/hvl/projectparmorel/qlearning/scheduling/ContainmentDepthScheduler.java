@@ -0,0 +1,59 @@
+package no.hvl.projectparmorel.qlearning.scheduling;
+
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.Error;
+import no.hvl.projectparmorel.qlearning.Model;
+
+/**
+ * Fixes the error on the element highest in the containment hierarchy first.
+ * Errors on a container often cause errors on its contents, which then
+ * disappear when the container is repaired. Errors at the same depth are fixed
+ * in the order they are reported.
+ */
+public class ContainmentDepthScheduler implements ErrorScheduler {
+
+	@Override
+	public Error selectNext(List<Error> errors, Model model) {
+		Error selectedError = errors.get(0);
+		int smallestDepth = getDepth(selectedError, model);
+		for (int i = 1; i < errors.size(); i++) {
+			int depth = getDepth(errors.get(i), model);
+			if (depth < smallestDepth) {
+				smallestDepth = depth;
+				selectedError = errors.get(i);
+			}
+		}
+		return selectedError;
+	}
+
+	/**
+	 * Gets the containment depth of the shallowest element the error is reported
+	 * on. The depth is read from the identifier of the element, which is a path
+	 * from the root for elements in the model itself.
+	 * 
+	 * @param error
+	 * @param model
+	 * @return the depth, or {@link Integer#MAX_VALUE} if none of the elements are
+	 *         contained in the model
+	 */
+	int getDepth(Error error, Model model) {
+		int smallestDepth = Integer.MAX_VALUE;
+		if (error.getContexts() == null) {
+			return smallestDepth;
+		}
+		for (Object context : error.getContexts()) {
+			String identifier = context == null ? null : model.getIdentifierOf(context);
+			if (identifier != null && identifier.startsWith("/")) {
+				int depth = 0;
+				for (int i = 0; i < identifier.length(); i++) {
+					if (identifier.charAt(i) == '/') {
+						depth++;
+					}
+				}
+				smallestDepth = Math.min(smallestDepth, depth);
+			}
+		}
+		return smallestDepth;
+	}
+}
@@ -0,0 +1,35 @@
+package no.hvl.projectparmorel.qlearning.scheduling;
+
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.Error;
+import no.hvl.projectparmorel.qlearning.Model;
+
+/**
+ * Decides which error an episode fixes next. Fixing the cause of cascading
+ * errors first removes the errors that follow from it, so the episode needs
+ * fewer steps and validations.
+ */
+public interface ErrorScheduler {
+
+	/**
+	 * Selects the error to fix next.
+	 * 
+	 * @param errors in the model that are supported, in the order they were
+	 *               reported. The list is not empty.
+	 * @param model  the errors are in
+	 * @return the error to fix
+	 */
+	Error selectNext(List<Error> errors, Model model);
+
+	/**
+	 * Records the result of fixing an error in a learning episode. Schedulers that
+	 * learn from the repairs can update their statistics.
+	 * 
+	 * @param fixedError   the error the action was applied to
+	 * @param errorsBefore the errors in the model before the action
+	 * @param errorsAfter  the errors in the model after the action
+	 */
+	default void recordStep(Error fixedError, List<Error> errorsBefore, List<Error> errorsAfter) {
+	}
+}
@@ -0,0 +1,17 @@
+package no.hvl.projectparmorel.qlearning.scheduling;
+
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.Error;
+import no.hvl.projectparmorel.qlearning.Model;
+
+/**
+ * Fixes the errors in the order they are reported by the validation.
+ */
+public class ReportOrderScheduler implements ErrorScheduler {
+
+	@Override
+	public Error selectNext(List<Error> errors, Model model) {
+		return errors.get(0);
+	}
+}
@@ -0,0 +1,172 @@
+package no.hvl.projectparmorel.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
+import no.hvl.projectparmorel.qlearning.QModelFixer;
+import no.hvl.projectparmorel.qlearning.QSolution;
+import no.hvl.projectparmorel.qlearning.knowledge.CompiledPolicy;
+import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
+import no.hvl.projectparmorel.qlearning.knowledge.QTable;
+
+/**
+ * A fixed number of fixers that are created up front and reused between
+ * repairs. Each fixer registers the metamodel and loads the knowledge once. A
+ * fixer repairs one model at a time, so the size of the pool is the number of
+ * concurrent repairs.
+ *
+ * The fixers share the knowledge of the pool. A fixer catches up with it when
+ * it is acquired, and what the fixer learned is merged into it when the fixer is
+ * released, so the learning of all the fixers adds up. Only the pool saves the
+ * knowledge.
+ */
+class FixerPool {
+	private final BlockingQueue<QModelFixer> idleFixers;
+	private final int size;
+	private final Knowledge knowledge;
+	private final Map<QModelFixer, CompiledPolicy> baselines;
+
+	/**
+	 * @param size         the number of fixers
+	 * @param fixerFactory creating the fixers
+	 */
+	FixerPool(int size, Supplier<? extends QModelFixer> fixerFactory) {
+		if (size < 1) {
+			throw new IllegalArgumentException("The pool needs at least one fixer");
+		}
+		this.size = size;
+		idleFixers = new ArrayBlockingQueue<>(size);
+		for (int i = 0; i < size; i++) {
+			QModelFixer fixer = fixerFactory.get();
+			fixer.setSavesKnowledge(false);
+			idleFixers.add(fixer);
+		}
+		baselines = new ConcurrentHashMap<>();
+		// The fixers loaded the same knowledge, which the pool starts from and saves
+		// to the same file
+		knowledge = idleFixers.peek().getKnowledge().copy();
+	}
+
+	/**
+	 * Gets the number of fixers in the pool.
+	 *
+	 * @return the size of the pool
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of fixers that are not repairing a model.
+	 *
+	 * @return the number of idle fixers
+	 */
+	int getIdleFixers() {
+		return idleFixers.size();
+	}
+
+	/**
+	 * Takes an idle fixer out of the pool, waiting for one if all are busy. The
+	 * fixer has caught up with the knowledge of the pool, and must be given back
+	 * with {@link FixerPool#release(QModelFixer)}.
+	 *
+	 * @param timeout the longest time to wait
+	 * @param unit    of the timeout
+	 * @return the fixer, or null if none became idle in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	QModelFixer acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		QModelFixer fixer = idleFixers.poll(timeout, unit);
+		if (fixer != null) {
+			catchUp(fixer);
+		}
+		return fixer;
+	}
+
+	/**
+	 * Gives a fixer back to the pool. What it learned since it was acquired is
+	 * merged into the knowledge of the pool, which is saved if it changed.
+	 *
+	 * @param fixer taken with {@link FixerPool#acquire(long, TimeUnit)}
+	 */
+	void release(QModelFixer fixer) {
+		try {
+			CompiledPolicy baseline = baselines.remove(fixer);
+			if (baseline != null) {
+				synchronized (knowledge) {
+					if (knowledge.getQTable().mergeLearningFrom(fixer.getKnowledge().getQTable(), baseline)) {
+						knowledge.save();
+					}
+				}
+			}
+		} finally {
+			idleFixers.add(fixer);
+		}
+	}
+
+	/**
+	 * Brings the Q-table of the fixer up to the knowledge of the pool, and keeps
+	 * the baseline its learning is measured from.
+	 *
+	 * @param fixer
+	 */
+	private void catchUp(QModelFixer fixer) {
+		QTable qTable = fixer.getKnowledge().getQTable();
+		synchronized (knowledge) {
+			// Adding the difference between the pool and the fixer makes them equal
+			qTable.mergeLearningFrom(knowledge.getQTable(), qTable.compilePolicy());
+			baselines.put(fixer, qTable.compilePolicy());
+		}
+	}
+
+	/**
+	 * Gets the knowledge the fixers share.
+	 *
+	 * @return the knowledge of the pool
+	 */
+	Knowledge getKnowledge() {
+		return knowledge;
+	}
+
+	/**
+	 * Repairs the model with the next idle fixer, waiting for one if all are
+	 * busy. The model of the best solution is copied to the destination, and the
+	 * files of all the solutions are deleted.
+	 *
+	 * @param modelFile   to repair
+	 * @param destination of the repaired model
+	 * @return the outcome of the repair
+	 * @throws NoErrorsInModelException if there are no supported errors in the
+	 *                                  model
+	 * @throws IOException              if the repaired model could not be copied
+	 * @throws InterruptedException     if interrupted while waiting for a fixer
+	 */
+	RepairOutcome repair(File modelFile, Path destination)
+			throws NoErrorsInModelException, IOException, InterruptedException {
+		QModelFixer fixer = idleFixers.take();
+		catchUp(fixer);
+		try {
+			QSolution bestSolution = (QSolution) fixer.fixModel(modelFile);
+			try {
+				Files.copy(bestSolution.getModel().toPath(), destination, StandardCopyOption.REPLACE_EXISTING);
+				return new RepairOutcome(new ArrayList<>(bestSolution.getSequence()), bestSolution.getWeight(),
+						fixer.getLastRepairReport());
+			} finally {
+				fixer.discardSolutions();
+			}
+		} finally {
+			release(fixer);
+		}
+	}
+}
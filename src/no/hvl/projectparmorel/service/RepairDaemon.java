@@ -0,0 +1,321 @@
+package no.hvl.projectparmorel.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
+import no.hvl.projectparmorel.qlearning.QModelFixer;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreQModelFixer;
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+/**
+ * Repairs the Ecore models dropped into an inbox directory, for as long as it
+ * runs. The fixers are kept in a pool, so the metamodel registration and the
+ * knowledge are paid for once rather than for every model.
+ *
+ * A model is taken out of the inbox when its repair starts, and moved to a
+ * directory of its own in the outbox. The repaired model is written next to it
+ * with the prefix {@value #REPAIRED_PREFIX}, together with a report. Models
+ * should be moved into the inbox rather than written there, so they are not
+ * picked up half-written.
+ *
+ * As many models are repaired at once as there are fixers, and a bounded
+ * number wait for a fixer. When the queue is full, the daemon stops taking
+ * models from the inbox until a repair finishes. The models left in the inbox
+ * are picked up afterwards.
+ */
+public class RepairDaemon implements Closeable {
+	public static final String MODEL_EXTENSION = ".ecore";
+	public static final String REPAIRED_PREFIX = "repaired_";
+	public static final String REPORT_FILE_NAME = "report.txt";
+	public static final String FAILURE_FILE_NAME = "failure.txt";
+
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private final Path inbox;
+	private final Path outbox;
+	private final int fixers;
+	private final ModelRepairer repairer;
+	private final ThreadPoolExecutor repairExecutor;
+	private final Semaphore queueSlots;
+	private final Set<Path> queuedModels;
+	private final AtomicInteger repairedModels;
+	private final AtomicInteger failedModels;
+	private WatchService watchService;
+	private Thread watcherThread;
+
+	/**
+	 * @param inbox         the directory models are dropped into
+	 * @param outbox        the directory the results are written to
+	 * @param fixers        the number of models repaired at once
+	 * @param queueCapacity the number of models waiting for a fixer
+	 * @param preferences   of the repairs
+	 * @throws IOException if the directories could not be created
+	 */
+	public RepairDaemon(Path inbox, Path outbox, int fixers, int queueCapacity, List<PreferenceOption> preferences)
+			throws IOException {
+		this(inbox, outbox, fixers, queueCapacity,
+				new FixerPool(fixers, () -> new EcoreQModelFixer(new ArrayList<>(preferences)))::repair);
+	}
+
+	/**
+	 * @param inbox         the directory models are dropped into
+	 * @param outbox        the directory the results are written to
+	 * @param fixers        the number of models repaired at once
+	 * @param queueCapacity the number of models waiting for a fixer
+	 * @param repairer      repairing the models
+	 * @throws IOException if the directories could not be created
+	 */
+	RepairDaemon(Path inbox, Path outbox, int fixers, int queueCapacity, ModelRepairer repairer)
+			throws IOException {
+		this.inbox = Files.createDirectories(inbox);
+		this.outbox = Files.createDirectories(outbox);
+		this.fixers = fixers;
+		this.repairer = repairer;
+		// The queue is bounded by the slots, so the watcher waits instead of the
+		// executor rejecting models
+		repairExecutor = new ThreadPoolExecutor(fixers, fixers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "parmorel-daemon-repair");
+					thread.setDaemon(true);
+					return thread;
+				});
+		queueSlots = new Semaphore(fixers + Math.max(queueCapacity, 0));
+		queuedModels = ConcurrentHashMap.newKeySet();
+		repairedModels = new AtomicInteger();
+		failedModels = new AtomicInteger();
+	}
+
+	/**
+	 * Starts watching the inbox. The models already in the inbox are repaired
+	 * first.
+	 *
+	 * @throws IOException if the inbox could not be watched
+	 */
+	public synchronized void start() throws IOException {
+		if (watchService != null) {
+			throw new IllegalStateException("The daemon is already running");
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		inbox.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watcherThread = new Thread(this::watchInbox, "parmorel-daemon-watcher");
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+		logger.info("Watching " + inbox.toAbsolutePath() + " with " + fixers + " fixers.");
+	}
+
+	/**
+	 * Stops taking models from the inbox, and waits for the repairs that have
+	 * started. Models that are queued but not started are left in the inbox.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watcherThread.interrupt();
+		}
+		repairExecutor.getQueue().clear();
+		repairExecutor.shutdown();
+		try {
+			repairExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gets the number of models that have been repaired.
+	 *
+	 * @return the number of repaired models
+	 */
+	public int getRepairedModels() {
+		return repairedModels.get();
+	}
+
+	/**
+	 * Gets the number of models that could not be repaired, including models
+	 * without supported errors.
+	 *
+	 * @return the number of failed models
+	 */
+	public int getFailedModels() {
+		return failedModels.get();
+	}
+
+	/**
+	 * Gets the number of models that are being repaired or waiting for a fixer.
+	 *
+	 * @return the number of queued models
+	 */
+	int getQueuedModels() {
+		return queuedModels.size();
+	}
+
+	private void watchInbox() {
+		try {
+			// Models dropped before the watch was registered, or while the queue was
+			// full, have no events of their own
+			enqueueModelsInInbox();
+			while (true) {
+				WatchKey key = watchService.take();
+				List<WatchEvent<?>> events = key.pollEvents();
+				key.reset();
+				handleEvents(events);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+			logger.info("Stopped watching " + inbox.toAbsolutePath());
+		} catch (IOException e) {
+			logger.severe("Could not read the inbox " + inbox.toAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Queues the models the events are about. Events that were lost when the
+	 * events overflowed are made up for by queueing every model in the inbox.
+	 *
+	 * @param events of the inbox
+	 * @throws IOException          if the inbox could not be read
+	 * @throws InterruptedException if interrupted while waiting for the queue
+	 */
+	void handleEvents(List<WatchEvent<?>> events) throws IOException, InterruptedException {
+		boolean overflowed = false;
+		for (WatchEvent<?> event : events) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflowed = true;
+			} else {
+				enqueue(inbox.resolve((Path) event.context()));
+			}
+		}
+		if (overflowed) {
+			enqueueModelsInInbox();
+		}
+	}
+
+	private void enqueueModelsInInbox() throws IOException, InterruptedException {
+		try (DirectoryStream<Path> models = Files.newDirectoryStream(inbox, "*" + MODEL_EXTENSION)) {
+			for (Path model : models) {
+				enqueue(model);
+			}
+		}
+	}
+
+	/**
+	 * Queues the model for repair, waiting while the queue is full.
+	 *
+	 * @param model in the inbox
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private void enqueue(Path model) throws InterruptedException {
+		if (!model.getFileName().toString().endsWith(MODEL_EXTENSION) || !Files.isRegularFile(model)
+				|| !queuedModels.add(model)) {
+			return;
+		}
+		queueSlots.acquire();
+		repairExecutor.execute(() -> {
+			try {
+				repair(model);
+			} finally {
+				queuedModels.remove(model);
+				queueSlots.release();
+			}
+		});
+	}
+
+	private void repair(Path model) {
+		String fileName = model.getFileName().toString();
+		Path workDirectory = outbox.resolve(fileName.substring(0, fileName.length() - MODEL_EXTENSION.length()));
+		try {
+			Files.createDirectories(workDirectory);
+			Path workModel = workDirectory.resolve(fileName);
+			try {
+				Files.move(model, workModel, StandardCopyOption.REPLACE_EXISTING);
+			} catch (NoSuchFileException e) {
+				// The model was removed from the inbox before its repair started
+				return;
+			}
+			Files.deleteIfExists(workDirectory.resolve(FAILURE_FILE_NAME));
+			logger.info("Repairing " + model);
+
+			RepairOutcome outcome = repairer.repair(workModel.toFile(),
+					workDirectory.resolve(REPAIRED_PREFIX + fileName));
+			Files.write(workDirectory.resolve(REPORT_FILE_NAME), outcome.describe().getBytes(StandardCharsets.UTF_8));
+			repairedModels.incrementAndGet();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (NoErrorsInModelException | IOException | RuntimeException e) {
+			logger.warning("Could not repair " + fileName + ": " + e.getMessage());
+			StringWriter failure = new StringWriter();
+			e.printStackTrace(new PrintWriter(failure));
+			try {
+				Files.write(workDirectory.resolve(FAILURE_FILE_NAME), failure.toString().getBytes(StandardCharsets.UTF_8));
+			} catch (IOException writeFailure) {
+				logger.severe("Could not write the failure of " + fileName + ": " + writeFailure.getMessage());
+			}
+			// Counted once the failure is written, like the repaired models
+			failedModels.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Repairs a model file, like {@link FixerPool#repair(File, Path)}.
+	 */
+	interface ModelRepairer {
+		RepairOutcome repair(File modelFile, Path destination)
+				throws NoErrorsInModelException, IOException, InterruptedException;
+	}
+
+	/**
+	 * Runs a daemon until the JVM is stopped.
+	 *
+	 * @param args the inbox, the outbox and optionally the number of fixers
+	 * @throws IOException if the daemon could not be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: RepairDaemon <inbox> <outbox> [fixers]");
+			System.exit(1);
+		}
+		int fixers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		RepairDaemon daemon = new RepairDaemon(Paths.get(args[0]), Paths.get(args[1]), fixers, fixers * 4,
+				new ArrayList<>());
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				daemon.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "parmorel-daemon-shutdown"));
+		daemon.start();
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
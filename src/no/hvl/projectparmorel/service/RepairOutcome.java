@@ -0,0 +1,50 @@
+package no.hvl.projectparmorel.service;
+
+import java.util.List;
+
+import no.hvl.projectparmorel.qlearning.AppliedAction;
+import no.hvl.projectparmorel.qlearning.RepairReport;
+
+/**
+ * What a repair in the pool produced, kept after the files of its solutions are
+ * deleted.
+ */
+class RepairOutcome {
+	private final List<AppliedAction> sequence;
+	private final double weight;
+	private final RepairReport report;
+
+	RepairOutcome(List<AppliedAction> sequence, double weight, RepairReport report) {
+		this.sequence = sequence;
+		this.weight = weight;
+		this.report = report;
+	}
+
+	List<AppliedAction> getSequence() {
+		return sequence;
+	}
+
+	double getWeight() {
+		return weight;
+	}
+
+	RepairReport getReport() {
+		return report;
+	}
+
+	/**
+	 * Describes the outcome in plain text, one applied action per line after the
+	 * report.
+	 *
+	 * @return the description
+	 */
+	String describe() {
+		StringBuilder description = new StringBuilder();
+		description.append(report).append('\n');
+		description.append("weight=").append(weight).append('\n');
+		for (AppliedAction appliedAction : sequence) {
+			description.append(appliedAction).append('\n');
+		}
+		return description.toString();
+	}
+}
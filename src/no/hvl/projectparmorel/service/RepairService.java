@@ -0,0 +1,544 @@
+package no.hvl.projectparmorel.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import no.hvl.projectparmorel.Solution;
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
+import no.hvl.projectparmorel.qlearning.AppliedAction;
+import no.hvl.projectparmorel.qlearning.QModelFixer;
+import no.hvl.projectparmorel.qlearning.QSolution;
+import no.hvl.projectparmorel.qlearning.RepairBudget;
+import no.hvl.projectparmorel.qlearning.RepairReport;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreQModelFixer;
+import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+/**
+ * Repairs Ecore models sent over HTTP on the loopback interface.
+ *
+ * A model is repaired by posting its content to {@value #REPAIR_PATH}. The
+ * query can hold the preferences, as a comma separated list of names or ids,
+ * and a time limit in milliseconds. The response is a stream of JSON lines: a
+ * line for every solution as soon as it is found, a line with the ranked
+ * solutions once the repair is done, and a line with the report and the
+ * repaired model. A model without supported errors is answered with 422, and a
+ * model larger than the request limit with 413.
+ *
+ * The repairs share a pool of fixers, which keep the knowledge in memory. A
+ * bounded number of requests wait for a fixer. Requests beyond that, and
+ * requests that wait longer than the queue timeout, are answered with 503. The
+ * numbers of waiting, running and finished requests are reported in plain text
+ * at {@value #METRICS_PATH}.
+ *
+ * Requests are handled on virtual threads when the JVM has them, and on a
+ * bounded pool of platform threads otherwise.
+ */
+public class RepairService implements Closeable {
+	public static final String REPAIR_PATH = "/repair";
+	public static final String METRICS_PATH = "/metrics";
+	public static final long DEFAULT_QUEUE_TIMEOUT = 30000;
+	public static final long DEFAULT_TIME_LIMIT = 60000;
+	public static final int DEFAULT_MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+
+	private static final String PREFERENCES_PARAMETER = "preferences";
+	private static final String TIME_LIMIT_PARAMETER = "timeLimit";
+	private static final long SUBSCRIBER_TIMEOUT = 10000;
+
+	private final Logger logger = Logger.getLogger(QModelFixer.LOGGER_NAME);
+	private final FixerPool fixerPool;
+	private final Semaphore admissions;
+	private final HttpServer server;
+	private final ExecutorService requestExecutor;
+	private long queueTimeout = DEFAULT_QUEUE_TIMEOUT;
+	private long maxTimeLimit = DEFAULT_TIME_LIMIT;
+	private int maxRequestBytes = DEFAULT_MAX_REQUEST_BYTES;
+
+	private final AtomicInteger waitingRequests = new AtomicInteger();
+	private final AtomicInteger runningRequests = new AtomicInteger();
+	private final AtomicLong completedRequests = new AtomicLong();
+	private final AtomicLong rejectedRequests = new AtomicLong();
+	private final AtomicLong timedOutRequests = new AtomicLong();
+	private final AtomicLong failedRequests = new AtomicLong();
+
+	/**
+	 * @param port          on the loopback interface, or 0 for any free port
+	 * @param fixers        the number of models repaired at once
+	 * @param queueCapacity the number of requests waiting for a fixer
+	 * @throws IOException if the port could not be bound
+	 */
+	public RepairService(int port, int fixers, int queueCapacity) throws IOException {
+		this(port, fixers, queueCapacity, new File(Knowledge.KNOWLEDGE_FILE_NAME));
+	}
+
+	/**
+	 * @param port          on the loopback interface, or 0 for any free port
+	 * @param fixers        the number of models repaired at once
+	 * @param queueCapacity the number of requests waiting for a fixer
+	 * @param knowledgeFile the knowledge of the fixers is loaded from and saved to
+	 * @throws IOException if the port could not be bound
+	 */
+	public RepairService(int port, int fixers, int queueCapacity, File knowledgeFile) throws IOException {
+		fixerPool = new FixerPool(fixers, () -> new EcoreQModelFixer(knowledgeFile));
+		admissions = new Semaphore(fixers + Math.max(queueCapacity, 0));
+		requestExecutor = createRequestExecutor(2 * (fixers + Math.max(queueCapacity, 0)) + 2);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(requestExecutor);
+		server.createContext(REPAIR_PATH, this::handleRepair);
+		server.createContext(METRICS_PATH, this::handleMetrics);
+	}
+
+	/**
+	 * Creates an executor starting a virtual thread for each request. JVMs
+	 * without virtual threads get a bounded pool of platform threads instead.
+	 *
+	 * @param maxThreads of the platform thread pool
+	 * @return the executor
+	 */
+	static ExecutorService createRequestExecutor(int maxThreads) {
+		try {
+			Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable, "parmorel-service-request");
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
+	/**
+	 * Sets how long a request may wait for a fixer before it is answered with
+	 * 503.
+	 *
+	 * @param queueTimeout in milliseconds
+	 */
+	public void setQueueTimeout(long queueTimeout) {
+		this.queueTimeout = queueTimeout;
+	}
+
+	/**
+	 * Sets the longest time a repair may take. It is also the time limit of
+	 * requests that do not set one. A repair that reaches it answers with the best
+	 * solution found so far.
+	 *
+	 * @param maxTimeLimit in milliseconds
+	 */
+	public void setMaxTimeLimit(long maxTimeLimit) {
+		this.maxTimeLimit = maxTimeLimit;
+	}
+
+	/**
+	 * Sets the size of the largest model a request may post. Larger models are
+	 * answered with 413 without being read to the end.
+	 *
+	 * @param maxRequestBytes
+	 */
+	public void setMaxRequestBytes(int maxRequestBytes) {
+		if (maxRequestBytes < 1) {
+			throw new IllegalArgumentException("The request limit must be at least one byte");
+		}
+		this.maxRequestBytes = maxRequestBytes;
+	}
+
+	/**
+	 * Starts answering requests.
+	 */
+	public void start() {
+		server.start();
+		logger.info("Repair service listening on " + server.getAddress() + " with " + fixerPool.size() + " fixers.");
+	}
+
+	/**
+	 * Gets the port the service listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the fixers of the service.
+	 *
+	 * @return the pool of fixers
+	 */
+	FixerPool getFixerPool() {
+		return fixerPool;
+	}
+
+	/**
+	 * Stops the service, giving running requests a second to finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		server.stop(1);
+		requestExecutor.shutdownNow();
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		String metrics = "parmorel_requests_waiting " + waitingRequests.get() + "\n"
+				+ "parmorel_requests_running " + runningRequests.get() + "\n"
+				+ "parmorel_fixers_idle " + fixerPool.getIdleFixers() + "\n"
+				+ "parmorel_requests_completed " + completedRequests.get() + "\n"
+				+ "parmorel_requests_rejected " + rejectedRequests.get() + "\n"
+				+ "parmorel_requests_timed_out " + timedOutRequests.get() + "\n"
+				+ "parmorel_requests_failed " + failedRequests.get() + "\n";
+		respond(exchange, 200, "text/plain", metrics);
+	}
+
+	private void handleRepair(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, "text/plain", "Post the model to repair\n");
+				return;
+			}
+			Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			List<PreferenceOption> preferences;
+			RepairBudget budget = new RepairBudget();
+			try {
+				preferences = parsePreferences(parameters.get(PREFERENCES_PARAMETER));
+				String timeLimit = parameters.get(TIME_LIMIT_PARAMETER);
+				budget.setTimeLimit(timeLimit == null ? maxTimeLimit : Math.min(Long.parseLong(timeLimit), maxTimeLimit));
+				String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+				if (contentLength != null && Long.parseLong(contentLength) > maxRequestBytes) {
+					respondTooLarge(exchange);
+					return;
+				}
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+				return;
+			}
+			if (!admissions.tryAcquire()) {
+				rejectedRequests.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				respond(exchange, 503, "text/plain", "Too many requests are waiting for a fixer\n");
+				return;
+			}
+			try {
+				repair(exchange, preferences, budget);
+			} finally {
+				admissions.release();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void repair(HttpExchange exchange, List<PreferenceOption> preferences, RepairBudget budget)
+			throws IOException, InterruptedException {
+		byte[] model;
+		try (InputStream body = exchange.getRequestBody()) {
+			model = body.readNBytes(maxRequestBytes);
+			if (body.read() != -1) {
+				respondTooLarge(exchange);
+				return;
+			}
+		}
+		QModelFixer fixer;
+		waitingRequests.incrementAndGet();
+		try {
+			fixer = fixerPool.acquire(queueTimeout, TimeUnit.MILLISECONDS);
+		} finally {
+			waitingRequests.decrementAndGet();
+		}
+		if (fixer == null) {
+			timedOutRequests.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, "text/plain", "No fixer became available in time\n");
+			return;
+		}
+		runningRequests.incrementAndGet();
+		try {
+			repairWith(fixer, exchange, model, preferences, budget);
+		} finally {
+			fixer.discardSolutions();
+			runningRequests.decrementAndGet();
+			fixerPool.release(fixer);
+		}
+	}
+
+	private void repairWith(QModelFixer fixer, HttpExchange exchange, byte[] model,
+			List<PreferenceOption> preferences, RepairBudget budget) throws IOException {
+		fixer.setPreferences(preferences);
+		SolutionStream stream = new SolutionStream(exchange);
+		fixer.subscribe(stream);
+		QSolution bestSolution;
+		try {
+			bestSolution = (QSolution) fixer.fixModel(model, budget);
+		} catch (NoErrorsInModelException e) {
+			stream.awaitCompletion();
+			completedRequests.incrementAndGet();
+			if (!stream.fail(422, e.getMessage())) {
+				stream.writeLine("{\"event\":\"failure\",\"message\":" + quote(e.getMessage()) + "}");
+			}
+			return;
+		} catch (UncheckedIOException e) {
+			stream.awaitCompletion();
+			failedRequests.incrementAndGet();
+			if (!stream.fail(400, e.getMessage())) {
+				stream.writeLine("{\"event\":\"failure\",\"message\":" + quote(e.getMessage()) + "}");
+			}
+			return;
+		} catch (RuntimeException e) {
+			stream.awaitCompletion();
+			failedRequests.incrementAndGet();
+			logger.warning("Could not repair the model of a request: " + e);
+			if (!stream.fail(500, String.valueOf(e.getMessage()))) {
+				stream.writeLine("{\"event\":\"failure\",\"message\":" + quote(String.valueOf(e.getMessage())) + "}");
+			}
+			return;
+		}
+		stream.awaitCompletion();
+
+		StringBuilder ranking = new StringBuilder("{\"event\":\"ranking\",\"solutions\":[");
+		List<Solution> rankedSolutions = fixer.getRankedSolutions();
+		for (int i = 0; i < rankedSolutions.size(); i++) {
+			ranking.append(i > 0 ? "," : "").append(describe((QSolution) rankedSolutions.get(i)));
+		}
+		stream.writeLine(ranking.append("]}").toString());
+
+		RepairReport report = fixer.getLastRepairReport();
+		String repairedModel = new String(bestSolution.getModelContent(), StandardCharsets.UTF_8);
+		stream.writeLine("{\"event\":\"result\",\"stopReason\":\"" + report.getStopReason() + "\",\"episodes\":"
+				+ report.getEpisodes() + ",\"validations\":" + report.getValidations() + ",\"executionTime\":"
+				+ report.getExecutionTime() + ",\"solution\":" + describe(bestSolution) + ",\"model\":"
+				+ quote(repairedModel) + "}");
+		completedRequests.incrementAndGet();
+	}
+
+	/**
+	 * Writes the solutions of a repair to the response as they are found. The
+	 * response is started by the first line, so a repair that fails before it
+	 * finds a solution can still be answered with an error status.
+	 */
+	private class SolutionStream implements Flow.Subscriber<Solution> {
+		private final HttpExchange exchange;
+		private final CompletableFuture<Void> completion = new CompletableFuture<>();
+		private OutputStream body;
+
+		private SolutionStream(HttpExchange exchange) {
+			this.exchange = exchange;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(Solution solution) {
+			try {
+				writeLine("{\"event\":\"solution\",\"solution\":" + describe((QSolution) solution) + "}");
+			} catch (IOException e) {
+				logger.info("The client of a repair stopped reading: " + e.getMessage());
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			completion.complete(null);
+		}
+
+		@Override
+		public void onComplete() {
+			completion.complete(null);
+		}
+
+		private void awaitCompletion() {
+			try {
+				completion.get(SUBSCRIBER_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException | TimeoutException e) {
+				logger.warning("The solutions of a repair were not all streamed: " + e);
+			}
+		}
+
+		private synchronized void writeLine(String line) throws IOException {
+			if (body == null) {
+				exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+				exchange.sendResponseHeaders(200, 0);
+				body = exchange.getResponseBody();
+			}
+			body.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+			body.flush();
+		}
+
+		/**
+		 * Answers with an error status, unless the response has started.
+		 *
+		 * @return true if the error status was sent
+		 */
+		private synchronized boolean fail(int status, String message) throws IOException {
+			if (body != null) {
+				return false;
+			}
+			respond(exchange, status, "text/plain", message + "\n");
+			body = exchange.getResponseBody();
+			return true;
+		}
+	}
+
+	private static String describe(QSolution solution) {
+		StringBuilder description = new StringBuilder();
+		description.append("{\"id\":").append(solution.getId()).append(",\"weight\":").append(solution.getWeight())
+				.append(",\"actions\":[");
+		List<AppliedAction> sequence = solution.getSequence();
+		for (int i = 0; i < sequence.size(); i++) {
+			AppliedAction appliedAction = sequence.get(i);
+			description.append(i > 0 ? "," : "").append("{\"error\":").append(appliedAction.getError().getCode())
+					.append(",\"message\":").append(quote(appliedAction.getError().getMessage()))
+					.append(",\"action\":").append(quote(appliedAction.getAction().getName())).append("}");
+		}
+		return description.append("]}").toString();
+	}
+
+	private static String quote(String text) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : text.toCharArray()) {
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			case '\n':
+				quoted.append("\\n");
+				break;
+			case '\r':
+				quoted.append("\\r");
+				break;
+			case '\t':
+				quoted.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					quoted.append(String.format("\\u%04x", (int) c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+						URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Reads a comma separated list of preference names or ids.
+	 *
+	 * @param preferences the list, or null for no preferences
+	 * @return the preferences
+	 * @throws IllegalArgumentException if a preference is unknown
+	 */
+	static List<PreferenceOption> parsePreferences(String preferences) {
+		List<PreferenceOption> options = new ArrayList<>();
+		if (preferences == null || preferences.isBlank()) {
+			return options;
+		}
+		for (String preference : preferences.split(",")) {
+			String name = preference.trim();
+			PreferenceOption option;
+			if (!name.isEmpty() && name.chars().allMatch(Character::isDigit)) {
+				option = PreferenceOption.valueOfID(Integer.parseInt(name));
+			} else {
+				try {
+					option = PreferenceOption.valueOf(name);
+				} catch (IllegalArgumentException e) {
+					option = null;
+				}
+			}
+			if (option == null) {
+				throw new IllegalArgumentException("Unknown preference " + name);
+			}
+			options.add(option);
+		}
+		return options;
+	}
+
+	private void respondTooLarge(HttpExchange exchange) throws IOException {
+		respond(exchange, 413, "text/plain", "The model is larger than " + maxRequestBytes + " bytes\n");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String text)
+			throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream body = exchange.getResponseBody()) {
+			body.write(bytes);
+		}
+	}
+
+	/**
+	 * Runs a service until the JVM is stopped.
+	 *
+	 * @param args the port and optionally the number of fixers
+	 * @throws IOException if the service could not be started
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: RepairService <port> [fixers]");
+			System.exit(1);
+		}
+		int fixers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		RepairService service = new RepairService(Integer.parseInt(args[0]), fixers, fixers * 4);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				service.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "parmorel-service-shutdown"));
+		service.start();
+	}
+}
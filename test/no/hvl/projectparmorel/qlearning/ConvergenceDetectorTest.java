@@ -0,0 +1,57 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConvergenceDetectorTest {
+	private ConvergenceDetector convergenceDetector;
+
+	@BeforeEach
+	public void setUp() {
+		convergenceDetector = new ConvergenceDetector(3, 0.5);
+	}
+
+	private void recordStableEpisodes(int episodes) {
+		for (int i = 0; i < episodes; i++) {
+			convergenceDetector.recordWeightChange(0.1);
+			convergenceDetector.recordEpisode(false);
+		}
+	}
+
+	@Test
+	public void aFullWindowOfStableEpisodesConverges() {
+		recordStableEpisodes(2);
+		assertFalse(convergenceDetector.isConverged());
+		recordStableEpisodes(1);
+		assertTrue(convergenceDetector.isConverged());
+	}
+
+	@Test
+	public void aNewBestSolutionRestartsTheWindow() {
+		recordStableEpisodes(2);
+		convergenceDetector.recordEpisode(true);
+		recordStableEpisodes(2);
+		assertFalse(convergenceDetector.isConverged());
+		recordStableEpisodes(1);
+		assertTrue(convergenceDetector.isConverged());
+	}
+
+	@Test
+	public void aLargeWeightChangeKeepsTheLearningGoingUntilItLeavesTheWindow() {
+		convergenceDetector.recordWeightChange(10);
+		convergenceDetector.recordEpisode(false);
+		recordStableEpisodes(2);
+		assertFalse(convergenceDetector.isConverged());
+		recordStableEpisodes(1);
+		assertTrue(convergenceDetector.isConverged());
+	}
+
+	@Test
+	public void anEmptyWindowNeverConverges() {
+		convergenceDetector = new ConvergenceDetector(0, 0.5);
+		recordStableEpisodes(5);
+		assertFalse(convergenceDetector.isConverged());
+	}
+}
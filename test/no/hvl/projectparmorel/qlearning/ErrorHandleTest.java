@@ -0,0 +1,47 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ErrorHandleTest {
+	private EClass book;
+	private ErrorHandle handle;
+
+	@BeforeEach
+	public void setUp() {
+		book = EcoreFactory.eINSTANCE.createEClass();
+		Error error = new Error(7, "The name 'Book ' is not well formed", Arrays.asList(book, "Book "), 0);
+		handle = new ErrorHandle(error, Arrays.asList("/0/1", null));
+	}
+
+	@Test
+	public void elementsAreKeptAsIdentifiersAndClassNames() {
+		ErrorHandle.ContextHandle context = handle.getContexts().get(0);
+		assertEquals("/0/1", context.getIdentifier());
+		assertEquals(book.getClass().getName(), context.getClassName());
+		assertNull(context.getValue());
+	}
+
+	@Test
+	public void plainValuesAreKept() {
+		ErrorHandle.ContextHandle context = handle.getContexts().get(1);
+		assertNull(context.getIdentifier());
+		assertEquals("Book ", context.getValue());
+		assertEquals(Arrays.asList("/0/1", null), handle.getContextIdentifiers());
+	}
+
+	@Test
+	public void contextsAreNotIdentifiedWithoutIdentifiers() {
+		Error error = new Error(7, "The name 'Book ' is not well formed", Arrays.asList(book), 0);
+		ErrorHandle unidentified = new ErrorHandle(error, null);
+		assertFalse(unidentified.isIdentified());
+		assertNull(unidentified.getContextIdentifiers());
+		assertEquals(book.getClass().getName(), unidentified.getContexts().get(0).getClassName());
+	}
+}
@@ -0,0 +1,83 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class LoopDetectorTest {
+	private LoopDetector loopDetector;
+	private Error error1;
+	private Error error2;
+
+	@BeforeEach
+	public void setUp() {
+		loopDetector = new LoopDetector(1);
+		error1 = new Error(4, "The feature 'name' has an invalid type", new ArrayList<>(), 0);
+		error2 = new Error(40, "The name 'Library' is not well formed", new ArrayList<>(), 0);
+	}
+
+	@Test
+	public void newStatesAreNotRecurring() {
+		assertFalse(loopDetector.recordState(Arrays.asList(error1, error2)));
+		assertFalse(loopDetector.recordState(Arrays.asList(error2)));
+		assertFalse(loopDetector.isRecurringState());
+	}
+
+	@Test
+	public void theOrderOfTheErrorsDoesNotMatter() {
+		loopDetector.recordState(Arrays.asList(error1, error2));
+		loopDetector.recordState(Arrays.asList(error2, error1));
+		assertTrue(loopDetector.isRecurringState());
+	}
+
+	@Test
+	public void aLoopIsDetectedWhenRecurrencesExceedTheMaximum() {
+		List<Error> first = Arrays.asList(error1);
+		List<Error> second = Arrays.asList(error2);
+		loopDetector.recordState(first);
+		loopDetector.recordState(second);
+		assertFalse(loopDetector.recordState(first));
+		assertTrue(loopDetector.isRecurringState());
+		assertTrue(loopDetector.recordState(second));
+		assertTrue(loopDetector.isLoopDetected());
+	}
+
+	@Test
+	public void aTwoErrorOscillationEndedEarlyIsStillPunished() {
+		Error invalidType = new Error(4, "The feature 'name' has an invalid type", Arrays.asList("name"), 0);
+		Error badName = new Error(40, "The name 'Library' is not well formed", Arrays.asList("Library"), 0);
+		Action action = new EcoreAction(10, "delete", null, 1);
+		int numberOfSteps = 12;
+		int stepReward = 500;
+
+		// Fixing one error brings back the other, until the detector ends the episode
+		List<AppliedAction> sequence = new ArrayList<>();
+		int totalReward = 0;
+		loopDetector.recordState(Arrays.asList(invalidType));
+		Error errorToFix = invalidType;
+		boolean isEndedByLoop = false;
+		while (!isEndedByLoop) {
+			sequence.add(new AppliedAction(errorToFix, action));
+			totalReward += stepReward;
+			errorToFix = errorToFix == invalidType ? badName : invalidType;
+			isEndedByLoop = loopDetector.recordState(Arrays.asList(errorToFix));
+		}
+		assertTrue(sequence.size() < numberOfSteps);
+
+		int penalty = loopDetector.getPenaltyForEndedEpisode(sequence, numberOfSteps - sequence.size());
+		assertTrue(totalReward - penalty < 0);
+
+		List<AppliedAction> fullLength = new ArrayList<>();
+		for (int step = 0; step < numberOfSteps; step++) {
+			fullLength.add(sequence.get(step % 2));
+		}
+		assertTrue(penalty >= LoopDetector.countLoopsIn(fullLength) * LoopDetector.LOOP_PENALTY);
+	}
+}
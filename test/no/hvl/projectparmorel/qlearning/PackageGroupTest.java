@@ -0,0 +1,42 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class PackageGroupTest {
+	private PackageGroup group;
+
+	@BeforeEach
+	public void setUp() {
+		group = new PackageGroup(Arrays.asList(1, 4));
+	}
+
+	@Test
+	public void thePackageOfAPathIsTranslatedToTheOriginalModel() {
+		assertEquals("/4/2/0", group.toOriginalIdentifier("/1/2/0"));
+		assertEquals("/1", group.toOriginalIdentifier("/0"));
+	}
+
+	@Test
+	public void identifiersOfOtherResourcesAreKept() {
+		String identifier = "http://www.eclipse.org/emf/2002/Ecore#//EString";
+		assertEquals(identifier, group.toOriginalIdentifier(identifier));
+	}
+
+	@Test
+	public void appliedActionsAreTranslatedToTheOriginalPackages() {
+		Error error = new Error(40, "The typed element must have a type", new ArrayList<>(), 1);
+		Action action = new EcoreAction(1, "set type", null, 2);
+		AppliedAction translated = group.toOriginal(new AppliedAction(error, action, Arrays.asList("/1/0")));
+		assertEquals(4, translated.getError().getPackageIndex());
+		assertEquals(Arrays.asList("/4/0"), translated.getTargetIdentifiers());
+		assertTrue(group.getPackageIndices().contains(translated.getError().getPackageIndex()));
+	}
+}
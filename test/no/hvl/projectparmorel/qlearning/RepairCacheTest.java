@@ -0,0 +1,81 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreSolution;
+import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
+import no.hvl.projectparmorel.qlearning.knowledge.QTable;
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+class RepairCacheTest {
+	private QTable qTable;
+	private Action delete;
+	private Action setType;
+	private QSolution solution;
+
+	@BeforeEach
+	public void setUp() {
+		qTable = new Knowledge().getQTable();
+		delete = new EcoreAction(10, "delete", null, 1);
+		setType = new EcoreAction(11, "setType", null, 1);
+		setType.setWeight(1.0);
+		qTable.setAction(4, 1, delete);
+		qTable.setAction(4, 1, setType);
+		solution = new EcoreSolution();
+		solution.getSequence().add(new AppliedAction(new Error(4, "unresolved proxy", new ArrayList<>(), 0), setType));
+		solution.setWeight(3.0);
+	}
+
+	@Test
+	public void aCachedRepairIsFoundWhileTheKnowledgeAgrees() {
+		RepairCache cache = new RepairCache();
+		cache.put("model", solution, qTable);
+		delete.setWeight(0.5);
+		RepairCache.CachedRepair cached = cache.get("model", qTable);
+		assertNotNull(cached);
+		assertEquals(3.0, cached.getWeight());
+		assertSame(setType, cached.getSequence().get(0).getAction());
+	}
+
+	@Test
+	public void aRepairIsDroppedOnceTheKnowledgeChangesItsOptimalAction() {
+		RepairCache cache = new RepairCache();
+		cache.put("model", solution, qTable);
+		delete.setWeight(2.0);
+		assertNull(cache.get("model", qTable));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void anExpiredRepairIsDropped() {
+		RepairCache cache = new RepairCache(1, 0, TimeUnit.MILLISECONDS);
+		cache.put("model", solution, qTable);
+		try {
+			Thread.sleep(5);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		assertNull(cache.get("model", qTable));
+	}
+
+	@Test
+	public void theOrderOfThePreferencesDoesNotChangeTheKey() {
+		RepairCache cache = new RepairCache();
+		cache.put(RepairCache.keyFor("model", Arrays.asList(PreferenceOption.SHORT_SEQUENCES_OF_ACTIONS,
+				PreferenceOption.PUNISH_DELETION)), solution, qTable);
+		String reordered = RepairCache.keyFor("model",
+				Arrays.asList(PreferenceOption.PUNISH_DELETION, PreferenceOption.SHORT_SEQUENCES_OF_ACTIONS));
+		assertNotNull(cache.get(reordered, qTable));
+		cache.put(reordered, solution, qTable);
+		assertEquals(1, cache.size());
+		assertNotEquals(reordered, RepairCache.keyFor("model", Arrays.asList(PreferenceOption.PUNISH_DELETION)));
+	}
+}
@@ -0,0 +1,62 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class RepairHistoryTest {
+	private File modelFile;
+	private Map<String, String> signatures;
+	private List<AppliedAction> sequence;
+	private RepairHistory history;
+
+	@BeforeEach
+	public void setUp() {
+		modelFile = new File("library.ecore");
+		signatures = new HashMap<>();
+		signatures.put("/0", "library");
+		signatures.put("/0/0", "Book");
+		signatures.put("/0/1", "Writer");
+		sequence = new ArrayList<>();
+		sequence.add(appliedTo("/0", "/0/0"));
+		sequence.add(appliedTo("/0/1/0", "http://www.eclipse.org/emf/2002/Ecore#//EString"));
+		sequence.add(appliedTo("/0/0/1"));
+		history = new RepairHistory(4);
+		history.record(modelFile, signatures, sequence);
+	}
+
+	private AppliedAction appliedTo(String... identifiers) {
+		Error error = new Error(4, "unresolved proxy", new ArrayList<>(), 0);
+		return new AppliedAction(error, new EcoreAction(10, "delete", null, 1), Arrays.asList(identifiers));
+	}
+
+	@Test
+	public void anElementIsInTheFragmentWithTheLongestPrefix() {
+		assertEquals("/0/1", RepairHistory.fragmentOf("/0/1/0/2", signatures));
+		assertEquals("/0", RepairHistory.fragmentOf("/0", signatures));
+		assertNull(RepairHistory.fragmentOf("/1/0", signatures));
+	}
+
+	@Test
+	public void theWholeSequenceIsReusedForAnUnchangedModel() {
+		assertEquals(sequence, history.getReusableActions(modelFile, new HashMap<>(signatures)));
+	}
+
+	@Test
+	public void reuseStopsAtTheFirstActionInAnEditedFragment() {
+		Map<String, String> edited = new HashMap<>(signatures);
+		edited.put("/0/1", "Writer with an extra attribute");
+		assertEquals(sequence.subList(0, 1), history.getReusableActions(modelFile, edited));
+		assertTrue(history.getReusableActions(new File("other.ecore"), signatures).isEmpty());
+	}
+}
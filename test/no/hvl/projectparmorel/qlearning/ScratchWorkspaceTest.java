@@ -0,0 +1,73 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScratchWorkspaceTest {
+	private Path root;
+	private ScratchWorkspace workspace;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("scratch");
+		workspace = new ScratchWorkspace(root, 100);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		workspace.close();
+		Files.deleteIfExists(root);
+	}
+
+	private File write(ScratchDirectory directory, String name, int size) throws IOException {
+		File file = directory.newFile(name);
+		Files.write(file.toPath(), new byte[size]);
+		directory.written(file);
+		return file;
+	}
+
+	@Test
+	public void repairsOfTheSameModelGetDifferentDirectories() throws IOException {
+		ScratchDirectory first = workspace.openDirectory("library.ecore");
+		ScratchDirectory second = workspace.openDirectory("library.ecore");
+		File firstFile = write(first, "solution_0_library.ecore", 10);
+		File secondFile = write(second, "solution_0_library.ecore", 10);
+		assertNotEquals(firstFile, secondFile);
+		assertTrue(second.contains(secondFile));
+		assertFalse(second.contains(firstFile));
+	}
+
+	@Test
+	public void aWriteThatExceedsTheBoundFailsWithoutDeletingOtherFiles() throws IOException {
+		ScratchDirectory first = workspace.openDirectory("library.ecore");
+		ScratchDirectory second = workspace.openDirectory("library.ecore");
+		File kept = write(first, "solution_0", 60);
+		assertThrows(UncheckedIOException.class, () -> write(second, "solution_0", 60));
+		assertTrue(kept.exists());
+		assertFalse(second.newFile("solution_0").exists());
+		assertEquals(60, workspace.getUsedBytes());
+	}
+
+	@Test
+	public void closingADirectoryDeletesItsFilesAndAdoptedFiles() throws IOException {
+		ScratchDirectory directory = workspace.openDirectory("library.ecore");
+		File solution = write(directory, "solution_0", 10);
+		File original = root.resolve("model.ecore").toFile();
+		Files.write(original.toPath(), new byte[1]);
+		directory.adopt(original);
+		directory.close();
+		assertFalse(solution.exists());
+		assertFalse(solution.getParentFile().exists());
+		assertFalse(original.exists());
+		assertEquals(0, workspace.getUsedBytes());
+	}
+}
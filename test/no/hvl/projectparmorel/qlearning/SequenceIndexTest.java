@@ -0,0 +1,67 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class SequenceIndexTest {
+	private SequenceIndex index;
+	private Action action1;
+	private Action action2;
+	private Action action3;
+
+	@BeforeEach
+	public void setUp() {
+		index = new SequenceIndex();
+		action1 = new EcoreAction(1, "first", null, 1);
+		action2 = new EcoreAction(2, "second", null, 1);
+		action3 = new EcoreAction(2, "second", null, 2);
+	}
+
+	private List<AppliedAction> sequenceOf(Action... actions) {
+		AppliedAction[] appliedActions = new AppliedAction[actions.length];
+		for (int i = 0; i < actions.length; i++) {
+			appliedActions[i] = new AppliedAction(new Error(), actions[i]);
+		}
+		return Arrays.asList(appliedActions);
+	}
+
+	@Test
+	public void aSequenceCanOnlyBeAddedOnce() {
+		assertTrue(index.add(sequenceOf(action1, action2)));
+		assertFalse(index.add(sequenceOf(action1, action2)));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void aPrefixOfAKnownSequenceIsNotKnown() {
+		index.add(sequenceOf(action1, action2));
+		assertTrue(index.contains(sequenceOf(action1, action2)));
+		assertFalse(index.contains(sequenceOf(action1)));
+	}
+
+	@Test
+	public void actionsInDifferentContextsMakeDifferentSequences() {
+		index.add(sequenceOf(action1, action2));
+		assertFalse(index.contains(sequenceOf(action1, action3)));
+	}
+
+	@Test
+	public void cursorFollowsTheEpisodeAlongKnownSequences() {
+		index.add(sequenceOf(action1, action2));
+		SequenceIndex.Cursor cursor = index.start();
+		assertFalse(cursor.completesKnownSequence(action1));
+		cursor.advance(action1);
+		assertTrue(cursor.isOnKnownSequence());
+		assertTrue(cursor.completesKnownSequence(action2));
+		assertFalse(cursor.completesKnownSequence(action3));
+		cursor.advance(action3);
+		assertFalse(cursor.isOnKnownSequence());
+	}
+}
@@ -0,0 +1,173 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.ecore.EcoreSolution;
+
+class SolutionMaterializerTest {
+	private Path root;
+	private ScratchWorkspace workspace;
+	private SolutionMaterializer materializer;
+	private List<FakeModel> loadedModels;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("materializer");
+		workspace = new ScratchWorkspace(root, 1024 * 1024);
+		loadedModels = new ArrayList<>();
+		materializer = new SolutionMaterializer(new FakeModel(null), FakeModel::new, file -> {
+			FakeModel model = new FakeModel(file);
+			loadedModels.add(model);
+			return model;
+		}, null, workspace.openDirectory("library.ecore"), 1);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		workspace.close();
+		Files.deleteIfExists(root);
+	}
+
+	private QSolution register(int id) {
+		QSolution solution = new EcoreSolution();
+		solution.setId(id);
+		File destination = materializer.newFile("solution_" + id);
+		materializer.register(solution, destination, new FakeModel(destination));
+		return solution;
+	}
+
+	@Test
+	public void requestedFilesAreKeptWhenTheCacheIsFull() {
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			files.add(register(i).getModel());
+		}
+		for (File file : files) {
+			assertTrue(file.exists());
+		}
+	}
+
+	@Test
+	public void handedOutModelsAreNotUnloadedWhenTheCacheIsFull() {
+		QSolution first = register(0);
+		FakeModel model = (FakeModel) materializer.load(first);
+		register(1);
+		register(2);
+		assertFalse(model.isUnloaded);
+		assertSame(model, materializer.load(first));
+	}
+
+	@Test
+	public void aWrittenSolutionIsLoadedFromItsFileInsteadOfReplayed() {
+		QSolution first = register(0);
+		first.getModel();
+		register(1);
+		register(2);
+		materializer.load(first);
+		assertEquals(1, loadedModels.size());
+		assertEquals(first.getModel(), loadedModels.get(0).destination);
+	}
+
+	@Test
+	public void discardingASolutionDeletesItsFile() {
+		QSolution solution = register(0);
+		File file = solution.getModel();
+		solution.discard();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void filesCannotBeRequestedOnceTheSolutionsAreReleased() {
+		QSolution solution = register(0);
+		File file = solution.getModel();
+		materializer.releaseAll();
+		assertFalse(file.exists());
+		assertThrows(IllegalStateException.class, () -> solution.getModel());
+	}
+
+	private static class FakeModel implements Model {
+		private final File destination;
+		private boolean isUnloaded;
+
+		private FakeModel(File destination) {
+			this.destination = destination;
+		}
+
+		@Override
+		public Object getRepresentation() {
+			return this;
+		}
+
+		@Override
+		public Object getRepresentationCopy() {
+			return this;
+		}
+
+		@Override
+		public void save() {
+			try {
+				Files.write(destination.toPath(), getContent());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public byte[] getContent() {
+			return new byte[] { 1 };
+		}
+
+		@Override
+		public void unload() {
+			isUnloaded = true;
+		}
+
+		@Override
+		public String getIdentifierOf(Object element) {
+			return null;
+		}
+
+		@Override
+		public Object resolve(String identifier) {
+			return null;
+		}
+
+		@Override
+		public List<List<Integer>> getIndependentPackageGroups() {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public double[] getStructuralFeatures() {
+			return new double[0];
+		}
+
+		@Override
+		public String getContentHash() {
+			return "";
+		}
+
+		@Override
+		public Map<String, String> getFragmentSignatures() {
+			return null;
+		}
+
+		@Override
+		public ModelType getModelType() {
+			return null;
+		}
+	}
+}
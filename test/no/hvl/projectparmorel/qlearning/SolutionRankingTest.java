@@ -0,0 +1,43 @@
+package no.hvl.projectparmorel.qlearning;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.Solution;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreSolution;
+
+class SolutionRankingTest {
+
+	private QSolution solutionWithWeight(double weight) {
+		QSolution solution = new EcoreSolution();
+		solution.setWeight(weight);
+		return solution;
+	}
+
+	@Test
+	public void onlyTheBestSolutionsAreKept() {
+		SolutionRanking ranking = new SolutionRanking(2);
+		QSolution worst = solutionWithWeight(-100);
+		QSolution best = solutionWithWeight(500);
+		QSolution second = solutionWithWeight(200);
+		assertTrue(ranking.offer(worst));
+		assertTrue(ranking.offer(best));
+		assertTrue(ranking.offer(second));
+		assertFalse(ranking.offer(solutionWithWeight(-300)));
+
+		List<Solution> ranked = ranking.toList();
+		assertEquals(2, ranked.size());
+		assertSame(best, ranked.get(0));
+		assertSame(second, ranked.get(1));
+	}
+
+	@Test
+	public void anEmptyRankingKeepsNothing() {
+		SolutionRanking ranking = new SolutionRanking(0);
+		assertFalse(ranking.offer(solutionWithWeight(1)));
+		assertTrue(ranking.toList().isEmpty());
+	}
+}
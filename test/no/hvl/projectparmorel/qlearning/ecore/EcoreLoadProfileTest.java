@@ -0,0 +1,60 @@
+package no.hvl.projectparmorel.qlearning.ecore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.junit.jupiter.api.Test;
+
+class EcoreLoadProfileTest {
+
+	@Test
+	public void theStandardProfileKeepsTheDefaultsOfEmf() {
+		EcoreLoadProfile profile = EcoreLoadProfile.standard();
+		assertFalse(profile.getLoadOptions().containsKey(XMLResource.OPTION_USE_PARSER_POOL));
+		assertFalse(profile.getLoadOptions().containsKey(XMLResource.OPTION_DEFER_IDREF_RESOLUTION));
+		assertEquals("group_0_library.ecore", profile.getInternalFileName("group_0_library.ecore"));
+	}
+
+	@Test
+	public void binaryInternalFilesAreReadBackInTheBinaryFormat() throws IOException {
+		EcoreLoadProfile profile = EcoreLoadProfile.fast();
+		assertEquals(Boolean.TRUE, profile.getLoadOptions().get(XMLResource.OPTION_DEFER_IDREF_RESOLUTION));
+		assertEquals("group_0_library.ecore", profile.getInternalFileName("group_0_library.ecore"));
+		profile.setBinaryInternalFiles(true);
+
+		File file = Files.createTempFile("group_0_library", ".ecore").toFile();
+		File internalFile = new File(file.getParentFile(), profile.getInternalFileName(file.getName()));
+		try {
+			Resource resource = profile.createInternalResource(URI.createFileURI(internalFile.getAbsolutePath()));
+			EPackage library = EcoreFactory.eINSTANCE.createEPackage();
+			library.setName("library");
+			EClass book = EcoreFactory.eINSTANCE.createEClass();
+			book.setName("Book");
+			library.getEClassifiers().add(book);
+			resource.getContents().add(library);
+			resource.save(null);
+
+			ResourceSet resourceSet = new ResourceSetImpl();
+			profile.configure(resourceSet);
+			Resource loaded = resourceSet.getResource(URI.createFileURI(internalFile.getAbsolutePath()), true);
+			assertTrue(loaded instanceof BinaryResourceImpl);
+			EPackage loadedLibrary = (EPackage) loaded.getContents().get(0);
+			assertEquals("Book", loadedLibrary.getEClassifiers().get(0).getName());
+		} finally {
+			file.delete();
+			internalFile.delete();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package no.hvl.projectparmorel.qlearning.exploration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.Action;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class UcbExplorationTest {
+	private Action visitedAction;
+	private Action rarelyVisitedAction;
+
+	@BeforeEach
+	public void setUp() {
+		visitedAction = new EcoreAction(1, "visited", null, 1);
+		rarelyVisitedAction = new EcoreAction(2, "rarely visited", null, 1);
+	}
+
+	private void visit(Action action, int times) {
+		for (int i = 0; i < times; i++) {
+			action.recordVisit();
+		}
+	}
+
+	@Test
+	public void unvisitedActionsAreTriedFirst() {
+		visitedAction.setWeight(500);
+		visit(visitedAction, 3);
+		List<Action> actions = Arrays.asList(visitedAction, rarelyVisitedAction);
+		assertEquals(rarelyVisitedAction, new UcbExploration().chooseAction(4, actions));
+	}
+
+	@Test
+	public void rarelyVisitedActionsGetABonus() {
+		visitedAction.setWeight(10);
+		visit(visitedAction, 50);
+		visit(rarelyVisitedAction, 1);
+		List<Action> actions = Arrays.asList(visitedAction, rarelyVisitedAction);
+		assertEquals(rarelyVisitedAction, new UcbExploration(10).chooseAction(4, actions));
+		assertEquals(visitedAction, new UcbExploration(0).chooseAction(4, actions));
+	}
+}
@@ -51,4 +51,13 @@ class ActionTest {
 		action1.setId(9991);
 		assertFalse(action1.isDelete());
 	}
+
+	@Test
+	public void recordingAVisitCountsItAndStampsTheUpdate() {
+		assertEquals(0, action1.getVisitCount());
+		action1.recordVisit();
+		action1.recordVisit();
+		assertEquals(2, action1.getVisitCount());
+		assertTrue(action1.getLastUpdated() > 0);
+	}
 }
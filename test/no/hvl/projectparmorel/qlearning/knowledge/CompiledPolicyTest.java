@@ -0,0 +1,72 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.Action;
+import no.hvl.projectparmorel.qlearning.SerializableMethod;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class CompiledPolicyTest {
+	private ErrorContextActionDirectory directory;
+
+	@BeforeEach
+	public void setUp() {
+		directory = new HashErrorContextActionDirectory();
+		directory.addAction(4, 1, actionWithWeight(10, "low", 1, 0.5));
+		directory.addAction(4, 2, actionWithWeight(11, "high", 2, 2.5));
+		directory.addAction(40, 1, actionWithWeight(12, "only", 1, 1.0));
+	}
+
+	private Action actionWithWeight(int id, String name, int contextId, double weight) {
+		Action action = new EcoreAction(id, name, null, contextId);
+		action.setWeight(weight);
+		return action;
+	}
+
+	@Test
+	public void theOptimalActionIsRankedAcrossContexts() {
+		CompiledPolicy policy = CompiledPolicy.compile(directory);
+		assertEquals(11, policy.getOptimalAction(4).getId());
+		assertEquals(2, policy.getRankedActions(4).size());
+		assertEquals(10, policy.getRankedActions(4).get(1).getId());
+		assertNull(policy.getOptimalAction(5));
+	}
+
+	@Test
+	public void laterLearningDoesNotChangeThePolicy() {
+		CompiledPolicy policy = CompiledPolicy.compile(directory);
+		directory.getAction(4, 1, 10).setWeight(5.0);
+		assertEquals(11, policy.getOptimalAction(4).getId());
+	}
+
+	@Test
+	public void aSavedPolicyLoadsWithTheSameRanking() throws IOException {
+		CompiledPolicy policy = CompiledPolicy.compile(directory);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		policy.save(output);
+		CompiledPolicy loaded = CompiledPolicy.load(new ByteArrayInputStream(output.toByteArray()));
+		assertArrayEquals(new int[] { 4, 40 }, loaded.getErrorCodes());
+		assertEquals(11, loaded.getOptimalAction(4).getId());
+		assertEquals(2.5, loaded.getOptimalAction(4).getWeight());
+		assertEquals("only", loaded.getOptimalAction(40).getName());
+	}
+
+	@Test
+	public void theMethodsOfTheActionsAreSavedByName() throws Exception {
+		Method method = String.class.getMethod("regionMatches", int.class, String.class, int.class, int.class);
+		directory.addAction(41, 1, new EcoreAction(13, "method", new SerializableMethod(method), 1));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CompiledPolicy.compile(directory).save(output);
+		CompiledPolicy loaded = CompiledPolicy.load(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(method, loaded.getOptimalAction(41).getMethod().getMethod());
+		assertNull(loaded.getOptimalAction(40).getMethod());
+	}
+}
@@ -0,0 +1,116 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+class PreferenceWeightMapTest {
+	private PreferenceWeightMap preferenceMap;
+	private Document document;
+
+	@BeforeEach
+	public void setUp() throws ParserConfigurationException {
+		preferenceMap = new PreferenceWeightMap();
+		document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+	}
+
+	@Test
+	public void aNewMapContainsNoPreferences() {
+		assertTrue(preferenceMap.getAllPreferenceIds().isEmpty());
+		assertFalse(preferenceMap.contains(PreferenceOption.PUNISH_DELETION));
+	}
+
+	@Test
+	public void setWeightIsReturnedForThePreference() {
+		preferenceMap.set(PreferenceOption.PREFER_RELAXATION.id, 42);
+		assertTrue(preferenceMap.contains(PreferenceOption.PREFER_RELAXATION));
+		assertEquals(42, preferenceMap.getWeightFor(PreferenceOption.PREFER_RELAXATION));
+	}
+
+	@Test
+	public void totalWeightOnlyIncludesTheRequestedPreferences() {
+		preferenceMap.set(PreferenceOption.PUNISH_DELETION.id, 100);
+		preferenceMap.set(PreferenceOption.SHORT_SEQUENCES_OF_ACTIONS.id, 20);
+		preferenceMap.set(PreferenceOption.PREFER_REUSE.id, 3);
+		assertEquals(103, preferenceMap.getTotalWeightFor(
+				Arrays.asList(PreferenceOption.PUNISH_DELETION, PreferenceOption.PREFER_REUSE)));
+	}
+
+	@Test
+	public void savedPreferencesAreCombinedWithTheStoredValueAndCanBeLoadedAgain() throws Exception {
+		preferenceMap.set(PreferenceOption.PUNISH_DELETION.id, 100);
+		preferenceMap.combineAndSaveAll();
+		preferenceMap.set(PreferenceOption.PUNISH_DELETION.id, 50);
+		preferenceMap.set(PreferenceOption.LONG_SEQUENCES_OF_ACTIONS.id, 7);
+		preferenceMap.combineAndSaveAll();
+
+		Element root = document.createElement("preferenceMap");
+		document.appendChild(root);
+		preferenceMap.saveTo(document, root);
+
+		NodeList preferences = root.getElementsByTagName("preference");
+		assertEquals(2, preferences.getLength());
+		assertEquals("1", ((Element) preferences.item(0)).getAttribute("id"));
+		assertEquals("7", ((Element) preferences.item(0)).getAttribute("value"));
+		assertEquals("4", ((Element) preferences.item(1)).getAttribute("id"));
+		assertEquals("150", ((Element) preferences.item(1)).getAttribute("value"));
+
+		PreferenceWeightMap loadedMap = new PreferenceWeightMap(preferences);
+		Element reloaded = document.createElement("preferenceMap");
+		loadedMap.saveTo(document, reloaded);
+		assertEquals("150", ((Element) reloaded.getElementsByTagName("preference").item(1)).getAttribute("value"));
+	}
+
+	@Test
+	public void unknownPreferencesAreKeptAndSavedAgain() throws Exception {
+		Element root = document.createElement("preferenceMap");
+		document.appendChild(root);
+		Element preference = document.createElement("preference");
+		preference.setAttribute("id", "30");
+		preference.setAttribute("value", "12");
+		root.appendChild(preference);
+
+		PreferenceWeightMap loadedMap = new PreferenceWeightMap(root.getElementsByTagName("preference"));
+		assertTrue(loadedMap.getAllPreferenceIds().isEmpty());
+		Element saved = document.createElement("preferenceMap");
+		loadedMap.saveTo(document, saved);
+		NodeList preferences = saved.getElementsByTagName("preference");
+		assertEquals(1, preferences.getLength());
+		assertEquals("30", ((Element) preferences.item(0)).getAttribute("id"));
+		assertEquals("12", ((Element) preferences.item(0)).getAttribute("value"));
+	}
+
+	@Test
+	public void theChangesOfTheStoredWeightsSinceTheBaselineAreAdded() {
+		preferenceMap.set(PreferenceOption.PUNISH_DELETION.id, 100);
+		preferenceMap.combineAndSaveAll();
+		PreferenceWeightMap baseline = new PreferenceWeightMap();
+		baseline.copyStoredWeightsFrom(preferenceMap);
+		PreferenceWeightMap learned = new PreferenceWeightMap();
+		learned.copyStoredWeightsFrom(preferenceMap);
+		learned.set(PreferenceOption.PUNISH_DELETION.id, 30);
+		learned.set(PreferenceOption.LONG_SEQUENCES_OF_ACTIONS.id, 7);
+		learned.combineAndSaveAll();
+		preferenceMap.set(PreferenceOption.PUNISH_DELETION.id, 20);
+		preferenceMap.combineAndSaveAll();
+
+		assertTrue(preferenceMap.addStoredChanges(learned, baseline));
+		assertFalse(preferenceMap.addStoredChanges(baseline, baseline));
+		Element root = document.createElement("preferenceMap");
+		preferenceMap.saveTo(document, root);
+		NodeList preferences = root.getElementsByTagName("preference");
+		assertEquals("7", ((Element) preferences.item(0)).getAttribute("value"));
+		assertEquals("150", ((Element) preferences.item(1)).getAttribute("value"));
+	}
+}
@@ -0,0 +1,64 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.Action;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class QTableTest {
+	private QTable shared;
+
+	@BeforeEach
+	public void setUp() {
+		shared = new QTable();
+		shared.setAction(4, 1, new EcoreAction(10, "delete", null, 1));
+		shared.setWeight(4, 1, 10, 2.0);
+	}
+
+	private QTable copyOf(QTable table) {
+		QTable copy = new QTable();
+		copy.mergeLearningFrom(table, copy.compilePolicy());
+		return copy;
+	}
+
+	@Test
+	public void theLearningOfSeveralCopiesAddsUp() {
+		QTable first = copyOf(shared);
+		QTable second = copyOf(shared);
+		CompiledPolicy firstBaseline = first.compilePolicy();
+		CompiledPolicy secondBaseline = second.compilePolicy();
+		first.setWeight(4, 1, 10, 5.0);
+		second.setWeight(4, 1, 10, 3.0);
+		second.setAction(4, 1, new EcoreAction(11, "setType", null, 1));
+
+		assertTrue(shared.mergeLearningFrom(first, firstBaseline));
+		assertTrue(shared.mergeLearningFrom(second, secondBaseline));
+		assertEquals(6.0, shared.getWeight(4, 1, 10));
+		assertTrue(shared.containsActionForErrorAndContext(4, 1, 11));
+	}
+
+	@Test
+	public void mergingTheDifferenceMakesACopyCatchUp() {
+		QTable copy = copyOf(shared);
+		shared.setWeight(4, 1, 10, 7.0);
+		shared.getAction(4, 1, 10).recordVisit();
+		shared.setAction(4, 1, new EcoreAction(11, "setType", null, 1));
+
+		copy.mergeLearningFrom(shared, copy.compilePolicy());
+		assertEquals(7.0, copy.getWeight(4, 1, 10));
+		assertEquals(1, copy.getAction(4, 1, 10).getVisitCount());
+		assertFalse(copy.mergeLearningFrom(shared, copy.compilePolicy()));
+	}
+
+	@Test
+	public void actionsAreCopiedRatherThanShared() {
+		QTable copy = copyOf(shared);
+		Action action = copy.getAction(4, 1, 10);
+		assertNotSame(shared.getAction(4, 1, 10), action);
+		action.setWeight(9.0);
+		assertEquals(2.0, shared.getWeight(4, 1, 10));
+	}
+}
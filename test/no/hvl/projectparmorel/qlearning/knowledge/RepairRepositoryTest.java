@@ -0,0 +1,88 @@
+package no.hvl.projectparmorel.qlearning.knowledge;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.Action;
+import no.hvl.projectparmorel.qlearning.AppliedAction;
+import no.hvl.projectparmorel.qlearning.Error;
+import no.hvl.projectparmorel.qlearning.ecore.EcoreAction;
+
+class RepairRepositoryTest {
+	private File file;
+	private RepairRepository repository;
+	private QTable qTable;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		file = File.createTempFile("repairs", ".xml");
+		file.delete();
+		repository = new RepairRepository(file);
+		qTable = new QTable();
+		qTable.setAction(4, 1, new EcoreAction(10, "delete", null, 1));
+		qTable.setAction(4, 1, new EcoreAction(11, "setType", null, 1));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		file.delete();
+	}
+
+	private List<AppliedAction> sequenceOf(Action action) {
+		List<AppliedAction> sequence = new ArrayList<>();
+		sequence.add(new AppliedAction(new Error(4, "unresolved proxy", new ArrayList<>(), 0), action));
+		return sequence;
+	}
+
+	@Test
+	public void theActionsOfASimilarModelAreRaisedByTheSimilarity() {
+		repository.add(new double[] { 1, 0 }, sequenceOf(new EcoreAction(11, "setType", null, 1)));
+		assertEquals(1, repository.warmStart(qTable, new double[] { 1, 1 }));
+		assertEquals(RepairRepository.DEFAULT_BOOST / 2, qTable.getWeight(4, 1, 11), 1e-9);
+		assertEquals(0.0, qTable.getWeight(4, 1, 10));
+	}
+
+	@Test
+	public void warmStartingTwiceDoesNotInflateTheWeights() {
+		repository.add(new double[] { 1, 0 }, sequenceOf(new EcoreAction(11, "setType", null, 1)));
+		repository.warmStart(qTable, new double[] { 1, 0 });
+		assertEquals(0, repository.warmStart(qTable, new double[] { 1, 0 }));
+		assertEquals(RepairRepository.DEFAULT_BOOST, qTable.getWeight(4, 1, 11), 1e-9);
+	}
+
+	@Test
+	public void undoingTheWarmStartRestoresTheWeightsThatWereNotLearned() {
+		repository.add(new double[] { 1, 0 }, sequenceOf(new EcoreAction(11, "setType", null, 1)));
+		repository.add(new double[] { 1, 0.5 }, sequenceOf(new EcoreAction(10, "delete", null, 1)));
+		repository.warmStart(qTable, new double[] { 1, 0 });
+		qTable.setWeight(4, 1, 10, 7.0);
+		assertEquals(1, qTable.undoWarmStart());
+		assertEquals(0.0, qTable.getWeight(4, 1, 11));
+		assertEquals(7.0, qTable.getWeight(4, 1, 10));
+	}
+
+	@Test
+	public void modelsOfDifferentSizesAreNotSimilar() {
+		assertEquals(1.0, RepairRepository.similarity(new double[] { 1, 2 }, new double[] { 1, 2 }));
+		assertTrue(RepairRepository.similarity(new double[] { 1, 2 }, new double[] { 2, 4 }) < 0.5);
+		assertEquals(0.0, RepairRepository.similarity(new double[] { 1 }, new double[] { 1, 2 }));
+	}
+
+	@Test
+	public void theNearestModelsAreFoundAfterReloading() throws IOException {
+		repository.add(new double[] { 0, 1 }, sequenceOf(new EcoreAction(10, "delete", null, 1)));
+		repository.add(new double[] { 1, 0.1 }, sequenceOf(new EcoreAction(11, "setType", null, 1)));
+		repository.save();
+		RepairRepository loaded = new RepairRepository(file);
+		assertEquals(2, loaded.size());
+		assertArrayEquals(new double[] { 1, 0.1 }, loaded.findNearestFeatures(new double[] { 1, 0 }).get(0));
+	}
+}
@@ -0,0 +1,51 @@
+package no.hvl.projectparmorel.qlearning.scheduling;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.Error;
+
+class CascadeImpactSchedulerTest {
+	private CascadeImpactScheduler scheduler;
+	private Error cause;
+	private Error consequence;
+	private Error unrelated;
+
+	@BeforeEach
+	public void setUp() {
+		scheduler = new CascadeImpactScheduler();
+		cause = new Error(4, "The feature 'type' has an unresolved proxy", new ArrayList<>(), 0);
+		consequence = new Error(40, "The typed element must have a type", new ArrayList<>(), 0);
+		unrelated = new Error(7, "The name 'Library' is not well formed", new ArrayList<>(), 0);
+	}
+
+	@Test
+	public void errorsAreFixedInReportOrderWithoutStatistics() {
+		assertEquals(consequence, scheduler.selectNext(Arrays.asList(consequence, cause), null));
+	}
+
+	@Test
+	public void theErrorThatRemovesOtherErrorsIsFixedFirst() {
+		scheduler.recordStep(cause, Arrays.asList(cause, consequence, unrelated), Arrays.asList(unrelated));
+		scheduler.recordStep(consequence, Arrays.asList(consequence, unrelated), Arrays.asList(unrelated));
+		assertEquals(1.0, scheduler.getAverageImpact(4));
+		assertEquals(0.0, scheduler.getAverageImpact(40));
+		assertEquals(cause, scheduler.selectNext(Arrays.asList(consequence, unrelated, cause), null));
+	}
+
+	@Test
+	public void errorsIntroducedByTheActionDoNotCountAsRemoved() {
+		List<Error> after = Arrays.asList(consequence, unrelated);
+		scheduler.recordStep(cause, Arrays.asList(cause, consequence), after);
+		assertEquals(0.0, scheduler.getAverageImpact(4));
+		scheduler.recordStep(cause, Arrays.asList(cause), Collections.emptyList());
+		assertEquals(0.0, scheduler.getAverageImpact(4));
+	}
+}
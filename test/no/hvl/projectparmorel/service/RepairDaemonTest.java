@@ -0,0 +1,167 @@
+package no.hvl.projectparmorel.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.exceptions.NoErrorsInModelException;
+
+class RepairDaemonTest {
+	private static final long TIMEOUT = 10000;
+
+	private Path root;
+	private Path inbox;
+	private Path outbox;
+	private RepairDaemon daemon;
+	private AtomicInteger startedRepairs;
+	private CountDownLatch repairsMayFinish;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("daemon");
+		inbox = root.resolve("inbox");
+		outbox = root.resolve("outbox");
+		startedRepairs = new AtomicInteger();
+		repairsMayFinish = new CountDownLatch(0);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		repairsMayFinish.countDown();
+		if (daemon != null) {
+			daemon.close();
+		}
+		try (Stream<Path> files = Files.walk(root)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	private RepairDaemon createDaemon(int fixers, int queueCapacity) throws IOException {
+		return new RepairDaemon(inbox, outbox, fixers, queueCapacity, (modelFile, destination) -> {
+			startedRepairs.incrementAndGet();
+			repairsMayFinish.await();
+			if (modelFile.getName().startsWith("valid")) {
+				throw new NoErrorsInModelException("No errors in " + modelFile.getName());
+			}
+			Files.copy(modelFile.toPath(), destination);
+			return new RepairOutcome(new ArrayList<>(), 1.0, null);
+		});
+	}
+
+	private void drop(String... names) throws IOException {
+		for (String name : names) {
+			Files.write(inbox.resolve(name), new byte[] { 1 });
+		}
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < end, "Timed out");
+			Thread.sleep(10);
+		}
+	}
+
+	private static long countFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	public void theResultsAreWrittenToADirectoryOfTheirOwn() throws Exception {
+		daemon = createDaemon(1, 1);
+		drop("library.ecore", "valid.ecore", "notes.txt");
+		daemon.start();
+		awaitUntil(() -> daemon.getRepairedModels() + daemon.getFailedModels() == 2);
+
+		assertEquals(1, daemon.getRepairedModels());
+		assertEquals(1, daemon.getFailedModels());
+		Path library = outbox.resolve("library");
+		assertTrue(Files.exists(library.resolve("library.ecore")));
+		assertTrue(Files.exists(library.resolve(RepairDaemon.REPAIRED_PREFIX + "library.ecore")));
+		assertTrue(Files.exists(library.resolve(RepairDaemon.REPORT_FILE_NAME)));
+		assertTrue(Files.exists(outbox.resolve("valid").resolve(RepairDaemon.FAILURE_FILE_NAME)));
+		assertTrue(Files.exists(inbox.resolve("notes.txt")));
+	}
+
+	@Test
+	public void modelsAreLeftInTheInboxWhileTheQueueIsFull() throws Exception {
+		repairsMayFinish = new CountDownLatch(1);
+		daemon = createDaemon(1, 1);
+		drop("a.ecore", "b.ecore", "c.ecore", "d.ecore");
+		daemon.start();
+		awaitUntil(() -> startedRepairs.get() == 1);
+		Thread.sleep(200);
+
+		// One model is repaired, one waits for the fixer and the watcher waits with
+		// the third, so the last is not taken
+		assertEquals(1, startedRepairs.get());
+		assertEquals(3, daemon.getQueuedModels());
+		assertEquals(3, countFiles(inbox));
+
+		repairsMayFinish.countDown();
+		awaitUntil(() -> daemon.getRepairedModels() == 4);
+		assertEquals(0, countFiles(inbox));
+	}
+
+	@Test
+	public void everyModelInTheInboxIsQueuedWhenTheEventsOverflow() throws Exception {
+		daemon = createDaemon(2, 0);
+		drop("a.ecore", "b.ecore", "c.ecore");
+		daemon.handleEvents(Arrays.<WatchEvent<?>>asList(new Overflow()));
+		awaitUntil(() -> daemon.getRepairedModels() == 3);
+		assertEquals(0, countFiles(inbox));
+	}
+
+	@Test
+	public void aModelIsQueuedOnceForSeveralEvents() throws Exception {
+		repairsMayFinish = new CountDownLatch(1);
+		daemon = createDaemon(1, 1);
+		drop("a.ecore");
+		List<WatchEvent<?>> events = new ArrayList<>();
+		events.add(new Overflow());
+		events.add(new Overflow());
+		daemon.handleEvents(events);
+		assertEquals(1, daemon.getQueuedModels());
+
+		repairsMayFinish.countDown();
+		awaitUntil(() -> daemon.getRepairedModels() == 1);
+		Thread.sleep(100);
+		assertEquals(1, startedRepairs.get());
+	}
+
+	private static class Overflow implements WatchEvent<Object> {
+
+		@Override
+		public Kind<Object> kind() {
+			return StandardWatchEventKinds.OVERFLOW;
+		}
+
+		@Override
+		public int count() {
+			return 1;
+		}
+
+		@Override
+		public Object context() {
+			return null;
+		}
+	}
+}
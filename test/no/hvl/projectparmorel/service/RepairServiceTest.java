@@ -0,0 +1,217 @@
+package no.hvl.projectparmorel.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import no.hvl.projectparmorel.qlearning.QModelFixer;
+import no.hvl.projectparmorel.qlearning.knowledge.Knowledge;
+import no.hvl.projectparmorel.qlearning.reward.PreferenceOption;
+
+class RepairServiceTest {
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"library\" nsURI=\"http://library\""
+			+ " nsPrefix=\"library\">\n";
+	private static final String STRING_TYPE = "ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EString";
+	private static final String BROKEN_MODEL = HEADER
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Book\">\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"title\"/>\n"
+			+ "  </eClassifiers>\n"
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Book\"/>\n"
+			+ "</ecore:EPackage>\n";
+	private static final String VALID_MODEL = HEADER
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Book\">\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"title\" eType=\"" + STRING_TYPE + "\"/>\n"
+			+ "  </eClassifiers>\n"
+			+ "</ecore:EPackage>\n";
+
+	private RepairService service;
+	private Path knowledgeDirectory;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		knowledgeDirectory = Files.createTempDirectory("knowledge");
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		if (service != null) {
+			service.close();
+		}
+		Files.deleteIfExists(knowledgeDirectory.resolve(Knowledge.KNOWLEDGE_FILE_NAME));
+		Files.delete(knowledgeDirectory);
+	}
+
+	private void startService(int fixers, int queueCapacity) throws IOException {
+		service = new RepairService(0, fixers, queueCapacity,
+				knowledgeDirectory.resolve(Knowledge.KNOWLEDGE_FILE_NAME).toFile());
+		service.setMaxTimeLimit(10000);
+		service.start();
+	}
+
+	private HttpURLConnection post(String query, String model) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + service.getPort() + RepairService.REPAIR_PATH + query).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream body = connection.getOutputStream()) {
+			body.write(model.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	private static List<String> readLines(HttpURLConnection connection) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private long getMetric(String name) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + service.getPort() + RepairService.METRICS_PATH).openConnection();
+		assertEquals(200, connection.getResponseCode());
+		for (String line : readLines(connection)) {
+			if (line.startsWith(name + " ")) {
+				return Long.parseLong(line.substring(name.length() + 1));
+			}
+		}
+		throw new AssertionError("No metric " + name);
+	}
+
+	private void awaitMetric(String name, long value) throws IOException, InterruptedException {
+		long end = System.currentTimeMillis() + 10000;
+		while (getMetric(name) != value) {
+			assertTrue(System.currentTimeMillis() < end, "Timed out waiting for " + name);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void preferencesAreReadByNameOrId() {
+		assertEquals(Arrays.asList(PreferenceOption.SHORT_SEQUENCES_OF_ACTIONS, PreferenceOption.PUNISH_DELETION),
+				RepairService.parsePreferences("SHORT_SEQUENCES_OF_ACTIONS, 4"));
+		assertTrue(RepairService.parsePreferences(null).isEmpty());
+	}
+
+	@Test
+	public void unknownPreferencesAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> RepairService.parsePreferences("FASTEST"));
+		assertThrows(IllegalArgumentException.class, () -> RepairService.parsePreferences("99"));
+	}
+
+	@Test
+	public void theSolutionsAreStreamedBeforeTheRankingAndTheResult() throws IOException {
+		startService(1, 0);
+		HttpURLConnection connection = post("?preferences=SHORT_SEQUENCES_OF_ACTIONS&timeLimit=5000", BROKEN_MODEL);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("application/x-ndjson", connection.getContentType());
+
+		List<String> lines = readLines(connection);
+		assertTrue(lines.size() >= 3);
+		assertTrue(lines.get(0).startsWith("{\"event\":\"solution\""));
+		assertTrue(lines.get(lines.size() - 2).startsWith("{\"event\":\"ranking\""));
+		String result = lines.get(lines.size() - 1);
+		assertTrue(result.startsWith("{\"event\":\"result\""));
+		assertTrue(result.contains("\"model\":\"<?xml"));
+		assertEquals(1, getMetric("parmorel_requests_completed"));
+		assertTrue(Files.exists(knowledgeDirectory.resolve(Knowledge.KNOWLEDGE_FILE_NAME)));
+	}
+
+	@Test
+	public void aModelWithoutErrorsIsAnsweredWith422() throws IOException {
+		startService(1, 0);
+		HttpURLConnection connection = post("", VALID_MODEL);
+		assertEquals(422, connection.getResponseCode());
+		assertEquals(1, getMetric("parmorel_requests_completed"));
+		assertEquals(0, getMetric("parmorel_requests_failed"));
+	}
+
+	@Test
+	public void requestsBeyondTheQueueAreAnsweredWith503() throws Exception {
+		startService(1, 0);
+		FixerPool fixerPool = service.getFixerPool();
+		QModelFixer fixer = fixerPool.acquire(1, TimeUnit.SECONDS);
+		CompletableFuture<Integer> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return post("", VALID_MODEL).getResponseCode();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			awaitMetric("parmorel_requests_waiting", 1);
+			HttpURLConnection rejected = post("", VALID_MODEL);
+			assertEquals(503, rejected.getResponseCode());
+			assertEquals("1", rejected.getHeaderField("Retry-After"));
+			assertEquals(1, getMetric("parmorel_requests_rejected"));
+		} finally {
+			fixerPool.release(fixer);
+		}
+		assertEquals(422, (int) waiting.get(10, TimeUnit.SECONDS));
+		assertEquals(0, getMetric("parmorel_requests_waiting"));
+	}
+
+	@Test
+	public void requestsWaitingTooLongForAFixerAreAnsweredWith503() throws Exception {
+		startService(1, 1);
+		service.setQueueTimeout(50);
+		FixerPool fixerPool = service.getFixerPool();
+		QModelFixer fixer = fixerPool.acquire(1, TimeUnit.SECONDS);
+		try {
+			HttpURLConnection timedOut = post("", VALID_MODEL);
+			assertEquals(503, timedOut.getResponseCode());
+			assertEquals(1, getMetric("parmorel_requests_timed_out"));
+			assertEquals(0, getMetric("parmorel_fixers_idle"));
+		} finally {
+			fixerPool.release(fixer);
+		}
+		assertEquals(1, getMetric("parmorel_fixers_idle"));
+	}
+
+	@Test
+	public void modelsLargerThanTheLimitAreAnsweredWith413() throws IOException {
+		startService(1, 0);
+		service.setMaxRequestBytes(64);
+		assertEquals(413, post("", VALID_MODEL).getResponseCode());
+
+		HttpURLConnection chunked = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + service.getPort() + RepairService.REPAIR_PATH).openConnection();
+		chunked.setRequestMethod("POST");
+		chunked.setDoOutput(true);
+		chunked.setChunkedStreamingMode(16);
+		try (OutputStream body = chunked.getOutputStream()) {
+			body.write(VALID_MODEL.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(413, chunked.getResponseCode());
+		try (InputStream error = chunked.getErrorStream()) {
+			assertTrue(new String(error.readAllBytes(), StandardCharsets.UTF_8).contains("64 bytes"));
+		}
+		assertEquals(1, getMetric("parmorel_fixers_idle"));
+	}
+}